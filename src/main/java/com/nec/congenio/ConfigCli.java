@@ -35,9 +35,12 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import com.nec.congenio.exec.ArchiveFormat;
 import com.nec.congenio.exec.OutputFormat;
+import com.nec.congenio.exec.SaveValues;
 import com.nec.congenio.exec.ValueExecBuilder;
 import com.nec.congenio.exec.ValueHandler;
+import com.nec.congenio.xml.Compression;
 
 /**
  * A class that implements a Command-Line Interface.
@@ -73,6 +76,28 @@ public class ConfigCli {
          * directory.
          */
         OUT_DIR("o", "outdir"),
+        /**
+         * Option to save output
+         * in a single archive file
+         * (with an output directory).
+         */
+        ARCHIVE("a", LOPT_ARCHIVE),
+        /**
+         * Option to write only changed
+         * files in the output directory.
+         */
+        INCREMENTAL("u", LOPT_INCREMENTAL),
+        /**
+         * Option to compress files
+         * in the output directory.
+         */
+        COMPRESS("z", LOPT_COMPRESS),
+        /**
+         * Option to save output
+         * as patches against a base
+         * document.
+         */
+        DELTA("d", LOPT_DELTA),
         /**
          * Option to define a
          * library path.
@@ -108,6 +133,11 @@ public class ConfigCli {
     public static final String LOPT_PATH = "path";
     public static final String LOPT_INDEX = "index";
     public static final String LOPT_FORMAT = "format";
+    public static final String LOPT_ARCHIVE = "archive";
+    public static final String LOPT_INCREMENTAL = "incremental";
+    public static final String LOPT_COMPRESS = "compress";
+    public static final String LOPT_DELTA = "delta";
+    public static final String DELTA_FIRST = "first";
 
     private static final Map<String, Option> OPTS = new HashMap<String, Option>();
 
@@ -121,13 +151,32 @@ public class ConfigCli {
         def(optFor(Opt.FORMAT)
                 .hasArg().argName("FORMAT"),
                 "sets output format (xml, json, properties,"
-                        + " xml-no-indent, json-no-indent)");
+                        + " xml-no-indent, json-no-indent, jsonl)");
         def(optFor(Opt.BASE)
                 .hasArg().argName("FILE"),
                 "sets a base document to extend");
         def(optFor(Opt.OUT_DIR)
                 .hasArg().argName("DIR_NAME"),
                 "sets output directory");
+        def(optFor(Opt.ARCHIVE)
+                .hasArg().argName("ARCHIVE"),
+                "saves output in one file with an index"
+                        + " in the output directory (stream, tar, zip;"
+                        + " can be compressed with -z, not with -u)");
+        def(optFor(Opt.INCREMENTAL),
+                "writes only changed files in the output directory"
+                        + " and removes stale ones (can be compressed"
+                        + " with -z)");
+        def(optFor(Opt.COMPRESS)
+                .hasArg().argName("COMPRESSION"),
+                "compresses output files (or the archive) in the output"
+                        + " directory (gzip, deflate)");
+        def(optFor(Opt.DELTA)
+                .hasArg().argName("BASE_INDEX"),
+                "saves output in XML as patches against a base document"
+                        + " (the index of the base, or 'first')"
+                        + " in the output directory (not with -a, -u, -z"
+                        + " or a non-XML format)");
         def(optFor(Opt.LIB)
                 .hasArgs().valueSeparator().argName("LIB_NAME=PATH"),
                 "defines a lib path");
@@ -234,9 +283,13 @@ public class ConfigCli {
         } else if (cline.hasOption('e')) {
             showExtendOnly(cline);
         } else {
+            checkOutputOptions(cline);
             ValueExecBuilder builder = builder(cline);
-            setHandler(builder, cline);
+            SaveValues incremental = setHandler(builder, cline);
             builder.build().run();
+            if (incremental != null) {
+                System.err.println(incremental.getManifest().summary());
+            }
         }
     }
 
@@ -309,13 +362,69 @@ public class ConfigCli {
         return Collections.emptyMap();
     }
 
-    private void setHandler(ValueExecBuilder builder, CommandLine cline) {
+    /**
+     * Rejects the combinations of output options that
+     * cannot be composed.
+     */
+    private void checkOutputOptions(CommandLine cline) {
+        if (cline.hasOption(LOPT_DELTA)) {
+            if (cline.hasOption(LOPT_ARCHIVE)
+                    || cline.hasOption(LOPT_INCREMENTAL)
+                    || cline.hasOption(LOPT_COMPRESS)) {
+                throw new ConfigException(
+                        "delta output cannot be combined with archive,"
+                        + " incremental or compressed output");
+            }
+            if (cline.hasOption(LOPT_FORMAT)) {
+                OutputFormat format = format(cline);
+                if (format != OutputFormat.XML
+                        && format != OutputFormat.XML_INDENT
+                        && format != OutputFormat.XML_NO_INDENT) {
+                    throw new ConfigException(
+                            "delta output is written in XML: "
+                            + cline.getOptionValue(LOPT_FORMAT));
+                }
+            }
+        } else if (cline.hasOption(LOPT_ARCHIVE)
+                && cline.hasOption(LOPT_INCREMENTAL)) {
+            throw new ConfigException(
+                    "archive output cannot be incremental");
+        }
+    }
+
+    /**
+     * Sets the handler of generated values.
+     * @return the handler if it saves values incrementally
+     *        (null otherwise).
+     */
+    @Nullable
+    private SaveValues setHandler(ValueExecBuilder builder, CommandLine cline) {
         if (cline.hasOption('o')) {
             File dir = new File(cline.getOptionValue('o'));
-            builder.save(dir, format(cline));
+            if (cline.hasOption(LOPT_DELTA)) {
+                builder.delta(dir, deltaBase(cline));
+            } else if (cline.hasOption(LOPT_ARCHIVE)) {
+                builder.archive(dir, format(cline), archive(cline),
+                        compression(cline));
+            } else if (cline.hasOption(LOPT_INCREMENTAL)) {
+                SaveValues save = new SaveValues(dir, format(cline), true,
+                        compression(cline));
+                builder.handler(save);
+                return save;
+            } else {
+                builder.save(dir, format(cline), compression(cline));
+            }
+        } else if (cline.hasOption(LOPT_ARCHIVE)
+                || cline.hasOption(LOPT_INCREMENTAL)
+                || cline.hasOption(LOPT_COMPRESS)
+                || cline.hasOption(LOPT_DELTA)) {
+            throw new ConfigException(
+                    "archive, incremental, compressed or delta output"
+                    + " requires an output directory");
         } else {
             builder.print(format(cline));
         }
+        return null;
     }
 
     private OutputFormat format(CommandLine cline) {
@@ -335,6 +444,49 @@ public class ConfigCli {
     }
 
 
+    private ArchiveFormat archive(CommandLine cline) {
+        ArchiveFormat archive = ArchiveFormat.find(
+                cline.getOptionValue(LOPT_ARCHIVE));
+        if (archive == null) {
+            throw new ConfigException(
+                    "unsupported archive format: "
+                    + cline.getOptionValue(LOPT_ARCHIVE));
+        }
+        return archive;
+    }
+
+    private int deltaBase(CommandLine cline) {
+        String base = cline.getOptionValue(LOPT_DELTA).trim();
+        if (DELTA_FIRST.equals(base)) {
+            return -1;
+        }
+        try {
+            int idx = Integer.parseInt(base);
+            if (idx >= 0) {
+                return idx;
+            }
+        } catch (NumberFormatException ex) {
+            /**
+             * reported below.
+             */
+        }
+        throw new ConfigException("invalid base index: " + base);
+    }
+
+    private Compression compression(CommandLine cline) {
+        if (!cline.hasOption(LOPT_COMPRESS)) {
+            return Compression.NONE;
+        }
+        Compression compression = Compression.find(
+                cline.getOptionValue(LOPT_COMPRESS));
+        if (compression == null) {
+            throw new ConfigException(
+                    "unsupported compression: "
+                    + cline.getOptionValue(LOPT_COMPRESS));
+        }
+        return compression;
+    }
+
     /**
      * Execute command line interface of congen.
      * @param args command line arguments
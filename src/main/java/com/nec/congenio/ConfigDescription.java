@@ -18,10 +18,13 @@ package com.nec.congenio;
 
 import java.io.File;
 import java.io.Writer;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Nullable;
 import com.nec.congenio.impl.ConfigFactory;
+import com.nec.congenio.value.xml.ShapedValue;
 
 public abstract class ConfigDescription {
     public static final String[] SUFFIXES = { "xml", "json", "properties" };
@@ -47,11 +50,122 @@ public abstract class ConfigDescription {
     /**
      * Fully evaluates the document: (1) foreach unfolding, (2) reference
      * resolution, and (3) value expression evaluation.
+     * The values are DOM-backed.
      * 
      * @return a sequence of the result values.
      */
     public abstract Iterable<ConfigValue> evaluate();
 
+    /**
+     * Fully evaluates the document, resulting in values of the
+     * given form (see {@link ValueForm}).
+     *
+     * <p>The implementation in this class converts the values of
+     * {@link #evaluate()}, which a subclass may override to create
+     * the values directly from the evaluated documents.
+     *
+     * @param form the form of the result values.
+     * @return a sequence of the result values.
+     */
+    public Iterable<ConfigValue> evaluate(final ValueForm form) {
+        final Iterable<ConfigValue> values = evaluate();
+        if (form == ValueForm.DOM) {
+            return values;
+        }
+        return new Iterable<ConfigValue>() {
+            @Override
+            public Iterator<ConfigValue> iterator() {
+                final Iterator<ConfigValue> iter = values.iterator();
+                final ShapedValue.Table shapes = new ShapedValue.Table();
+                return new Iterator<ConfigValue>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    @Override
+                    public ConfigValue next() {
+                        ConfigValue value = iter.next();
+                        if (form == ValueForm.SHAPED) {
+                            return shapes.create(value.toXml(value.getName()));
+                        }
+                        return Values.freeze(value);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Fully evaluates the document and binds each result value
+     * to an object of the given class (as {@link ConfigValue#toObject(Class)}
+     * does).
+     *
+     * <p>For a description created by this library, each unfolded
+     * document is imported (into its own DOM document) on the calling
+     * thread, and then it is resolved and bound on a worker thread
+     * (of a shared pool of as many threads as the number of
+     * processors, see {@link #evaluate(Class, ExecutorService)} to
+     * use another executor). The results are returned in index order.
+     *
+     * <p>The implementation in this class (for other subclasses)
+     * binds the values of {@link #evaluate()} on the calling thread,
+     * also in index order.
+     *
+     * @param cls the class of the objects.
+     * @return a sequence of the bound objects.
+     */
+    public <T> Iterable<T> evaluate(final Class<T> cls) {
+        final Iterable<ConfigValue> values = evaluate();
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                final Iterator<ConfigValue> iter = values.iterator();
+                return new Iterator<T>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    @Override
+                    public T next() {
+                        ConfigValue value = iter.next();
+                        if (cls.isInstance(value)) {
+                            return cls.cast(value);
+                        }
+                        return value.toObject(cls);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Fully evaluates the document and binds each result value
+     * to an object of the given class, using the given executor.
+     * This implementation does not use the executor (it is
+     * equivalent to {@link #evaluate(Class)}), which a subclass
+     * may override.
+     *
+     * @param cls the class of the objects.
+     * @param executor the executor on which documents are
+     *        evaluated and bound.
+     * @return a sequence of the bound objects in document order.
+     */
+    public <T> Iterable<T> evaluate(Class<T> cls, ExecutorService executor) {
+        return evaluate(cls);
+    }
+
     public static ConfigDescription create(File file) {
         return create(file,
                 ConfigProperties.getLibDefs(file.getParentFile()));
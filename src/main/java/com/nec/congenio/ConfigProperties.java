@@ -25,6 +25,8 @@ import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.nec.congenio.impl.path.FileLookupCache;
+
 public final class ConfigProperties {
 
     public static final String PROPERTY_FILE_NAME = "congen.properties";
@@ -42,12 +44,19 @@ public final class ConfigProperties {
      * <pre>
      * "conf=../config;server=defs/server;client=~/defs/client;test=/tmp/test"
      * </pre>
+     * A path can also point to a template bundle file (*.cgb) or to a
+     * bundle in the class path (e.g., "conf=classpath:/defs/conf.cgb").
      */
     public static final String PROP_LIBS = "congen.libs";
     public static final String LIBPATH_SEPARATOR = ";";
 
     public static final String LIBPATH_FILE_NAME = "congen-libs.properties";
 
+    /**
+     * The prefix of a lib path that refers to a class path resource.
+     */
+    public static final String CLASSPATH_SCHEME = "classpath:";
+
     private ConfigProperties() {
     }
 
@@ -95,17 +104,61 @@ public final class ConfigProperties {
     }
 
     private static Properties libDefProperties(File dir) {
-        Properties props = new Properties();
         File file = new File(dir, ConfigProperties.LIBPATH_FILE_NAME);
-        loadProperties(props, file);
-        return props;
+        return cachedProperties(file);
     }
 
     private static String findLibDefStr(File dir) {
-        Properties props = new Properties();
         File file = new File(dir, ConfigProperties.PROPERTY_FILE_NAME);
-        loadProperties(props, file);
-        return props.getProperty(ConfigProperties.PROP_LIBS);
+        return cachedProperties(file).getProperty(ConfigProperties.PROP_LIBS);
+    }
+
+    private static final Map<String, PropertyFile> PROPERTY_FILES =
+            new HashMap<String, PropertyFile>();
+
+    /**
+     * Gets properties in the given file. The file is read
+     * again only when its modification time is changed.
+     * @param file the property file.
+     * @return properties that must not be modified by the caller.
+     *         Empty if the file does not exist.
+     */
+    static Properties cachedProperties(File file) {
+        String key = file.getAbsolutePath();
+        synchronized (PROPERTY_FILES) {
+            PropertyFile pfile = PROPERTY_FILES.get(key);
+            long mtime = modifiedTime(file);
+            if (pfile == null || pfile.mtime != mtime) {
+                Properties props = new Properties();
+                if (mtime != 0L) {
+                    loadProperties(props, file);
+                }
+                pfile = new PropertyFile(mtime, props);
+                PROPERTY_FILES.put(key, pfile);
+            }
+            return pfile.props;
+        }
+    }
+
+    /**
+     * Gets the modification time of the file.
+     * @return 0 if the file does not exist.
+     */
+    private static long modifiedTime(File file) {
+        if (!FileLookupCache.getInstance().isFile(file)) {
+            return 0L;
+        }
+        return file.lastModified();
+    }
+
+    private static final class PropertyFile {
+        private final long mtime;
+        private final Properties props;
+
+        PropertyFile(long mtime, Properties props) {
+            this.mtime = mtime;
+            this.props = props;
+        }
     }
 
     /**
@@ -166,7 +219,7 @@ public final class ConfigProperties {
      * @return a file for the path.
      */
     static String toAbsolute(File baseDir, String path) {
-        if (path.startsWith("/")) {
+        if (path.startsWith("/") || path.startsWith(CLASSPATH_SCHEME)) {
             return path;
         } else if (path.startsWith(HOME)) {
             String home = System.getProperty("user.home");
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio;
+
+/**
+ * The representation of values returned by
+ * {@link ConfigDescription#evaluate(ValueForm)}.
+ * @author tatemura
+ *
+ */
+public enum ValueForm {
+    /**
+     * Values backed by DOM elements (the default).
+     */
+    DOM,
+    /**
+     * Immutable values that are not backed by DOM.
+     */
+    COMPACT,
+    /**
+     * Immutable values that share their shapes (structures)
+     * among the documents of one evaluation and hold only
+     * their leaf texts.
+     */
+    SHAPED
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import com.nec.congenio.value.AbstractValue;
+
+/**
+ * A compiled path ("a/b/c") to access config values, which
+ * can be applied to many values repeatedly.
+ *
+ * <p>A path is parsed once into steps. A step that is a plain
+ * name ("name") or a positional name ("name[2]") is resolved
+ * directly by the value (without XPath). Any other step (e.g.,
+ * "*") is given to {@link ConfigValue#findValue(String)} as it is.
+ * <pre>
+ * ValuePath path = ValuePath.compile("server/port");
+ * for (ConfigValue v : cdl.evaluate()) {
+ *     int port = path.get(v).intValue(0);
+ * }
+ * </pre>
+ * @author tatemura
+ *
+ */
+public final class ValuePath {
+    private static final Pattern STEP =
+            Pattern.compile("^([A-Za-z_][\\w.\\-]*)(?:\\[(\\d+)\\])?$");
+    private final String path;
+    private final Step[] steps;
+
+    private ValuePath(String path, Step[] steps) {
+        this.path = path;
+        this.steps = steps;
+    }
+
+    /**
+     * Compiles a path.
+     * @param path steps separated with "/".
+     * @return the compiled path.
+     */
+    public static ValuePath compile(String path) {
+        String[] names = path.split("/");
+        Step[] steps = new Step[names.length];
+        for (int i = 0; i < names.length; i++) {
+            steps[i] = Step.create(names[i]);
+        }
+        return new ValuePath(path, steps);
+    }
+
+    /**
+     * Finds the value at the path.
+     * @param value the value from which the path starts.
+     * @return null if no value is found.
+     */
+    @Nullable
+    public ConfigValue find(ConfigValue value) {
+        ConfigValue res = value;
+        for (Step s : steps) {
+            res = s.find(res);
+            if (res == null) {
+                return null;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Gets the value at the path.
+     * @param value the value from which the path starts.
+     * @return the value found.
+     * @throws ConfigException if no value is found.
+     */
+    public ConfigValue get(ConfigValue value) {
+        ConfigValue res = value;
+        for (Step s : steps) {
+            ConfigValue next = s.find(res);
+            if (next == null) {
+                throw new ConfigException("value not found:" + s.step);
+            }
+            res = next;
+        }
+        return res;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    static final class Step {
+        private final String step;
+        /**
+         * The name of a plain step (null for a step given
+         * to findValue).
+         */
+        @Nullable
+        private final String name;
+        private final int position;
+
+        Step(String step, @Nullable String name, int position) {
+            this.step = step;
+            this.name = name;
+            this.position = position;
+        }
+
+        static Step create(String step) {
+            Matcher match = STEP.matcher(step);
+            if (match.matches()) {
+                String pos = match.group(2);
+                int position = (pos != null ? Integer.parseInt(pos) - 1 : 0);
+                if (position >= 0) {
+                    return new Step(step, match.group(1).intern(), position);
+                }
+            }
+            return new Step(step, null, 0);
+        }
+
+        @Nullable
+        ConfigValue find(ConfigValue value) {
+            if (name != null && value instanceof AbstractValue) {
+                return ((AbstractValue) value).findChild(name, position);
+            }
+            return value.findValue(step);
+        }
+    }
+}
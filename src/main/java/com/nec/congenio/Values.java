@@ -21,7 +21,10 @@ import java.math.BigDecimal;
 import java.net.URL;
 import java.util.Properties;
 
+import com.nec.congenio.value.AbstractValue;
 import com.nec.congenio.value.PrimitiveValue;
+import com.nec.congenio.value.StructuralHash;
+import com.nec.congenio.value.xml.CompactValue;
 import com.nec.congenio.value.xml.XmlValueBuilder;
 import com.nec.congenio.value.xml.XmlValueFormat;
 
@@ -54,6 +57,34 @@ public final class Values {
         return XmlValueBuilder.create(name, proto);
     }
 
+    /**
+     * Computes a canonical hash of the structure and content
+     * of a value (see {@link StructuralHash}).
+     * @param value the value to be hashed.
+     * @return the hash in hex.
+     */
+    public static String structuralHash(ConfigValue value) {
+        return StructuralHash.hex(value);
+    }
+
+    /**
+     * Gets an immutable snapshot of a value, which can be
+     * published to and read by many threads without locks
+     * (a DOM-backed value is not safe to read concurrently).
+     * An immutable value of this library is returned as is.
+     *
+     * @param value the value.
+     * @return a value that answers the same as the value.
+     */
+    public static ConfigValue freeze(ConfigValue value) {
+        if (value instanceof AbstractValue) {
+            return ((AbstractValue) value).freeze();
+        } else if (value instanceof PrimitiveValue) {
+            return ((PrimitiveValue) value).freeze();
+        }
+        return CompactValue.create(value.toXml(value.getName()));
+    }
+
     public static boolean isNull(ConfigValue value) {
         return (value == NONE || value instanceof PrimitiveValue.NullValue);
     }
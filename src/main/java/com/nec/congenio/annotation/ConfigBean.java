@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that a binder of the class is generated at compile time
+ * (by {@link com.nec.congenio.annotation.processing.ConfigBeanProcessor},
+ * which must be enabled with the -processor option of javac).
+ * The binder converts a ConfigValue to an instance of the class and
+ * an instance to a ConfigValue without reflection.
+ * <ul>
+ * <li>The class must not be abstract and must have a non-private
+ * constructor without arguments (a nested class must be static).
+ * <li>Each non-static, non-transient field is bound unless it is
+ * annotated with {@link ConfigIgnore}. A non-private field is accessed
+ * directly; a private field needs a setter and a getter.
+ * <li>The name of a value is the field name unless it is given
+ * with {@link ConfigField}.
+ * </ul>
+ * A mapping that cannot be bound is reported as a compile error.
+ * 
+ * @author tatemura
+ *
+ */
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ConfigBean {
+    /**
+     * The suffix of the name of a generated binder class, which is
+     * placed in the same package as the bean class (e.g., "FooConfigBinder"
+     * for "Foo" and "Outer_InnerConfigBinder" for "Outer.Inner").
+     */
+    String BINDER_SUFFIX = "ConfigBinder";
+}
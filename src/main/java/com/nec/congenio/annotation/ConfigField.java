@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Specifies how a field of a {@link ConfigBean} class is bound
+ * to a value.
+ * 
+ * @author tatemura
+ *
+ */
+@Target({ ElementType.FIELD })
+@Retention(RetentionPolicy.SOURCE)
+public @interface ConfigField {
+    /**
+     * Gets the name of the value bound to the field.
+     * @return the name of the value (the field name if empty).
+     */
+    String name() default "";
+
+    /**
+     * Indicates that the value must be given.
+     * @return true if binding fails when the value is missing.
+     */
+    boolean required() default false;
+}
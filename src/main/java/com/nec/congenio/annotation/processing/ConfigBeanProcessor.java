@@ -0,0 +1,406 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.annotation.processing;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import com.nec.congenio.annotation.ConfigBean;
+import com.nec.congenio.annotation.ConfigField;
+import com.nec.congenio.annotation.ConfigIgnore;
+
+/**
+ * An annotation processor that generates a binder class
+ * for each class annotated with {@link ConfigBean}.
+ *
+ * <p>A binder is a subclass of
+ * {@link com.nec.congenio.value.BeanAccessor} in the package of
+ * the bean class, which is found by the binding of config values
+ * at runtime. It reads and writes fields (or calls setters and
+ * getters) directly in source code, so that binding needs no
+ * reflection. A field that cannot be bound (e.g., a private field
+ * without a setter, or a field of a generic type) is reported as
+ * an error.
+ *
+ * <p>This processor is not registered as a service (it does not
+ * run just because this library is on the class path); it is
+ * enabled explicitly with the -processor option of javac, e.g.,
+ * <pre>
+ * javac -processor com.nec.congenio.annotation.processing.ConfigBeanProcessor ...
+ * </pre>
+ * (or annotationProcessors of maven-compiler-plugin). Without
+ * it, a {@link ConfigBean} class is bound with an accessor
+ * generated at runtime or with reflection.
+ * @author tatemura
+ *
+ */
+@SupportedAnnotationTypes("com.nec.congenio.annotation.ConfigBean")
+public class ConfigBeanProcessor extends AbstractProcessor {
+    private static final String ACCESSOR = "com.nec.congenio.value.BeanAccessor";
+    private static final String VALUE = "com.nec.congenio.ConfigValue";
+    private static final String BUILDER = "com.nec.congenio.ValueBuilder";
+    private static final String EXCEPTION = "com.nec.congenio.ConfigException";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations,
+            RoundEnvironment roundEnv) {
+        for (Element elem : roundEnv.getElementsAnnotatedWith(ConfigBean.class)) {
+            if (elem.getKind() != ElementKind.CLASS) {
+                error(elem, "@ConfigBean must be set at a class");
+                continue;
+            }
+            TypeElement type = (TypeElement) elem;
+            Bean bean = createBean(type);
+            if (bean != null) {
+                write(bean);
+            }
+        }
+        return true;
+    }
+
+    private void error(Element elem, String msg) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, elem);
+    }
+
+    /**
+     * Collects the properties of a bean class.
+     * @return null if the class cannot be bound
+     *         (errors are reported).
+     */
+    @Nullable
+    private Bean createBean(TypeElement type) {
+        boolean valid = true;
+        Set<Modifier> mods = type.getModifiers();
+        if (mods.contains(Modifier.ABSTRACT) || mods.contains(Modifier.PRIVATE)) {
+            error(type, "@ConfigBean class must not be abstract or private");
+            valid = false;
+        }
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL
+                && (type.getNestingKind() != NestingKind.MEMBER
+                || !mods.contains(Modifier.STATIC))) {
+            error(type, "@ConfigBean class must be a top-level or static nested class");
+            valid = false;
+        }
+        if (!hasDefaultConstructor(type)) {
+            error(type, "@ConfigBean class must have a non-private constructor without arguments");
+            valid = false;
+        }
+        Bean bean = new Bean(type);
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            Set<Modifier> fmods = field.getModifiers();
+            if (fmods.contains(Modifier.STATIC) || fmods.contains(Modifier.TRANSIENT)
+                    || field.getAnnotation(ConfigIgnore.class) != null) {
+                continue;
+            }
+            Property prop = createProperty(type, field);
+            if (prop != null) {
+                bean.properties.add(prop);
+            } else {
+                valid = false;
+            }
+        }
+        return valid ? bean : null;
+    }
+
+    private boolean hasDefaultConstructor(TypeElement type) {
+        for (ExecutableElement cons : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (cons.getParameters().isEmpty()
+                    && !cons.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private Property createProperty(TypeElement type, VariableElement field) {
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror fieldType = field.asType();
+        String fieldName = field.getSimpleName().toString();
+        ConfigField conf = field.getAnnotation(ConfigField.class);
+        String name = (conf != null && !conf.name().isEmpty() ? conf.name() : fieldName);
+        boolean required = (conf != null && conf.required());
+        String converter = null;
+        switch (fieldType.getKind()) {
+        case INT:
+            converter = "toInt";
+            break;
+        case LONG:
+            converter = "toLong";
+            break;
+        case DOUBLE:
+            converter = "toDouble";
+            break;
+        case BOOLEAN:
+            converter = "toBoolean";
+            break;
+        case ARRAY:
+        case DECLARED:
+            if (!types.isSameType(fieldType, types.erasure(fieldType))) {
+                error(field, "generic type is not supported: " + fieldType);
+                return null;
+            }
+            break;
+        default:
+            error(field, "type is not supported: " + fieldType);
+            return null;
+        }
+        String cap = fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
+        String setter = null;
+        String getter = null;
+        if (field.getModifiers().contains(Modifier.PRIVATE)) {
+            setter = findMethod(type, "set" + cap, fieldType, null);
+            getter = findMethod(type, "get" + cap, null, fieldType);
+            if (getter == null && fieldType.getKind() == TypeKind.BOOLEAN) {
+                getter = findMethod(type, "is" + cap, null, fieldType);
+            }
+            if (setter == null || getter == null) {
+                error(field, "private field needs a setter and a getter: " + fieldName);
+                return null;
+            }
+        }
+        return new Property(name, fieldName, fieldType.toString(),
+                converter, setter, getter, required);
+    }
+
+    /**
+     * Finds a non-private method of the class (or its super
+     * classes).
+     * @param paramType the type of the argument (null for a
+     *        method without arguments).
+     * @param returnType the type to which the return type
+     *        must be assignable (null if not checked).
+     * @return the name of the method, or null if not found.
+     */
+    @Nullable
+    private String findMethod(TypeElement type, String name,
+            @Nullable TypeMirror paramType, @Nullable TypeMirror returnType) {
+        Types types = processingEnv.getTypeUtils();
+        List<? extends Element> members =
+                processingEnv.getElementUtils().getAllMembers(type);
+        for (ExecutableElement method : ElementFilter.methodsIn(members)) {
+            if (!method.getSimpleName().contentEquals(name)
+                    || method.getModifiers().contains(Modifier.PRIVATE)
+                    || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            List<? extends VariableElement> params = method.getParameters();
+            if (paramType != null) {
+                if (params.size() == 1
+                        && types.isSameType(params.get(0).asType(), paramType)) {
+                    return name;
+                }
+            } else if (params.isEmpty()
+                    && (returnType == null
+                    || types.isAssignable(method.getReturnType(), returnType))) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private void write(Bean bean) {
+        try {
+            JavaFileObject file = processingEnv.getFiler()
+                    .createSourceFile(bean.binderName(), bean.type);
+            PrintWriter out = new PrintWriter(file.openWriter());
+            try {
+                bean.write(out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException ex) {
+            error(bean.type, "failed to generate a binder: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Gets the name of the binder class of a bean class.
+     * @param binaryName the binary name of the bean class
+     *        (e.g., "p.Outer$Inner").
+     * @return the binary name of the binder class.
+     */
+    public static String binderName(String binaryName) {
+        int idx = binaryName.lastIndexOf('.');
+        String pkg = binaryName.substring(0, idx + 1);
+        String name = binaryName.substring(idx + 1).replace('$', '_');
+        return pkg + name + ConfigBean.BINDER_SUFFIX;
+    }
+
+    final class Bean {
+        private final TypeElement type;
+        private final List<Property> properties = new ArrayList<Property>();
+
+        Bean(TypeElement type) {
+            this.type = type;
+        }
+
+        String binderName() {
+            return ConfigBeanProcessor.binderName(processingEnv.getElementUtils()
+                    .getBinaryName(type).toString());
+        }
+
+        void write(PrintWriter out) {
+            String binder = binderName();
+            int idx = binder.lastIndexOf('.');
+            String beanType = type.getQualifiedName().toString();
+            if (idx > 0) {
+                out.println("package " + binder.substring(0, idx) + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Binder of {@link " + beanType + "}");
+            out.println(" * (generated by " + ConfigBeanProcessor.class.getName() + ").");
+            out.println(" */");
+            out.println("public final class " + binder.substring(idx + 1)
+                    + " extends " + ACCESSOR + " {");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Object newInstance() {");
+            out.println("        return new " + beanType + "();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void bind(Object obj, " + VALUE + " value) {");
+            out.println("        " + beanType + " bean = (" + beanType + ") obj;");
+            out.println("        " + VALUE + " v;");
+            for (Property p : properties) {
+                p.writeBind(out);
+            }
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void build(" + BUILDER + " builder, Object obj) {");
+            out.println("        " + beanType + " bean = (" + beanType + ") obj;");
+            for (Property p : properties) {
+                p.writeBuild(out);
+            }
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    static final class Property {
+        private final String name;
+        private final String field;
+        private final String type;
+        /**
+         * The method of BeanAccessor that converts a value
+         * to a primitive (null for an object type).
+         */
+        @Nullable
+        private final String converter;
+        @Nullable
+        private final String setter;
+        @Nullable
+        private final String getter;
+        private final boolean required;
+
+        Property(String name, String field, String type,
+                @Nullable String converter, @Nullable String setter,
+                @Nullable String getter, boolean required) {
+            this.name = name;
+            this.field = field;
+            this.type = type;
+            this.converter = converter;
+            this.setter = setter;
+            this.getter = getter;
+            this.required = required;
+        }
+
+        private String literal() {
+            StringBuilder sb = new StringBuilder("\"");
+            for (char c : name.toCharArray()) {
+                if (c == '"' || c == '\\') {
+                    sb.append('\\');
+                }
+                sb.append(c);
+            }
+            return sb.append('"').toString();
+        }
+
+        /**
+         * Writes an assignment of a value. A setter call is
+         * guarded so that its exception is wrapped as the
+         * reflective binding does (the value is converted
+         * before the call, outside the guard).
+         */
+        private void writeAssign(PrintWriter out, String indent, String expr) {
+            if (setter == null) {
+                out.println(indent + "bean." + field + " = " + expr + ";");
+                return;
+            }
+            out.println(indent + type + " x = " + expr + ";");
+            out.println(indent + "try {");
+            out.println(indent + "    bean." + setter + "(x);");
+            out.println(indent + "} catch (Throwable th) {");
+            out.println(indent + "    throw setterFailed(th);");
+            out.println(indent + "}");
+        }
+
+        void writeBind(PrintWriter out) {
+            out.println("        v = child(value, " + literal() + ");");
+            out.println("        if (v != null) {");
+            if (converter != null) {
+                writeAssign(out, "            ", converter + "(v)");
+            } else {
+                out.println("            Object o = toObject(v, " + type + ".class);");
+                out.println("            if (o != null) {");
+                writeAssign(out, "                ", "(" + type + ") o");
+                out.println("            }");
+            }
+            if (required) {
+                out.println("        } else {");
+                out.println("            throw new " + EXCEPTION
+                        + "(\"value not found: \" + " + literal() + ");");
+            }
+            out.println("        }");
+        }
+
+        void writeBuild(PrintWriter out) {
+            String expr = (getter != null ? "bean." + getter + "()" : "bean." + field);
+            out.println("        set(builder, " + literal() + ", " + expr + ");");
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import javax.annotation.Nullable;
+
+/**
+ * Containers of the single-file output of generated
+ * values (see {@link ArchiveValues}).
+ * @author tatemura
+ *
+ */
+public enum ArchiveFormat {
+    /**
+     * Values are concatenated (e.g., JSON Lines or
+     * a stream of XML documents).
+     */
+    STREAM(""),
+    /**
+     * Values are stored as files in a tar archive.
+     */
+    TAR(".tar"),
+    /**
+     * Values are stored (without compression) as files
+     * in a zip archive.
+     */
+    ZIP(".zip");
+
+    private final String suffix;
+
+    private ArchiveFormat(String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * Finds the archive format for the given name.
+     * @param name the name of archive format.
+     * @return an archive format if it is found. null otherwise.
+     */
+    @Nullable
+    public static ArchiveFormat find(String name) {
+        String normalized = name.trim().toUpperCase();
+        try {
+            return ArchiveFormat.valueOf(normalized);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the name of the archive file.
+     * @param format the format of values in the archive.
+     * @return the file name.
+     */
+    public String fileName(ValueOutputFormatter format) {
+        if (this == STREAM) {
+            return ArchiveValues.ARCHIVE_NAME + format.fileSuffix();
+        }
+        return ArchiveValues.ARCHIVE_NAME + suffix;
+    }
+}
@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nullable;
+
+import com.nec.congenio.ConfigException;
+
+/**
+ * Reader of an archive written by {@link ArchiveValues}
+ * with its index file, which reads a value at its offset.
+ *
+ * <p>The index file ("out.jsonl.idx" for "out.jsonl") has
+ * a fixed-size record per value in the order of indexes:
+ * the index (int), the byte offset of the value in
+ * the archive (long) and its length in bytes (long).
+ * A record is found with binary search on the index file.
+ *
+ * <p>If the archive is compressed with gzip blocks (see
+ * {@link ParallelGzipOutputStream}), the offsets are those in
+ * the uncompressed archive, and a value is decompressed from
+ * the block that contains its offset (found in the block file,
+ * e.g., "out.jsonl.gz.blocks").
+ * @author tatemura
+ *
+ */
+public final class ArchiveIndex implements Closeable {
+    public static final String INDEX_SUFFIX = ".idx";
+    /**
+     * The size of a record in the index file.
+     */
+    public static final int RECORD_SIZE = 4 + 8 + 8;
+    public static final String BLOCK_SUFFIX = ".blocks";
+
+    private final RandomAccessFile index;
+    private final RandomAccessFile archive;
+    private final int size;
+    /**
+     * The uncompressed offsets of gzip blocks (null if
+     * the archive is not compressed).
+     */
+    @Nullable
+    private final long[] blockStarts;
+    @Nullable
+    private final long[] blockOffsets;
+
+    private ArchiveIndex(RandomAccessFile index, RandomAccessFile archive,
+            File blockFile) throws IOException {
+        this.index = index;
+        this.archive = archive;
+        long len = index.length();
+        if (len % RECORD_SIZE != 0) {
+            throw new ConfigException("broken index file (size=" + len + ")");
+        }
+        this.size = (int) (len / RECORD_SIZE);
+        if (blockFile.exists()) {
+            long blen = blockFile.length();
+            if (blen % ParallelGzipOutputStream.BLOCK_RECORD_SIZE != 0) {
+                throw new ConfigException("broken block file (size=" + blen + ")");
+            }
+            int blocks = (int) (blen / ParallelGzipOutputStream.BLOCK_RECORD_SIZE);
+            blockStarts = new long[blocks];
+            blockOffsets = new long[blocks];
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(blockFile)));
+            try {
+                for (int i = 0; i < blocks; i++) {
+                    blockStarts[i] = in.readLong();
+                    blockOffsets[i] = in.readLong();
+                }
+            } finally {
+                in.close();
+            }
+        } else {
+            blockStarts = null;
+            blockOffsets = null;
+        }
+    }
+
+    /**
+     * Gets the index file of an archive.
+     * @param archive the archive file.
+     * @return the index file.
+     */
+    public static File indexFileOf(File archive) {
+        return new File(archive.getPath() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Gets the block file of an archive compressed
+     * with gzip blocks.
+     * @param archive the archive file.
+     * @return the block file.
+     */
+    public static File blockFileOf(File archive) {
+        return new File(archive.getPath() + BLOCK_SUFFIX);
+    }
+
+    /**
+     * Opens an archive with its index file.
+     * @param archive the archive file.
+     * @return the reader of the archive.
+     * @throws IOException if the files cannot be opened.
+     */
+    public static ArchiveIndex open(File archive) throws IOException {
+        RandomAccessFile index = new RandomAccessFile(indexFileOf(archive), "r");
+        try {
+            RandomAccessFile file = new RandomAccessFile(archive, "r");
+            try {
+                return new ArchiveIndex(index, file, blockFileOf(archive));
+            } catch (IOException ex) {
+                file.close();
+                throw ex;
+            }
+        } catch (IOException ex) {
+            index.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Gets the number of values in the archive.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the index of the value at the given position.
+     * @param pos the position (0 &lt;= pos &lt; size()).
+     * @return the index of the value.
+     * @throws IOException if reading fails.
+     */
+    public int indexAt(int pos) throws IOException {
+        index.seek((long) pos * RECORD_SIZE);
+        return index.readInt();
+    }
+
+    /**
+     * Finds the position of the record of a value.
+     * @return -1 if there is no such value.
+     */
+    private int find(int idx) throws IOException {
+        int low = 0;
+        int high = size - 1;
+        /**
+         * all the values are in the archive unless they
+         * are filtered.
+         */
+        if (idx <= high && indexAt(idx) == idx) {
+            return idx;
+        }
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int val = indexAt(mid);
+            if (val < idx) {
+                low = mid + 1;
+            } else if (val > idx) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the byte offset of a value in the archive.
+     * @param idx the index of the value.
+     * @return -1 if there is no such value.
+     * @throws IOException if reading fails.
+     */
+    public long offset(int idx) throws IOException {
+        int pos = find(idx);
+        if (pos < 0) {
+            return -1;
+        }
+        index.seek((long) pos * RECORD_SIZE + 4);
+        return index.readLong();
+    }
+
+    /**
+     * Reads the bytes of a value.
+     * @param idx the index of the value.
+     * @return null if there is no such value.
+     * @throws IOException if reading fails.
+     */
+    @Nullable
+    public byte[] read(int idx) throws IOException {
+        int pos = find(idx);
+        if (pos < 0) {
+            return null;
+        }
+        index.seek((long) pos * RECORD_SIZE + 4);
+        long offset = index.readLong();
+        long length = index.readLong();
+        byte[] data = new byte[(int) length];
+        if (blockStarts != null) {
+            readCompressed(offset, data);
+        } else {
+            archive.seek(offset);
+            archive.readFully(data);
+        }
+        return data;
+    }
+
+    /**
+     * Reads bytes at an uncompressed offset, decompressing
+     * from the block that contains the offset (a gzip stream
+     * continues to the following blocks).
+     */
+    private void readCompressed(long offset, byte[] data) throws IOException {
+        int pos = Arrays.binarySearch(blockStarts, offset);
+        if (pos < 0) {
+            pos = -pos - 2;
+        }
+        if (pos < 0) {
+            throw new ConfigException("offset not in blocks: " + offset);
+        }
+        archive.seek(blockOffsets[pos]);
+        DataInputStream in = new DataInputStream(
+                new GZIPInputStream(new ArchiveInputStream(archive)));
+        try {
+            long skip = offset - blockStarts[pos];
+            while (skip > 0) {
+                long skipped = in.skip(skip);
+                if (skipped <= 0) {
+                    throw new EOFException("offset beyond the archive: " + offset);
+                }
+                skip -= skipped;
+            }
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the text of a value.
+     * @param idx the index of the value.
+     * @return null if there is no such value.
+     * @throws IOException if reading fails.
+     */
+    @Nullable
+    public String readText(int idx) throws IOException {
+        byte[] data = read(idx);
+        if (data == null) {
+            return null;
+        }
+        return new String(data, ArchiveValues.UTF8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            index.close();
+        } finally {
+            archive.close();
+        }
+    }
+
+    /**
+     * A stream that reads the archive from its current
+     * position, which does not close the archive.
+     */
+    static final class ArchiveInputStream extends InputStream {
+        private final RandomAccessFile file;
+
+        ArchiveInputStream(RandomAccessFile file) {
+            this.file = file;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return file.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return file.read(b, off, len);
+        }
+
+        /**
+         * Gives the rest of the file, with which a gzip stream
+         * decides whether another member follows.
+         */
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(file.length() - file.getFilePointer(),
+                    Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.xml.Compression;
+
+/**
+ * A value handler that writes all the values into a single
+ * archive file "out" (e.g., "out.jsonl", "out.tar")
+ * in the directory, instead of a file per value.
+ *
+ * <p>The location of each value is recorded in an index
+ * file (see {@link ArchiveIndex}) so that a value can be read
+ * without scanning the archive. Values are written in UTF-8.
+ *
+ * <p>A stream or tar archive can be compressed with gzip
+ * ("out.jsonl.gz", "out.tar.gz"), in blocks compressed on
+ * a worker pool (see {@link ParallelGzipOutputStream}). The
+ * offsets in the index are then the offsets in the
+ * uncompressed archive.
+ * @author tatemura
+ *
+ */
+public class ArchiveValues implements ValueHandler {
+    public static final String ARCHIVE_NAME = "out";
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File dir;
+    private final File file;
+    private final ValueOutputFormatter format;
+    private final ArchiveFormat archive;
+    private final Compression compression;
+    private CountingOutputStream out;
+    private DataOutputStream index;
+    private Container container;
+
+    /**
+     * Creates ArchiveValues instance.
+     * @param dir the directory where the result is saved
+     * @param format output format for the values
+     * @param archive the container of the values
+     */
+    public ArchiveValues(File dir, ValueOutputFormatter format,
+            ArchiveFormat archive) {
+        this(dir, format, archive, Compression.NONE);
+    }
+
+    /**
+     * Creates ArchiveValues instance.
+     * @param dir the directory where the result is saved
+     * @param format output format for the values
+     * @param archive the container of the values
+     * @param compression compression of the archive
+     *        (NONE or GZIP, which is not supported for ZIP).
+     */
+    public ArchiveValues(File dir, ValueOutputFormatter format,
+            ArchiveFormat archive, Compression compression) {
+        if (compression == Compression.DEFLATE
+                || compression != Compression.NONE && archive == ArchiveFormat.ZIP) {
+            throw new ConfigException("compression " + compression.name().toLowerCase()
+                    + " is not supported for archive " + archive.name().toLowerCase());
+        }
+        this.dir = dir;
+        dir.mkdirs();
+        this.file = new File(dir, archive.fileName(format) + compression.suffix());
+        this.format = format;
+        this.archive = archive;
+        this.compression = compression;
+    }
+
+    /**
+     * Gets the archive file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void init(ConfigDescription cdl) throws Exception {
+        SaveValues.saveSnapshot(dir, cdl);
+        OutputStream fout = new BufferedOutputStream(new FileOutputStream(file));
+        if (compression == Compression.GZIP) {
+            fout = new ParallelGzipOutputStream(fout, new BufferedOutputStream(
+                    new FileOutputStream(ArchiveIndex.blockFileOf(file))));
+        }
+        out = new CountingOutputStream(fout);
+        index = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(ArchiveIndex.indexFileOf(file))));
+        switch (archive) {
+        case TAR:
+            container = new TarContainer(out, format);
+            break;
+        case ZIP:
+            container = new ZipContainer(out, format);
+            break;
+        default:
+            container = new StreamContainer(out, format);
+        }
+    }
+
+    @Override
+    public void value(int idx, ConfigValue value) throws Exception {
+        long offset = container.write(idx, value);
+        index.writeInt(idx);
+        index.writeLong(offset);
+        index.writeLong(container.length());
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            if (container != null) {
+                container.finish();
+            }
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+            if (index != null) {
+                index.close();
+            }
+        }
+    }
+
+    /**
+     * A byte stream that counts the written bytes. Flushing
+     * is not propagated (the underlying stream is flushed
+     * when it is closed), which lets a writer on this stream
+     * be flushed per value.
+     */
+    static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        long count() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * A byte buffer that gives its content without copy.
+     */
+    static final class Buffer extends ByteArrayOutputStream {
+        byte[] bytes() {
+            return buf;
+        }
+    }
+
+    abstract static class Container {
+        protected final CountingOutputStream out;
+        protected final ValueOutputFormatter format;
+        protected long length;
+
+        Container(CountingOutputStream out, ValueOutputFormatter format) {
+            this.out = out;
+            this.format = format;
+        }
+
+        /**
+         * Writes a value.
+         * @return the offset of the value in the archive.
+         */
+        abstract long write(int idx, ConfigValue value) throws IOException;
+
+        /**
+         * Gets the length (in bytes) of the last written value.
+         */
+        long length() {
+            return length;
+        }
+
+        abstract void finish() throws IOException;
+    }
+
+    /**
+     * Concatenates values (with the separators of the
+     * format, which are not included in the values).
+     */
+    static class StreamContainer extends Container {
+        private final Writer writer;
+
+        StreamContainer(CountingOutputStream out, ValueOutputFormatter format) {
+            super(out, format);
+            this.writer = new OutputStreamWriter(out, UTF8);
+        }
+
+        @Override
+        long write(int idx, ConfigValue value) throws IOException {
+            format.beginValue(idx, writer);
+            writer.flush();
+            long offset = out.count();
+            format.write(value, writer);
+            writer.flush();
+            length = out.count() - offset;
+            return offset;
+        }
+
+        @Override
+        void finish() throws IOException {
+            writer.flush();
+        }
+    }
+
+    /**
+     * A container that needs the size of a value before
+     * the value is written.
+     */
+    abstract static class BufferedContainer extends Container {
+        private final Buffer buffer = new Buffer();
+        private final Writer writer = new OutputStreamWriter(buffer, UTF8);
+
+        BufferedContainer(CountingOutputStream out, ValueOutputFormatter format) {
+            super(out, format);
+        }
+
+        @Override
+        long write(int idx, ConfigValue value) throws IOException {
+            buffer.reset();
+            format.write(value, writer);
+            writer.flush();
+            length = buffer.size();
+            return write(SaveValues.fileName(idx, format),
+                    buffer.bytes(), buffer.size());
+        }
+
+        abstract long write(String name, byte[] data, int size) throws IOException;
+    }
+
+    /**
+     * Writes values as files of a ustar archive.
+     */
+    static class TarContainer extends BufferedContainer {
+        private static final int BLOCK = 512;
+        private static final int NAME_LEN = 100;
+        private static final int MODE = 0644;
+        private final byte[] header = new byte[BLOCK];
+        private final long mtime = System.currentTimeMillis() / 1000;
+
+        TarContainer(CountingOutputStream out, ValueOutputFormatter format) {
+            super(out, format);
+        }
+
+        @Override
+        long write(String name, byte[] data, int size) throws IOException {
+            Arrays.fill(header, (byte) 0);
+            byte[] nameBytes = name.getBytes(UTF8);
+            System.arraycopy(nameBytes, 0, header, 0,
+                    Math.min(nameBytes.length, NAME_LEN));
+            octal(100, 8, MODE);
+            octal(108, 8, 0);
+            octal(116, 8, 0);
+            octal(124, 12, size);
+            octal(136, 12, mtime);
+            Arrays.fill(header, 148, 156, (byte) ' ');
+            header[156] = '0';
+            System.arraycopy("ustar".getBytes(UTF8), 0, header, 257, 5);
+            header[263] = '0';
+            header[264] = '0';
+            long sum = 0;
+            for (byte b : header) {
+                sum += b & 0xff;
+            }
+            octal(148, 7, sum);
+            out.write(header);
+            long offset = out.count();
+            out.write(data, 0, size);
+            int pad = (BLOCK - size % BLOCK) % BLOCK;
+            for (int i = 0; i < pad; i++) {
+                out.write(0);
+            }
+            return offset;
+        }
+
+        /**
+         * Puts a zero-padded octal number terminated by NUL.
+         */
+        private void octal(int off, int len, long value) {
+            long val = value;
+            for (int i = off + len - 2; i >= off; i--) {
+                header[i] = (byte) ('0' + (val & 7));
+                val >>>= 3;
+            }
+            header[off + len - 1] = 0;
+        }
+
+        @Override
+        void finish() throws IOException {
+            out.write(new byte[BLOCK * 2]);
+        }
+    }
+
+    /**
+     * Writes values as stored (uncompressed) entries of a
+     * zip archive, so that a value can be read at its offset.
+     */
+    static class ZipContainer extends BufferedContainer {
+        private final ZipOutputStream zip;
+        private final CRC32 crc = new CRC32();
+
+        ZipContainer(CountingOutputStream out, ValueOutputFormatter format) {
+            super(out, format);
+            this.zip = new ZipOutputStream(out);
+        }
+
+        @Override
+        long write(String name, byte[] data, int size) throws IOException {
+            ZipEntry entry = new ZipEntry(name);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            crc.reset();
+            crc.update(data, 0, size);
+            entry.setCrc(crc.getValue());
+            /**
+             * the local header is written at putNextEntry
+             */
+            zip.putNextEntry(entry);
+            long offset = out.count();
+            zip.write(data, 0, size);
+            zip.closeEntry();
+            return offset;
+        }
+
+        @Override
+        void finish() throws IOException {
+            zip.finish();
+        }
+    }
+}
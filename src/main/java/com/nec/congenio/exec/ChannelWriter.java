@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A writer that encodes characters in UTF-8 and writes
+ * the bytes to a channel (e.g., a FileChannel) in large chunks.
+ *
+ * <p>The char and (direct) byte buffers, and the encoder are
+ * reused: a writer takes them from the pool of the thread when
+ * it is created, and returns them when it is closed. Bytes are
+ * written to the channel only when the buffer is full or when
+ * the writer is flushed or closed.
+ * @author tatemura
+ *
+ */
+public final class ChannelWriter extends Writer {
+    private static final int CHAR_BUFFER_SIZE = 8192;
+    private static final int BYTE_BUFFER_SIZE = 32768;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final ThreadLocal<Buffers> POOL = new ThreadLocal<Buffers>();
+
+    private final WritableByteChannel channel;
+    private final boolean sync;
+    private final boolean closeChannel;
+    private Buffers buffers;
+
+    /**
+     * Creates a writer on a channel.
+     * @param channel the channel to which bytes are written.
+     * @param sync true to force the content to the storage
+     *        when the writer is closed (if the channel is
+     *        a FileChannel).
+     * @param closeChannel true to close the channel when the
+     *        writer is closed.
+     */
+    public ChannelWriter(WritableByteChannel channel,
+            boolean sync, boolean closeChannel) {
+        this.channel = channel;
+        this.sync = sync;
+        this.closeChannel = closeChannel;
+        Buffers pooled = POOL.get();
+        if (pooled != null) {
+            POOL.remove();
+            this.buffers = pooled;
+        } else {
+            this.buffers = new Buffers();
+        }
+    }
+
+    /**
+     * Opens a writer to a file, which is not synchronized
+     * to the storage at close.
+     * @param file the file to be written.
+     * @return a new writer.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static ChannelWriter open(File file) throws IOException {
+        return open(file, false);
+    }
+
+    /**
+     * Opens a writer to a file.
+     * @param file the file to be written.
+     * @param sync true to force the content to the storage
+     *        when the writer is closed.
+     * @return a new writer.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static ChannelWriter open(File file, boolean sync) throws IOException {
+        FileChannel channel = new FileOutputStream(file).getChannel();
+        return new ChannelWriter(channel, sync, true);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        CharBuffer chars = buffers().chars;
+        int pos = off;
+        int end = off + len;
+        while (pos < end) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int n = Math.min(end - pos, chars.remaining());
+            chars.put(cbuf, pos, n);
+            pos += n;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        CharBuffer chars = buffers().chars;
+        int pos = off;
+        int end = off + len;
+        while (pos < end) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int n = Math.min(end - pos, chars.remaining());
+            chars.put(str, pos, pos + n);
+            pos += n;
+        }
+    }
+
+    @Override
+    public void write(int chr) throws IOException {
+        CharBuffer chars = buffers().chars;
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put((char) chr);
+    }
+
+    private Buffers buffers() throws IOException {
+        if (buffers == null) {
+            throw new IOException("writer closed");
+        }
+        return buffers;
+    }
+
+    /**
+     * Encodes the buffered characters (except an incomplete
+     * surrogate pair unless it is the end of input).
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        CharBuffer chars = buffers.chars;
+        ByteBuffer bytes = buffers.bytes;
+        CharsetEncoder encoder = buffers.encoder;
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        if (endOfInput) {
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            encoder.reset();
+        }
+        chars.compact();
+    }
+
+    private void drain() throws IOException {
+        ByteBuffer bytes = buffers.bytes;
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        buffers();
+        encode(false);
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffers == null) {
+            return;
+        }
+        try {
+            encode(true);
+            drain();
+            if (sync && channel instanceof FileChannel) {
+                ((FileChannel) channel).force(false);
+            }
+        } finally {
+            buffers.clear();
+            POOL.set(buffers);
+            buffers = null;
+            if (closeChannel) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * The buffers and the encoder used by a writer.
+     */
+    static final class Buffers {
+        private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+        private final CharsetEncoder encoder = UTF8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        void clear() {
+            chars.clear();
+            bytes.clear();
+            encoder.reset();
+        }
+    }
+}
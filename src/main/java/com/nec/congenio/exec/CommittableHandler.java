@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+/**
+ * A value handler that finalizes its output only when
+ * the execution succeeds (e.g., removal of stale files).
+ * An executor calls {@link #commit(boolean)} after all the
+ * values are handled without error, and then
+ * {@link ValueHandler#close()}, which is called even if
+ * the execution fails.
+ * @author tatemura
+ *
+ */
+public interface CommittableHandler extends ValueHandler {
+
+    /**
+     * Commits the output of a successful execution.
+     * @param complete true if every document was given to
+     *        the handler (i.e., no document was excluded
+     *        by a filter).
+     * @throws Exception for any issue.
+     */
+    void commit(boolean complete) throws Exception;
+}
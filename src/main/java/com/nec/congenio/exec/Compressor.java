@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.xml.Compression;
+
+/**
+ * Compression of output files on a worker pool, which lets
+ * the generation of values go on while the previous values
+ * are compressed and written.
+ *
+ * <p>The number of files being compressed is bounded
+ * (the caller waits when the bound is reached). The first
+ * failure of a task is thrown by a later call of
+ * {@link #write(File, byte[], int)} or {@link #await()}.
+ * After a failure, the remaining tasks are skipped. The file of
+ * a failed or skipped task is removed (so that it does not keep
+ * stale content) and is reported by {@link #getDropped()}.
+ * @author tatemura
+ *
+ */
+final class Compressor {
+    private static final int AHEAD_PER_THREAD = 4;
+    @Nullable
+    private static ExecutorService sharedExecutor;
+
+    private final Compression compression;
+    @Nullable
+    private final ExecutorService executor;
+    private final int ahead;
+    private final Semaphore permits;
+    private final boolean sync;
+    private volatile Throwable failure;
+    private final List<File> dropped =
+            Collections.synchronizedList(new ArrayList<File>());
+
+    Compressor(Compression compression, boolean sync) {
+        this(compression, sharedExecutor(), threads() * AHEAD_PER_THREAD, sync);
+    }
+
+    /**
+     * Creates a compressor.
+     * @param compression the compression applied to files.
+     * @param executor the executor on which files are compressed
+     *        (null to compress in the calling thread).
+     * @param ahead the max number of files being compressed.
+     * @param sync true to force each file to the storage
+     *        when it is closed.
+     */
+    Compressor(Compression compression,
+            @Nullable ExecutorService executor, int ahead, boolean sync) {
+        this.compression = compression;
+        this.executor = executor;
+        this.ahead = Math.max(ahead, 1);
+        this.permits = new Semaphore(this.ahead);
+        this.sync = sync;
+    }
+
+    static int threads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Gets the executor shared by compressions, which
+     * runs daemon threads.
+     * @return null if data is compressed in the calling
+     *         thread.
+     */
+    @Nullable
+    static synchronized ExecutorService sharedExecutor() {
+        int threads = threads();
+        if (threads <= 1) {
+            return null;
+        }
+        if (sharedExecutor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            sharedExecutor = Executors.newFixedThreadPool(threads,
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable task) {
+                            Thread th = new Thread(task,
+                                    "congen-compress-" + count.incrementAndGet());
+                            th.setDaemon(true);
+                            return th;
+                        }
+                    });
+        }
+        return sharedExecutor;
+    }
+
+    Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Compresses data and writes it to a file.
+     * @param file the file to be written.
+     * @param data the uncompressed data, which must not be
+     *        modified by the caller after this call.
+     * @param len the length of the data.
+     * @throws IOException if writing fails (in this call or
+     *         in a previous task).
+     */
+    void write(final File file, final byte[] data, final int len)
+            throws IOException {
+        try {
+            check();
+        } catch (IOException ex) {
+            drop(file);
+            throw ex;
+        }
+        if (executor == null) {
+            boolean done = false;
+            try {
+                save(file, compression.compress(data, 0, len));
+                done = true;
+            } finally {
+                if (!done) {
+                    drop(file);
+                }
+            }
+            return;
+        }
+        acquire(1);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean done = false;
+                    try {
+                        if (failure == null) {
+                            save(file, compression.compress(data, 0, len));
+                            done = true;
+                        }
+                    } catch (Throwable th) {
+                        failure = th;
+                    } finally {
+                        if (!done) {
+                            drop(file);
+                        }
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            drop(file);
+            permits.release();
+            throw ex;
+        }
+    }
+
+    private void drop(File file) {
+        file.delete();
+        dropped.add(file);
+    }
+
+    /**
+     * Gets the files that are not written because their
+     * tasks failed or were skipped after a failure.
+     * @return the removed files.
+     */
+    List<File> getDropped() {
+        synchronized (dropped) {
+            return new ArrayList<File>(dropped);
+        }
+    }
+
+    /**
+     * Waits for all the files to be written.
+     * @throws IOException if writing a file failed.
+     */
+    void await() throws IOException {
+        if (executor != null) {
+            acquire(ahead);
+            permits.release(ahead);
+        }
+        check();
+    }
+
+    private void acquire(int count) {
+        try {
+            permits.acquire(count);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ConfigException("compression interrupted", ex);
+        }
+    }
+
+    private void check() throws IOException {
+        Throwable th = failure;
+        if (th == null) {
+            return;
+        } else if (th instanceof IOException) {
+            throw (IOException) th;
+        } else if (th instanceof RuntimeException) {
+            throw (RuntimeException) th;
+        } else if (th instanceof Error) {
+            throw (Error) th;
+        }
+        throw new ConfigException("compression failed", th);
+    }
+
+    private void save(File file, byte[] compressed) throws IOException {
+        boolean done = false;
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(compressed);
+            if (sync) {
+                out.getFD().sync();
+            }
+            done = true;
+        } finally {
+            out.close();
+            if (!done) {
+                file.delete();
+            }
+        }
+    }
+}
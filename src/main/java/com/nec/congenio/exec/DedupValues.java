@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import java.io.File;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.value.StructuralHash;
+
+/**
+ * A value handler that gives each distinct value (by its
+ * {@link StructuralHash}) to another handler only once.
+ *
+ * <p>The mapping from the index of each value to the index of
+ * its representative (the first value with the same
+ * content) is written to a mapping file, a line per value
+ * with the two indexes separated by a tab.
+ * @author tatemura
+ *
+ */
+public class DedupValues implements CommittableHandler {
+    private final ValueHandler handler;
+    private final File mappingFile;
+    private final Map<String, Integer> representatives =
+            new HashMap<String, Integer>();
+    private Writer mapping;
+    private int duplicates;
+
+    /**
+     * Creates DedupValues instance.
+     * @param handler the handler of distinct values.
+     * @param mappingFile the file to which the mapping is written.
+     */
+    public DedupValues(ValueHandler handler, File mappingFile) {
+        this.handler = handler;
+        this.mappingFile = mappingFile;
+    }
+
+    @Override
+    public void init(ConfigDescription cdl) throws Exception {
+        mapping = ChannelWriter.open(mappingFile);
+        handler.init(cdl);
+    }
+
+    @Override
+    public void value(int idx, ConfigValue value) throws Exception {
+        String hash = StructuralHash.hex(value);
+        Integer rep = representatives.get(hash);
+        if (rep == null) {
+            rep = idx;
+            representatives.put(hash, rep);
+            handler.value(idx, value);
+        } else {
+            duplicates++;
+        }
+        mapping.write(Integer.toString(idx));
+        mapping.write('\t');
+        mapping.write(Integer.toString(rep));
+        mapping.write('\n');
+    }
+
+    /**
+     * Gets the number of distinct values handled so far.
+     */
+    public int getDistinct() {
+        return representatives.size();
+    }
+
+    /**
+     * Gets the number of values skipped as duplicates.
+     */
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    @Override
+    public void commit(boolean complete) throws Exception {
+        if (handler instanceof CommittableHandler) {
+            ((CommittableHandler) handler).commit(complete);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            handler.close();
+        } finally {
+            if (mapping != null) {
+                mapping.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.value.xml.XmlValue;
+import com.nec.congenio.xml.Xml;
+
+/**
+ * Reader of values written by {@link DeltaValues}, which
+ * reconstructs a value from the base value and its patch.
+ * @author tatemura
+ *
+ */
+public final class DeltaIndex implements Closeable {
+    private final Element base;
+    private final ArchiveIndex patches;
+
+    private DeltaIndex(Element base, ArchiveIndex patches) {
+        this.base = base;
+        this.patches = patches;
+    }
+
+    /**
+     * Opens the output of {@link DeltaValues}.
+     * @param dir the output directory.
+     * @return the reader of the values.
+     * @throws IOException if the files cannot be opened.
+     */
+    public static DeltaIndex open(File dir) throws IOException {
+        Element base = Xml.loadElement(new File(dir, DeltaValues.BASE_FILE));
+        return new DeltaIndex(base,
+                ArchiveIndex.open(new File(dir, DeltaValues.DELTA_FILE)));
+    }
+
+    /**
+     * Gets the number of values.
+     */
+    public int size() {
+        return patches.size();
+    }
+
+    /**
+     * Gets the index of the value at the given position.
+     * @param pos the position (0 &lt;= pos &lt; size()).
+     * @return the index of the value.
+     * @throws IOException if reading fails.
+     */
+    public int indexAt(int pos) throws IOException {
+        return patches.indexAt(pos);
+    }
+
+    /**
+     * Gets the base value.
+     */
+    public ConfigValue getBase() {
+        return XmlValue.create(base);
+    }
+
+    /**
+     * Reconstructs a value as XML.
+     * @param idx the index of the value.
+     * @return null if there is no such value.
+     * @throws IOException if reading fails.
+     */
+    @Nullable
+    public Element readXml(int idx) throws IOException {
+        byte[] data = patches.read(idx);
+        if (data == null) {
+            return null;
+        }
+        Element patch = Xml.loadElement(new ByteArrayInputStream(data));
+        return DeltaPatch.apply(base, patch);
+    }
+
+    /**
+     * Reconstructs a value.
+     * @param idx the index of the value.
+     * @return null if there is no such value.
+     * @throws IOException if reading fails.
+     */
+    @Nullable
+    public ConfigValue read(int idx) throws IOException {
+        Element elem = readXml(idx);
+        if (elem == null) {
+            return null;
+        }
+        return XmlValue.create(elem);
+    }
+
+    @Override
+    public void close() throws IOException {
+        patches.close();
+    }
+}
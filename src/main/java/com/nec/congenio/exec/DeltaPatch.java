@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import java.util.List;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.xml.Xml;
+
+/**
+ * A patch of a document against a base document, which
+ * replaces the elements that differ from the base.
+ *
+ * <p>A patch is an XML element:
+ * <pre>
+ * &lt;delta&gt;
+ *   &lt;set path="1/0"&gt;&lt;id&gt;5&lt;/id&gt;&lt;/set&gt;
+ * &lt;/delta&gt;
+ * </pre>
+ * where the path is the sequence of positions of child elements
+ * from the root (the empty path for the root itself), and
+ * the child of "set" is the new element at the path. An element
+ * is replaced as a whole if its name, attributes, text or number
+ * of child elements differ; otherwise its children are compared.
+ * The patch of the base itself is an empty "delta" element.
+ * @author tatemura
+ *
+ */
+final class DeltaPatch {
+    static final String TAG_DELTA = "delta";
+    static final String TAG_SET = "set";
+    static final String ATTR_PATH = "path";
+    private static final char SEPARATOR = '/';
+
+    private DeltaPatch() {
+    }
+
+    /**
+     * Creates the patch of a document.
+     * @param base the base document.
+     * @param doc the document to be encoded.
+     * @return the patch (in a new DOM document).
+     */
+    static Element diff(Element base, Element doc) {
+        Document pdoc = Xml.createDocument();
+        Element patch = pdoc.createElement(TAG_DELTA);
+        pdoc.appendChild(patch);
+        diff(base, doc, "", patch);
+        return patch;
+    }
+
+    private static void diff(Element base, Element doc, String path,
+            Element patch) {
+        List<Element> bchildren = Xml.getElements(base);
+        List<Element> dchildren = Xml.getElements(doc);
+        if (!base.getTagName().equals(doc.getTagName())
+                || !sameAttributes(base, doc)
+                || bchildren.size() != dchildren.size()
+                || !text(base, bchildren.isEmpty()).equals(
+                        text(doc, dchildren.isEmpty()))) {
+            Element set = patch.getOwnerDocument().createElement(TAG_SET);
+            set.setAttribute(ATTR_PATH, path);
+            set.appendChild(patch.getOwnerDocument().importNode(doc, true));
+            patch.appendChild(set);
+            return;
+        }
+        for (int i = 0; i < bchildren.size(); i++) {
+            String cpath = (path.isEmpty() ? Integer.toString(i)
+                    : path + SEPARATOR + i);
+            diff(bchildren.get(i), dchildren.get(i), cpath, patch);
+        }
+    }
+
+    private static boolean sameAttributes(Element elem1, Element elem2) {
+        NamedNodeMap attrs = elem1.getAttributes();
+        if (attrs.getLength() != elem2.getAttributes().getLength()) {
+            return false;
+        }
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Node attr = attrs.item(i);
+            if (!elem2.hasAttribute(attr.getNodeName())
+                    || !attr.getNodeValue().equals(
+                            elem2.getAttribute(attr.getNodeName()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the text of an element: the whole text of a leaf,
+     * or the text of immediate children (except for whitespace
+     * between elements) if the element has child elements.
+     */
+    private static String text(Element elem, boolean leaf) {
+        if (leaf) {
+            return elem.getTextContent();
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Node child = elem.getFirstChild(); child != null;
+                child = child.getNextSibling()) {
+            short type = child.getNodeType();
+            if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE) {
+                String str = child.getNodeValue();
+                if (!str.trim().isEmpty()) {
+                    sb.append(str);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reconstructs a document from the base and a patch.
+     * @param base the base document (not modified).
+     * @param patch the patch of the document.
+     * @return the reconstructed document (in a new DOM document).
+     */
+    static Element apply(Element base, Element patch) {
+        if (!TAG_DELTA.equals(patch.getTagName())) {
+            throw new ConfigException("not a delta: " + patch.getTagName());
+        }
+        Document doc = Xml.createDocument();
+        Element root = (Element) doc.importNode(base, true);
+        doc.appendChild(root);
+        for (Element set : Xml.getElements(patch)) {
+            List<Element> values = Xml.getElements(set);
+            if (!TAG_SET.equals(set.getTagName()) || values.size() != 1) {
+                throw new ConfigException("broken delta: " + set.getTagName());
+            }
+            Element target = find(root, set.getAttribute(ATTR_PATH));
+            Element value = (Element) doc.importNode(values.get(0), true);
+            target.getParentNode().replaceChild(value, target);
+            if (target == root) {
+                root = value;
+            }
+        }
+        return root;
+    }
+
+    private static Element find(Element root, String path) {
+        Element elem = root;
+        if (path.isEmpty()) {
+            return elem;
+        }
+        for (String pos : path.split(String.valueOf(SEPARATOR))) {
+            List<Element> children = Xml.getElements(elem);
+            int idx = Integer.parseInt(pos);
+            if (idx < 0 || idx >= children.size()) {
+                throw new ConfigException("delta path not found: " + path);
+            }
+            elem = children.get(idx);
+        }
+        return elem;
+    }
+}
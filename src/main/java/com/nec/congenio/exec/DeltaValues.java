@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.value.xml.CompactValue;
+import com.nec.congenio.value.xml.ShapedValue;
+import com.nec.congenio.value.xml.XmlValue;
+import com.nec.congenio.xml.Xml;
+import com.nec.congenio.xml.XmlWriter;
+
+/**
+ * A value handler that writes the values as patches against
+ * a base value (see {@link DeltaPatch}), since unfolded documents
+ * usually differ from each other only in a few leaves.
+ *
+ * <p>The base value (the first value, or the value of a given
+ * index) is written in full as "base.xml" in the directory, and
+ * the patch of each value (including the base) is written into
+ * "out.delta" with an index file (see {@link ArchiveIndex}).
+ * Values are written as XML, and a value is reconstructed
+ * by {@link DeltaIndex}.
+ * @author tatemura
+ *
+ */
+public class DeltaValues implements ValueHandler {
+    public static final String BASE_FILE = "base.xml";
+    public static final String DELTA_FILE = "out.delta";
+
+    private final File dir;
+    private final File file;
+    private final int baseIndex;
+    @Nullable
+    private Element base;
+    /**
+     * The values that come before the base value.
+     */
+    private final List<Pending> pending = new ArrayList<Pending>();
+    private ArchiveValues.CountingOutputStream out;
+    private Writer writer;
+    private XmlWriter xml;
+    private DataOutputStream index;
+
+    /**
+     * Creates DeltaValues instance with the first value
+     * as the base.
+     * @param dir the directory where the result is saved
+     */
+    public DeltaValues(File dir) {
+        this(dir, -1);
+    }
+
+    /**
+     * Creates DeltaValues instance.
+     * @param dir the directory where the result is saved
+     * @param baseIndex the index of the base value
+     *        (a negative number for the first value).
+     */
+    public DeltaValues(File dir, int baseIndex) {
+        this.dir = dir;
+        dir.mkdirs();
+        this.file = new File(dir, DELTA_FILE);
+        this.baseIndex = baseIndex;
+    }
+
+    /**
+     * Gets the file of the patches.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void init(ConfigDescription cdl) throws Exception {
+        SaveValues.saveSnapshot(dir, cdl);
+        out = new ArchiveValues.CountingOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        writer = new OutputStreamWriter(out, ArchiveValues.UTF8);
+        xml = new XmlWriter(writer, false);
+        index = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(ArchiveIndex.indexFileOf(file))));
+    }
+
+    @Override
+    public void value(int idx, ConfigValue value) throws Exception {
+        Element elem = elementOf(value);
+        if (base != null) {
+            write(idx, elem);
+        } else if (baseIndex < 0 || idx == baseIndex) {
+            saveBase(elem);
+            for (Pending p : pending) {
+                write(p.idx, p.elem);
+            }
+            pending.clear();
+            write(idx, elem);
+        } else if (idx > baseIndex) {
+            throw new ConfigException("base value not found: " + baseIndex);
+        } else {
+            pending.add(new Pending(idx, elem));
+        }
+    }
+
+    private static Element elementOf(ConfigValue value) {
+        if (value instanceof XmlValue) {
+            return ((XmlValue) value).toXml();
+        } else if (value instanceof CompactValue) {
+            return ((CompactValue) value).toXml();
+        } else if (value instanceof ShapedValue) {
+            return ((ShapedValue) value).toXml();
+        }
+        return value.toXml(value.getName());
+    }
+
+    private void saveBase(Element elem) throws IOException {
+        base = elem;
+        Writer bw = ChannelWriter.open(new File(dir, BASE_FILE));
+        try {
+            Xml.write(elem, bw, true, true);
+        } finally {
+            bw.close();
+        }
+    }
+
+    private void write(int idx, Element elem) throws IOException {
+        Element patch = DeltaPatch.diff(base, elem);
+        writer.flush();
+        long offset = out.count();
+        xml.write(patch);
+        writer.flush();
+        long length = out.count() - offset;
+        writer.write('\n');
+        index.writeInt(idx);
+        index.writeLong(offset);
+        index.writeLong(length);
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            if (base == null && !pending.isEmpty()) {
+                throw new ConfigException("base value not found: " + baseIndex);
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+            if (index != null) {
+                index.close();
+            }
+        }
+    }
+
+    static final class Pending {
+        private final int idx;
+        private final Element elem;
+
+        Pending(int idx, Element elem) {
+            this.idx = idx;
+            this.elem = elem;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.nec.congenio.ConfigException;
+
+/**
+ * A manifest of the content hashes (SHA-1) of the files in
+ * an output directory, which is used to regenerate only the
+ * files whose content has changed.
+ *
+ * <p>The manifest is saved as "manifest.sha1" in the directory,
+ * in the format of sha1sum (a hash and a path relative to
+ * the directory per line). A file of the previous manifest
+ * that is not updated in a complete generation is stale and is
+ * removed when the manifest is saved. After a partial generation
+ * (which failed or was filtered), the manifest keeps the
+ * entries of the files that are not updated. A file that failed
+ * to be written is discarded (see {@link #discard(String)}), so
+ * that the next generation writes it again.
+ * @author tatemura
+ *
+ */
+public final class Manifest {
+    public static final String FILE_NAME = "manifest.sha1";
+    private static final String SEPARATOR = "  ";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File dir;
+    private final Map<String, String> previous;
+    private final Map<String, String> current = new LinkedHashMap<String, String>();
+    private final Set<String> discarded = new HashSet<String>();
+    private final MessageDigest digest;
+    private int added;
+    private int changed;
+    private int unchanged;
+    private int removed;
+
+    private Manifest(File dir, Map<String, String> previous) {
+        this.dir = dir;
+        this.previous = previous;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new ConfigException("SHA-1 not supported", ex);
+        }
+    }
+
+    /**
+     * Loads the manifest of a directory.
+     * @param dir the output directory.
+     * @return the manifest (which is empty if the directory
+     *         has no manifest).
+     * @throws IOException if the manifest cannot be read.
+     */
+    public static Manifest load(File dir) throws IOException {
+        File file = new File(dir, FILE_NAME);
+        if (!file.exists()) {
+            return new Manifest(dir, Collections.<String, String>emptyMap());
+        }
+        Map<String, String> entries = new LinkedHashMap<String, String>();
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), ArchiveValues.UTF8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int pos = line.indexOf(SEPARATOR);
+                if (pos > 0) {
+                    entries.put(line.substring(pos + SEPARATOR.length()),
+                            line.substring(0, pos));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new Manifest(dir, entries);
+    }
+
+    /**
+     * Records the content of a file.
+     * @param path the path of the file relative to the directory.
+     * @param data the content of the file.
+     * @param len the length of the content.
+     * @return true if the file must be written (i.e., it is
+     *         new or its content has changed).
+     */
+    public boolean update(String path, byte[] data, int len) {
+        digest.update(data, 0, len);
+        String hash = hex(digest.digest());
+        current.put(path, hash);
+        String prev = previous.get(path);
+        if (hash.equals(prev) && new File(dir, path).exists()) {
+            unchanged++;
+            return false;
+        } else if (prev == null) {
+            added++;
+        } else {
+            changed++;
+        }
+        return true;
+    }
+
+    /**
+     * Discards the record of a file that is not written
+     * (after {@link #update(String, byte[], int)} returned true),
+     * and removes the file. The manifest does not keep
+     * an entry of the file even after a partial generation.
+     * @param path the path of the file relative to the directory.
+     */
+    public void discard(String path) {
+        current.remove(path);
+        discarded.add(path);
+        new File(dir, path).delete();
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Removes the stale files and saves the manifest
+     * (if anything has changed).
+     * @throws IOException if the manifest cannot be written.
+     */
+    public void save() throws IOException {
+        save(true);
+    }
+
+    /**
+     * Saves the manifest (if anything has changed).
+     * @param prune true to remove the stale files (after
+     *        a complete generation). Otherwise, the entries
+     *        of the files not updated are kept.
+     * @throws IOException if the manifest cannot be written.
+     */
+    public void save(boolean prune) throws IOException {
+        save(prune, false);
+    }
+
+    /**
+     * Saves the manifest (if anything has changed).
+     * @param prune true to remove the stale files (after
+     *        a complete generation). Otherwise, the entries
+     *        of the files not updated are kept.
+     * @param sync true to force the manifest to the storage.
+     * @throws IOException if the manifest cannot be written.
+     */
+    public void save(boolean prune, boolean sync) throws IOException {
+        Map<String, String> entries = current;
+        if (prune) {
+            for (String path : previous.keySet()) {
+                if (!current.containsKey(path) && !discarded.contains(path)) {
+                    new File(dir, path).delete();
+                    removed++;
+                }
+            }
+        } else {
+            entries = new LinkedHashMap<String, String>(previous);
+            entries.putAll(current);
+            entries.keySet().removeAll(discarded);
+        }
+        if (added + changed + removed == 0) {
+            return;
+        }
+        File file = new File(dir, FILE_NAME);
+        File tmp = new File(dir, FILE_NAME + ".tmp");
+        Writer writer = ChannelWriter.open(tmp, sync);
+        try {
+            for (Map.Entry<String, String> e : entries.entrySet()) {
+                writer.write(e.getValue());
+                writer.write(SEPARATOR);
+                writer.write(e.getKey());
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("failed to save manifest: " + file);
+            }
+        }
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getChanged() {
+        return changed;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Gets the summary of changes.
+     */
+    public String summary() {
+        return added + " added, " + changed + " changed, "
+                + removed + " removed, " + unchanged + " unchanged";
+    }
+}
@@ -23,7 +23,7 @@ import javax.annotation.Nullable;
 
 import com.nec.congenio.ConfigValue;
 import com.nec.congenio.Values;
-import com.nec.congenio.json.JsonValueUtil;
+import com.nec.congenio.json.JsonWriter;
 
 public enum OutputFormat implements ValueOutputFormatter {
     XML(new XmlFormat()),
@@ -32,6 +32,7 @@ public enum OutputFormat implements ValueOutputFormatter {
     JSON(new JsonFormat()),
     JSON_INDENT(new JsonFormat(true)),
     JSON_NO_INDENT(new JsonFormat(false)),
+    JSONL(new JsonLinesFormat()),
     PROPERTIES(new PropertiesFormat());
 
     private final ValueOutputFormatter formatter;
@@ -123,13 +124,8 @@ public enum OutputFormat implements ValueOutputFormatter {
         @Override
         public void write(ConfigValue value, Writer writer)
                 throws IOException {
-            if (indent) {
-                writer.write(JsonValueUtil.toString(value.toJson()));
-                writer.write('\n');
-            } else {
-                writer.write(value.toJson().toString());
-                writer.write('\n');
-            }
+            new JsonWriter(writer, indent)
+            .write(value).newLine().release();
         }
 
         @Override
@@ -137,6 +133,22 @@ public enum OutputFormat implements ValueOutputFormatter {
         }
     }
 
+    /**
+     * JSON Lines: each value is written as compact JSON
+     * in one line.
+     */
+    public static class JsonLinesFormat extends JsonFormat {
+
+        public JsonLinesFormat() {
+            super(false);
+        }
+
+        @Override
+        public String fileSuffix() {
+            return ".jsonl";
+        }
+    }
+
     public static class PropertiesFormat implements ValueOutputFormatter {
 
         @Override
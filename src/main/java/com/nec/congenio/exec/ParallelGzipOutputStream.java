@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.xml.Compression;
+
+/**
+ * A gzip stream whose blocks are compressed on a worker
+ * pool (see {@link Compressor}).
+ *
+ * <p>The data is split into blocks of a fixed size and
+ * each block is written as a gzip member (a concatenation of
+ * members is a valid gzip file). The start of each block
+ * (the uncompressed offset and the compressed offset) is
+ * recorded in a block table, with which a reader can
+ * decompress the data from the block that contains
+ * a given offset (see {@link ArchiveIndex}).
+ * @author tatemura
+ *
+ */
+final class ParallelGzipOutputStream extends OutputStream {
+    static final int BLOCK_SIZE = 256 * 1024;
+    /**
+     * The size of a record in the block table.
+     */
+    static final int BLOCK_RECORD_SIZE = 8 + 8;
+
+    private final OutputStream out;
+    private final DataOutputStream blocks;
+    @Nullable
+    private final ExecutorService executor;
+    private final int ahead;
+    private final LinkedList<Block> pending = new LinkedList<Block>();
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int count;
+    private long start;
+    private long compressed;
+    private boolean written;
+    private boolean closed;
+
+    /**
+     * Creates a stream with the shared pool of compression.
+     * @param out the stream of compressed data.
+     * @param blocks the stream of the block table.
+     * Both streams are closed when this stream is closed.
+     */
+    ParallelGzipOutputStream(OutputStream out, OutputStream blocks) {
+        this(out, blocks, Compressor.sharedExecutor(), Compressor.threads() * 2);
+    }
+
+    /**
+     * Creates a stream.
+     * @param out the stream of compressed data.
+     * @param blocks the stream of the block table.
+     * @param executor the executor on which blocks are compressed
+     *        (null to compress in the calling thread).
+     * @param ahead the max number of blocks being compressed.
+     */
+    ParallelGzipOutputStream(OutputStream out, OutputStream blocks,
+            @Nullable ExecutorService executor, int ahead) {
+        this.out = out;
+        this.blocks = new DataOutputStream(blocks);
+        this.executor = executor;
+        this.ahead = Math.max(ahead, 1);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == BLOCK_SIZE) {
+            submit();
+        }
+        block[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int pos = off;
+        int rest = len;
+        while (rest > 0) {
+            if (count == BLOCK_SIZE) {
+                submit();
+            }
+            int size = Math.min(rest, BLOCK_SIZE - count);
+            System.arraycopy(b, pos, block, count, size);
+            count += size;
+            pos += size;
+            rest -= size;
+        }
+    }
+
+    /**
+     * Does nothing: a block is compressed when it is full
+     * (or the stream is closed).
+     */
+    @Override
+    public void flush() {
+    }
+
+    private void submit() throws IOException {
+        final byte[] data = block;
+        final int len = count;
+        Block blk = new Block(start);
+        if (executor == null) {
+            blk.data = Compression.GZIP.compress(data, 0, len);
+        } else {
+            blk.result = executor.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() {
+                    return Compression.GZIP.compress(data, 0, len);
+                }
+            });
+            block = new byte[BLOCK_SIZE];
+        }
+        pending.add(blk);
+        start += len;
+        count = 0;
+        while (pending.size() > ahead) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        Block blk = pending.removeFirst();
+        byte[] data = blk.get();
+        blocks.writeLong(blk.start);
+        blocks.writeLong(compressed);
+        out.write(data);
+        compressed += data.length;
+        written = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (count > 0 || !written && pending.isEmpty()) {
+                /**
+                 * an empty stream is written as an empty member
+                 * so that the output is a valid gzip file.
+                 */
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                writeNext();
+            }
+        } finally {
+            for (Block blk : pending) {
+                blk.cancel();
+            }
+            try {
+                out.close();
+            } finally {
+                blocks.close();
+            }
+        }
+    }
+
+    static final class Block {
+        private final long start;
+        @Nullable
+        private Future<byte[]> result;
+        @Nullable
+        private byte[] data;
+
+        Block(long start) {
+            this.start = start;
+        }
+
+        byte[] get() {
+            if (data != null) {
+                return data;
+            }
+            try {
+                return result.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ConfigException("compression interrupted", ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new ConfigException("compression failed", cause);
+            }
+        }
+
+        void cancel() {
+            if (result != null) {
+                result.cancel(true);
+            }
+        }
+    }
+}
@@ -17,21 +17,17 @@
 package com.nec.congenio.exec;
 
 import com.nec.congenio.ConfigValue;
+import com.nec.congenio.ValuePath;
 
 public class PathProjection implements Projection {
-    private final String[] path;
+    private final ValuePath path;
 
     public PathProjection(String pattern) {
-        // path = pattern.split("\\.");
-        path = pattern.split("/");
+        path = ValuePath.compile(pattern);
     }
 
     @Override
     public ConfigValue project(ConfigValue val) {
-        ConfigValue res = val;
-        for (String p : path) {
-            res = res.getValue(p);
-        }
-        return res;
+        return path.get(val);
     }
-}
\ No newline at end of file
+}
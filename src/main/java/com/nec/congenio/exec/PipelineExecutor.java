@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigValue;
+
+/**
+ * An executor that runs the stages of value handling
+ * concurrently (an alternative to {@link ValueHandlerExecutor}):
+ * <ol>
+ * <li>evaluation of documents on a worker pool (see
+ * {@link ConfigDescription#evaluate(Class, ExecutorService)}),
+ * which evaluates a bounded number of documents ahead;
+ * <li>filtering and projection in the calling thread;
+ * <li>output (formatting and writing by the handler) in
+ * a writer thread, which takes values from a bounded queue.
+ * </ol>
+ * Values are given to the handler in the order of indexes,
+ * and the handler is called from one thread. When the queue is
+ * full, the calling thread waits for the writer (and evaluation
+ * waits for the calling thread).
+ * @author tatemura
+ *
+ */
+public class PipelineExecutor implements Runnable {
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+    private static final long POLL_MILLIS = 100;
+    private static final Item END = new Item(-1, null);
+
+    private final ConfigDescription cdl;
+    private final ValueHandler handler;
+    private final Filter filter;
+    private final Projection proj;
+    @Nullable
+    private final ExecutorService executor;
+    private final BlockingQueue<Item> queue;
+    private volatile Throwable failure;
+    /**
+     * True if no document is excluded by the filter
+     * (set by the calling thread before the END item).
+     */
+    private boolean complete = true;
+
+    /**
+     * Instantiates an executor with a value handler.
+     * @param cdl the document to be executed
+     * @param handler the handler that handles values.
+     * @param filter filter to select the values.
+     * @param proj projection applied to the values.
+     * @param executor the executor that evaluates documents
+     *        (null to use the shared one).
+     * @param queueSize the max number of values waiting
+     *        for the handler.
+     */
+    public PipelineExecutor(ConfigDescription cdl,
+            ValueHandler handler, Filter filter, Projection proj,
+            @Nullable ExecutorService executor, int queueSize) {
+        this.cdl = cdl;
+        this.handler = handler;
+        this.filter = filter;
+        this.proj = proj;
+        this.executor = executor;
+        this.queue = new ArrayBlockingQueue<Item>(Math.max(queueSize, 1));
+    }
+
+    @Override
+    public void run() {
+        try {
+            execute();
+        } catch (Exception ex) {
+            throw new ConfigException(
+                "exception during document execution", ex);
+        }
+    }
+
+    /**
+     * Executes the document with the value handler.
+     * @throws Exception if any exception thrown by the handler.
+     */
+    public void execute() throws Exception {
+        Thread writer;
+        try {
+            handler.init(cdl);
+            writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    write();
+                }
+            }, "congen-writer");
+            writer.start();
+        } catch (Exception ex) {
+            handler.close();
+            throw ex;
+        }
+        try {
+            produce();
+        } catch (RuntimeException ex) {
+            fail(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            fail(ex);
+        } finally {
+            putEnd();
+            writer.join();
+        }
+        if (failure instanceof Exception) {
+            throw (Exception) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+
+    private void produce() throws InterruptedException {
+        Iterable<ConfigValue> values = (executor != null
+                ? cdl.evaluate(ConfigValue.class, executor)
+                : cdl.evaluate(ConfigValue.class));
+        int idx = 0;
+        for (ConfigValue conf : values) {
+            if (failure != null) {
+                return;
+            }
+            if (filter.output(idx) && filter.output(conf)) {
+                if (!put(new Item(idx, proj.project(conf)))) {
+                    return;
+                }
+            } else {
+                complete = false;
+            }
+            idx++;
+            if (idx >= filter.maxIndex()) {
+                complete = false;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Puts a value to the queue, waiting while the queue
+     * is full.
+     * @return false if the execution has failed.
+     */
+    private boolean put(Item item) throws InterruptedException {
+        while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (failure != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void putEnd() throws InterruptedException {
+        while (!queue.offer(END, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (failure != null) {
+                queue.clear();
+            }
+        }
+    }
+
+    /**
+     * Hands values to the handler until END, and then
+     * closes the handler. After a failure, values are
+     * discarded (so that the producer does not wait).
+     */
+    private void write() {
+        try {
+            while (true) {
+                Item item = queue.take();
+                if (item == END) {
+                    if (failure == null
+                            && handler instanceof CommittableHandler) {
+                        try {
+                            ((CommittableHandler) handler).commit(complete);
+                        } catch (Throwable th) {
+                            fail(th);
+                        }
+                    }
+                    break;
+                }
+                if (failure == null) {
+                    try {
+                        handler.value(item.idx, item.value);
+                    } catch (Throwable th) {
+                        fail(th);
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            fail(ex);
+        } finally {
+            try {
+                handler.close();
+            } catch (Throwable th) {
+                fail(th);
+            }
+        }
+    }
+
+    private synchronized void fail(Throwable th) {
+        if (failure == null) {
+            failure = th;
+        }
+    }
+
+    static final class Item {
+        private final int idx;
+        private final ConfigValue value;
+
+        Item(int idx, ConfigValue value) {
+            this.idx = idx;
+            this.value = value;
+        }
+    }
+}
@@ -18,17 +18,54 @@ package com.nec.congenio.exec;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.annotation.Nullable;
 
 import com.nec.congenio.ConfigDescription;
 import com.nec.congenio.ConfigValue;
+import com.nec.congenio.xml.Compression;
 
-public class SaveValues implements ValueHandler {
+/**
+ * A value handler that saves each value as a file
+ * "out/NNNNNNNN.suffix" in the directory (with the config
+ * description as "snapshot.xml").
+ *
+ * <p>In the incremental mode, a file is written only if its
+ * content differs from the one recorded in the {@link Manifest}
+ * of the previous generation, and the files that are not
+ * generated this time are removed if the generation completes
+ * (see {@link CommittableHandler}). The stale files are kept
+ * if the generation fails or the documents are filtered.
+ *
+ * <p>With compression, each file is compressed (and written)
+ * on a worker pool (see {@link Compressor}) and its name has
+ * the suffix of the compression (e.g., "00000001.json.gz").
+ * The manifest records the hashes of uncompressed content.
+ * @author tatemura
+ *
+ */
+public class SaveValues implements CommittableHandler {
     private static final int LEN = 8;
+    private static final String OUT_DIR = "out";
+    private static final String SNAPSHOT = "snapshot.xml";
 
     private final File dir;
     private final File outDir;
     private final ValueOutputFormatter format;
+    private final boolean incremental;
+    private final Compression compression;
+    private final boolean sync;
+    @Nullable
+    private Manifest manifest;
+    @Nullable
+    private Compressor compressor;
+    private boolean complete;
+    private final ArchiveValues.Buffer buffer = new ArchiveValues.Buffer();
+    private final Writer bufferWriter =
+            new OutputStreamWriter(buffer, ArchiveValues.UTF8);
 
     /**
      * Creates SaveValues instance.
@@ -36,17 +73,99 @@ public class SaveValues implements ValueHandler {
      * @param format output format for the values
      */
     public SaveValues(File dir, ValueOutputFormatter format) {
+        this(dir, format, false);
+    }
+
+    /**
+     * Creates SaveValues instance.
+     * @param dir the directory where the result is saved
+     * @param format output format for the values
+     * @param incremental true to write only changed files
+     *        (with a manifest of content hashes).
+     */
+    public SaveValues(File dir, ValueOutputFormatter format,
+            boolean incremental) {
+        this(dir, format, incremental, Compression.NONE);
+    }
+
+    /**
+     * Creates SaveValues instance.
+     * @param dir the directory where the result is saved
+     * @param format output format for the values
+     * @param incremental true to write only changed files
+     *        (with a manifest of content hashes).
+     * @param compression compression of the value files.
+     */
+    public SaveValues(File dir, ValueOutputFormatter format,
+            boolean incremental, Compression compression) {
+        this(dir, format, incremental, compression, false);
+    }
+
+    /**
+     * Creates SaveValues instance.
+     * @param dir the directory where the result is saved
+     * @param format output format for the values
+     * @param incremental true to write only changed files
+     *        (with a manifest of content hashes).
+     * @param compression compression of the value files.
+     * @param sync true to force each written file to the
+     *        storage device (fsync) when it is closed.
+     */
+    public SaveValues(File dir, ValueOutputFormatter format,
+            boolean incremental, Compression compression, boolean sync) {
         this.dir = dir;
-        this.outDir = new File(dir, "out");
+        this.outDir = new File(dir, OUT_DIR);
         outDir.mkdirs();
         this.format = format;
+        this.incremental = incremental;
+        this.compression = compression;
+        this.sync = sync;
+    }
+
+    /**
+     * Gets the manifest of the incremental mode.
+     * @return null if it is not incremental or if it is not
+     *         initialized.
+     */
+    @Nullable
+    public Manifest getManifest() {
+        return manifest;
     }
 
     @Override
     public void init(ConfigDescription cdl) throws Exception {
-       File file = new File(dir, "snapshot.xml");
-       OutputStreamWriter writer = new OutputStreamWriter(
-               new FileOutputStream(file));
+        if (compression != Compression.NONE) {
+            compressor = createCompressor(compression);
+        }
+        if (incremental) {
+            manifest = Manifest.load(dir);
+            buffer.reset();
+            cdl.write(bufferWriter);
+            bufferWriter.flush();
+            saveBuffer(SNAPSHOT, false);
+        } else {
+            saveSnapshot(dir, cdl, sync);
+        }
+    }
+
+    /**
+     * Creates the compressor of the value files.
+     */
+    Compressor createCompressor(Compression comp) {
+        return new Compressor(comp, sync);
+    }
+
+    /**
+     * Saves the config description (before unfolding)
+     * as "snapshot.xml" in the directory.
+     */
+    static void saveSnapshot(File dir, ConfigDescription cdl) throws IOException {
+        saveSnapshot(dir, cdl, false);
+    }
+
+    static void saveSnapshot(File dir, ConfigDescription cdl,
+            boolean sync) throws IOException {
+       Writer writer = ChannelWriter.open(new File(dir, SNAPSHOT), sync);
        try {
            cdl.write(writer);
        } finally {
@@ -54,20 +173,34 @@ public class SaveValues implements ValueHandler {
        }
     }
 
-    protected File fileFor(int idx) {
+    /**
+     * Gets the file name of a value (the zero-padded
+     * index with the suffix of the format).
+     */
+    static String fileName(int idx, ValueOutputFormatter format) {
         String name = Integer.toString(idx);
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < LEN - name.length(); i++) {
             sb.append('0');
         }
-        sb.append(name).append(format.fileSuffix());
-        return new File(outDir, sb.toString());
+        return sb.append(name).append(format.fileSuffix()).toString();
+    }
+
+    protected File fileFor(int idx) {
+        return new File(outDir, fileName(idx, format) + compression.suffix());
     }
 
     @Override
     public void value(int idx, ConfigValue value) throws Exception {
-        OutputStreamWriter writer = new OutputStreamWriter(
-                new FileOutputStream(fileFor(idx)));
+        if (manifest != null || compressor != null) {
+            buffer.reset();
+            format.write(value, bufferWriter);
+            bufferWriter.flush();
+            saveBuffer(OUT_DIR + "/" + fileName(idx, format)
+                    + compression.suffix(), true);
+            return;
+        }
+        Writer writer = ChannelWriter.open(fileFor(idx), sync);
         try {
            format.write(value, writer);
         } finally {
@@ -75,7 +208,71 @@ public class SaveValues implements ValueHandler {
         }
     }
 
+    /**
+     * Writes the content of the buffer to a file
+     * unless it is unchanged.
+     * @param path the path relative to the directory.
+     * @param compress true to compress the content
+     *        (if compression is enabled).
+     */
+    private void saveBuffer(String path, boolean compress) throws IOException {
+        if (manifest != null
+                && !manifest.update(path, buffer.bytes(), buffer.size())) {
+            return;
+        }
+        File file = new File(dir, path);
+        if (compress && compressor != null) {
+            compressor.write(file, buffer.toByteArray(), buffer.size());
+            return;
+        }
+        boolean done = false;
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(buffer.bytes(), 0, buffer.size());
+            if (sync) {
+                out.getFD().sync();
+            }
+            done = true;
+        } finally {
+            out.close();
+            if (!done) {
+                /**
+                 * the manifest already has the new hash, so
+                 * a partial file must not be left.
+                 */
+                file.delete();
+                if (manifest != null) {
+                    manifest.discard(path);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void commit(boolean complete) throws Exception {
+        this.complete = complete;
+    }
+
     @Override
     public void close() throws Exception {
+        try {
+            if (compressor != null) {
+                compressor.await();
+            }
+        } finally {
+            if (manifest != null) {
+                if (compressor != null) {
+                    /**
+                     * the files not written (including the ones
+                     * skipped after a failure) must be regenerated
+                     * by the next run.
+                     */
+                    for (File file : compressor.getDropped()) {
+                        manifest.discard(OUT_DIR + "/" + file.getName());
+                    }
+                }
+                manifest.save(complete, sync);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -18,18 +18,28 @@ package com.nec.congenio.exec;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.Nullable;
 
 import com.nec.congenio.ConfigDescription;
 import com.nec.congenio.ConfigValue;
+import com.nec.congenio.xml.Compression;
 
 public class ValueExecBuilder {
     private final ConfigDescription cdl;
     private List<Filter> filters = new ArrayList<Filter>();
     private Projection proj = new IdentityProjection();
     private ValueHandler handler;
+    @Nullable
+    private File dedupMapping;
+    private boolean pipelined;
+    private int queueSize = PipelineExecutor.DEFAULT_QUEUE_SIZE;
+    @Nullable
+    private ExecutorService executor;
 
     public ValueExecBuilder(ConfigDescription cdl) {
         this.cdl = cdl;
@@ -64,8 +74,84 @@ public class ValueExecBuilder {
         return handler(new SaveValues(dir, format));
     }
 
+    /**
+     * Saves the values as compressed files, which are
+     * compressed on a worker pool (see {@link SaveValues}).
+     * @param dir the output directory.
+     * @param format the format of each value.
+     * @param compression the compression of each file.
+     * @return the builder itself for method chaining
+     */
+    public ValueExecBuilder save(File dir, OutputFormat format,
+            Compression compression) {
+        return handler(new SaveValues(dir, format, false, compression));
+    }
+
+    /**
+     * Saves the values as files, writing only the files
+     * that have changed since the previous generation
+     * (see {@link Manifest}).
+     * @param dir the output directory.
+     * @param format the format of each value.
+     * @return the builder itself for method chaining
+     */
+    public ValueExecBuilder saveIncremental(File dir, OutputFormat format) {
+        return handler(new SaveValues(dir, format, true));
+    }
+
+    /**
+     * Saves the values into a single archive file
+     * with an index file (see {@link ArchiveValues}).
+     * @param dir the output directory.
+     * @param format the format of each value.
+     * @param archive the container of the values.
+     * @return the builder itself for method chaining
+     */
+    public ValueExecBuilder archive(File dir, OutputFormat format,
+            ArchiveFormat archive) {
+        return handler(new ArchiveValues(dir, format, archive));
+    }
+
+    /**
+     * Saves the values into a single archive file
+     * with an index file (see {@link ArchiveValues}).
+     * @param dir the output directory.
+     * @param format the format of each value.
+     * @param archive the container of the values.
+     * @param compression the compression of the archive
+     *        (gzip is supported for stream and tar).
+     * @return the builder itself for method chaining
+     */
+    public ValueExecBuilder archive(File dir, OutputFormat format,
+            ArchiveFormat archive, Compression compression) {
+        return handler(new ArchiveValues(dir, format, archive, compression));
+    }
+
+    /**
+     * Saves the values as patches against a base value
+     * (see {@link DeltaValues}).
+     * @param dir the output directory.
+     * @param baseIndex the index of the base value
+     *        (a negative number for the first value).
+     * @return the builder itself for method chaining
+     */
+    public ValueExecBuilder delta(File dir, int baseIndex) {
+        return handler(new DeltaValues(dir, baseIndex));
+    }
+
     public ValueExecBuilder print(OutputFormat format) {
-        return handler(new Printout(format));
+        return print(format, false);
+    }
+
+    /**
+     * Prints values to the standard output.
+     * @param format output format for the values
+     * @param flushEachValue true to flush the output after
+     *        each value (otherwise, it is flushed at the end).
+     * @return the builder itself for method chaining
+     */
+    public ValueExecBuilder print(OutputFormat format, boolean flushEachValue) {
+        return handler(new Printout(format, flushEachValue));
     }
 
     public ValueExecBuilder handler(ValueHandler handler) {
@@ -73,6 +159,44 @@ public class ValueExecBuilder {
         return this;
     }
 
+    /**
+     * Gives each distinct value to the handler only once
+     * (see {@link DedupValues}).
+     * @param mappingFile the file to which the mapping from
+     *        indexes to representative indexes is written.
+     * @return the builder itself for method chaining
+     */
+    public ValueExecBuilder dedup(File mappingFile) {
+        this.dedupMapping = mappingFile;
+        return this;
+    }
+
+    /**
+     * Runs evaluation and output concurrently
+     * (see {@link PipelineExecutor}).
+     * @param queueSize the max number of values waiting
+     *        for output.
+     * @return the builder itself for method chaining
+     */
+    public ValueExecBuilder pipeline(int queueSize) {
+        this.pipelined = true;
+        this.queueSize = queueSize;
+        return this;
+    }
+
+    /**
+     * Runs evaluation (with the given executor) and output
+     * concurrently (see {@link PipelineExecutor}).
+     * @param queueSize the max number of values waiting
+     *        for output.
+     * @param executor the executor that evaluates documents.
+     * @return the builder itself for method chaining
+     */
+    public ValueExecBuilder pipeline(int queueSize, ExecutorService executor) {
+        this.executor = executor;
+        return pipeline(queueSize);
+    }
+
     private Filter createFilter() {
         if (filters.isEmpty()) {
             return new NoFilter();
@@ -84,16 +208,34 @@ public class ValueExecBuilder {
     }
 
     public Runnable build() {
+        ValueHandler out = (dedupMapping != null
+                ? new DedupValues(handler, dedupMapping) : handler);
+        if (pipelined) {
+            return new PipelineExecutor(cdl, out, createFilter(),
+                    proj, executor, queueSize);
+        }
         return new ValueHandlerExecutor(
-                cdl, handler, createFilter(), proj);
+                cdl, out, createFilter(), proj);
     }
 
+    /**
+     * Prints values to the standard output in UTF-8. The output
+     * is flushed at the end unless it is set to flush it after
+     * each value.
+     */
     static class Printout implements ValueHandler {
-        private OutputStreamWriter writer = new OutputStreamWriter(System.out);
+        private final ChannelWriter writer = new ChannelWriter(
+                Channels.newChannel(System.out), false, false);
         private final ValueOutputFormatter format;
+        private final boolean flushEachValue;
 
         public Printout(ValueOutputFormatter format) {
+            this(format, false);
+        }
+
+        public Printout(ValueOutputFormatter format, boolean flushEachValue) {
             this.format = format;
+            this.flushEachValue = flushEachValue;
         }
 
         @Override
@@ -103,13 +245,18 @@ public class ValueExecBuilder {
 
         @Override
         public void value(int idx, ConfigValue value) throws IOException {
-            format.beginValue(idx, writer);                
+            format.beginValue(idx, writer);
             format.write(value, writer);
+            if (flushEachValue) {
+                writer.flush();
+                System.out.flush();
+            }
         }
 
         @Override
         public void close() throws Exception {
-            writer.flush();
+            writer.close();
+            System.out.flush();
         }
     }
 
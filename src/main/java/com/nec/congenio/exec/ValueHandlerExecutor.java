@@ -59,6 +59,7 @@ public class ValueHandlerExecutor implements Runnable {
     public void execute() throws Exception {
         try {
             handler.init(cdl);
+            boolean complete = true;
             int idx = 0;
             for (ConfigValue conf : cdl.evaluate()) {
                 /**
@@ -68,12 +69,18 @@ public class ValueHandlerExecutor implements Runnable {
                  */
                 if (filter.output(idx) && filter.output(conf)) {
                     handler.value(idx, proj.project(conf));
+                } else {
+                    complete = false;
                 }
                 idx++;
                 if (idx >= filter.maxIndex()) {
+                    complete = false;
                     break;
                 }
             }
+            if (handler instanceof CommittableHandler) {
+                ((CommittableHandler) handler).commit(complete);
+            }
         } finally {
             handler.close();
         }
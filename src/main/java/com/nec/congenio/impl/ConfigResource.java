@@ -20,13 +20,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Map;
 import java.util.Properties;
 
-import javax.json.JsonObject;
-
 import org.w3c.dom.Element;
 
 import com.nec.congenio.ConfigException;
@@ -34,8 +33,9 @@ import com.nec.congenio.ConfigValue;
 import com.nec.congenio.Values;
 import com.nec.congenio.impl.path.ResourceFinder;
 import com.nec.congenio.impl.path.SearchPath;
-import com.nec.congenio.json.JsonValueUtil;
+import com.nec.congenio.impl.path.TemplateArchive;
 import com.nec.congenio.json.JsonXml;
+import com.nec.congenio.xml.Compression;
 import com.nec.congenio.xml.Xml;
 
 public abstract class ConfigResource {
@@ -95,6 +95,38 @@ public abstract class ConfigResource {
         return new ConfigValueResource(path, uri, value);
     }
 
+    public static ConfigResource create(ResourceFinder path,
+            TemplateArchive archive, String entry) {
+        return new ArchiveConfigResource(path, archive, entry);
+    }
+
+    /**
+     * Creates an XML element from the content of a resource,
+     * interpreting the content by the suffix of its name (JSON,
+     * properties, or XML) after the suffix of compression
+     * (e.g., ".gz") is removed.
+     * @param name the name of the resource.
+     * @param instr the content of the resource. The stream
+     *        is NOT closed by this method.
+     * @return the root element of the content.
+     */
+    public static Element createElement(String name, InputStream instr) {
+        String base = Compression.stripSuffix(name);
+        if (base.endsWith(JSON_SUFFIX)) {
+            return JsonXml.parseXml(instr);
+        } else if (base.endsWith(PROPERTY_SUFFIX)) {
+            Properties props = new Properties();
+            try {
+                props.load(Compression.decompress(instr));
+            } catch (IOException ex) {
+                throw new ConfigException(
+                      "failed to read properties: " + name, ex);
+            }
+            return Values.valueOf(props).toXml("properties");
+        }
+        return Xml.loadElement(instr);
+    }
+
     /**
      * Gets the content of the resource as an XML element
      * 
@@ -126,7 +158,7 @@ public abstract class ConfigResource {
         @Override
         public Element createElement() {
             // TODO JSON files
-            return Xml.parse(url).getDocumentElement();
+            return Xml.loadElement(url);
         }
 
         @Override
@@ -157,12 +189,11 @@ public abstract class ConfigResource {
         @Override
         public Element createElement() {
             if (isJsonFile()) {
-                JsonObject json = JsonValueUtil.parseObject(file);
-                return JsonXml.toXml(json);
+                return JsonXml.parseXml(file);
             } else if (isPropertyFile()) {
                 return getPropertyXml();
             }
-            return Xml.parse(file).getDocumentElement();
+            return Xml.loadElement(file);
         }
 
         @Override
@@ -176,17 +207,22 @@ public abstract class ConfigResource {
         }
 
         boolean isJsonFile() {
-            return file.getPath().endsWith(JSON_SUFFIX);
+            return Compression.stripSuffix(file.getPath()).endsWith(JSON_SUFFIX);
         }
 
         boolean isPropertyFile() {
-            return file.getPath().endsWith(PROPERTY_SUFFIX);
+            return Compression.stripSuffix(file.getPath()).endsWith(PROPERTY_SUFFIX);
         }
 
         private Element getPropertyXml() {
             Properties props = new Properties();
             try {
-                props.load(new FileInputStream(file));
+                InputStream instr = new FileInputStream(file);
+                try {
+                    props.load(Compression.decompress(instr));
+                } finally {
+                    instr.close();
+                }
             } catch (FileNotFoundException ex) {
                 throw new ConfigException(
                         "file not found: " + file);
@@ -202,6 +238,34 @@ public abstract class ConfigResource {
         }
     }
 
+    static class ArchiveConfigResource extends ConfigResource {
+        private final ResourceFinder path;
+        private final TemplateArchive archive;
+        private final String entry;
+
+        public ArchiveConfigResource(ResourceFinder path,
+                TemplateArchive archive, String entry) {
+            this.path = path;
+            this.archive = archive;
+            this.entry = entry;
+        }
+
+        @Override
+        public Element createElement() {
+            return archive.createElement(entry);
+        }
+
+        @Override
+        public ResourceFinder getFinder() {
+            return path;
+        }
+
+        @Override
+        public String getUri() {
+            return archive.getUri() + "!/" + entry;
+        }
+    }
+
     static class ConfigValueResource extends ConfigResource {
         private final ResourceFinder path;
         private final String uri;
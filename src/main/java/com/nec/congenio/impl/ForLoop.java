@@ -28,6 +28,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import com.nec.congenio.ConfigException;
+import com.nec.congenio.xml.Interner;
 import com.nec.congenio.xml.Xml;
 
 /**
@@ -264,7 +265,7 @@ public class ForLoop implements Iterable<Element> {
             List<Element> result = new ArrayList<Element>();
             for (int i = from; i <= to; i++) {
                 Element each = newElement();
-                each.setTextContent(Integer.toString(i));
+                each.setTextContent(Interner.text(Integer.toString(i)));
                 result.add(each);
             }
             return result;
@@ -299,7 +300,7 @@ public class ForLoop implements Iterable<Element> {
             String[] vals = textValue().split(sep);
             for (String v : vals) {
                 Element each = newElement();
-                each.setTextContent(v);
+                each.setTextContent(Interner.text(v));
                 result.add(each);
             }
             return result;
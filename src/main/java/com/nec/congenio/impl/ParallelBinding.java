@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.impl;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.value.xml.CompactValue;
+import com.nec.congenio.xml.Xml;
+
+/**
+ * Evaluation of unfolded documents fused with binding to objects.
+ *
+ * <p>Each unfolded document is moved to its own DOM document
+ * (in the calling thread), and then its references and expressions
+ * are evaluated and it is bound to an object in a worker thread.
+ * Results are returned in document order, with a bounded number
+ * of documents evaluated ahead.
+ *
+ * <p>An evaluated document is bound through a {@link CompactValue}
+ * (rather than a DOM-backed value), which answers lookups of
+ * the binding without XPath.
+ * @author tatemura
+ *
+ */
+public final class ParallelBinding {
+    private static final int AHEAD_PER_THREAD = 4;
+    @Nullable
+    private static ExecutorService sharedExecutor;
+
+    private ParallelBinding() {
+    }
+
+    static int threads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Gets the executor shared by typed evaluations, which
+     * runs daemon threads.
+     * @return null if documents are evaluated in the calling
+     *         thread.
+     */
+    @Nullable
+    static synchronized ExecutorService sharedExecutor() {
+        int threads = threads();
+        if (threads <= 1) {
+            return null;
+        }
+        if (sharedExecutor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            sharedExecutor = Executors.newFixedThreadPool(threads,
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable task) {
+                            Thread th = new Thread(task,
+                                    "congen-eval-" + count.incrementAndGet());
+                            th.setDaemon(true);
+                            return th;
+                        }
+                    });
+        }
+        return sharedExecutor;
+    }
+
+    /**
+     * Evaluates an unfolded document and binds it to an object.
+     * @param elem an unfolded document (which may be modified).
+     * @param cls the class of the object.
+     * @return the bound object.
+     */
+    static <T> T bind(Element elem, Class<T> cls) {
+        Element evaluated = ExpXml.evaluate(RefXml.resolve(elem));
+        ConfigValue value = CompactValue.create(evaluated);
+        if (cls.isInstance(value)) {
+            return cls.cast(value);
+        }
+        return value.toObject(cls);
+    }
+
+    /**
+     * Creates a sequence of bound objects.
+     * @param unfolded the unfolded documents.
+     * @param cls the class of objects.
+     * @param executor the executor on which documents are
+     *        evaluated (null to evaluate in the calling thread).
+     * @param ahead the number of documents evaluated ahead.
+     * @return a sequence of objects in document order.
+     */
+    static <T> Iterable<T> create(final Iterable<Element> unfolded,
+            final Class<T> cls, @Nullable final ExecutorService executor,
+            final int ahead) {
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                if (executor == null) {
+                    return new SerialIterator<T>(unfolded.iterator(), cls);
+                }
+                return new ParallelIterator<T>(unfolded.iterator(),
+                        cls, executor, ahead);
+            }
+        };
+    }
+
+    static <T> Iterable<T> create(Iterable<Element> unfolded, Class<T> cls) {
+        return create(unfolded, cls, sharedExecutor(),
+                threads() * AHEAD_PER_THREAD);
+    }
+
+    static <T> Iterable<T> create(Iterable<Element> unfolded, Class<T> cls,
+            ExecutorService executor) {
+        return create(unfolded, cls, executor,
+                threads() * AHEAD_PER_THREAD);
+    }
+
+    static class SerialIterator<T> implements Iterator<T> {
+        private final Iterator<Element> unfolded;
+        private final Class<T> cls;
+
+        SerialIterator(Iterator<Element> unfolded, Class<T> cls) {
+            this.unfolded = unfolded;
+            this.cls = cls;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return unfolded.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return bind(unfolded.next(), cls);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    static class ParallelIterator<T> implements Iterator<T> {
+        private final Iterator<Element> unfolded;
+        private final Class<T> cls;
+        private final ExecutorService executor;
+        private final int ahead;
+        private final LinkedList<Future<T>> pending = new LinkedList<Future<T>>();
+
+        ParallelIterator(Iterator<Element> unfolded, Class<T> cls,
+                ExecutorService executor, int ahead) {
+            this.unfolded = unfolded;
+            this.cls = cls;
+            this.executor = executor;
+            this.ahead = Math.max(ahead, 1);
+        }
+
+        private void fill() {
+            while (pending.size() < ahead && unfolded.hasNext()) {
+                /**
+                 * unfolded documents share the DOM document of
+                 * the description, which is not thread-safe.
+                 * Each document is moved to its own DOM document
+                 * before it is given to a worker.
+                 */
+                Document doc = Xml.createDocument();
+                final Element elem = (Element) doc.importNode(unfolded.next(), true);
+                doc.appendChild(elem);
+                pending.add(executor.submit(new Callable<T>() {
+                    @Override
+                    public T call() {
+                        return bind(elem, cls);
+                    }
+                }));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            fill();
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            fill();
+            if (pending.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Future<T> result = pending.removeFirst();
+            try {
+                return result.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new ConfigException("evaluation interrupted", ex);
+            } catch (ExecutionException ex) {
+                cancel();
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new ConfigException("evaluation failed", cause);
+            }
+        }
+
+        private void cancel() {
+            for (Future<T> f : pending) {
+                f.cancel(true);
+            }
+            pending.clear();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.nec.congenio.impl;
 
 import java.io.Writer;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Nullable;
 
@@ -25,6 +26,9 @@ import org.w3c.dom.Element;
 
 import com.nec.congenio.ConfigDescription;
 import com.nec.congenio.ConfigValue;
+import com.nec.congenio.ValueForm;
+import com.nec.congenio.value.xml.CompactValue;
+import com.nec.congenio.value.xml.ShapedValue;
 import com.nec.congenio.value.xml.XmlValue;
 import com.nec.congenio.xml.Xml;
 
@@ -73,15 +77,30 @@ public class XmlConfigDescription extends ConfigDescription {
 
     @Override
     public Iterable<ConfigValue> evaluate() {
+        return evaluate(ValueForm.DOM);
+    }
+
+    @Override
+    public Iterable<ConfigValue> evaluate(final ValueForm form) {
         final Iterable<Element> unfold = ForLoop.unfold(root);
         return new Iterable<ConfigValue>() {
             @Override
             public Iterator<ConfigValue> iterator() {
-                return new ResolveIterator(unfold.iterator());
+                return new ResolveIterator(unfold.iterator(), form);
             }
         };
     }
 
+    @Override
+    public <T> Iterable<T> evaluate(Class<T> cls) {
+        return ParallelBinding.create(ForLoop.unfold(root), cls);
+    }
+
+    @Override
+    public <T> Iterable<T> evaluate(Class<T> cls, ExecutorService executor) {
+        return ParallelBinding.create(ForLoop.unfold(root), cls, executor);
+    }
+
     /**
      * Gets a name of an element that is used for inheritance.
      * the element in the extending document will override
@@ -100,9 +119,15 @@ public class XmlConfigDescription extends ConfigDescription {
 
     static class ResolveIterator implements Iterator<ConfigValue> {
         private final Iterator<Element> unfolded;
+        private final boolean compact;
+        @Nullable
+        private final ShapedValue.Table shapes;
 
-        ResolveIterator(Iterator<Element> unfolded) {
+        ResolveIterator(Iterator<Element> unfolded, ValueForm form) {
             this.unfolded = unfolded;
+            this.compact = (form == ValueForm.COMPACT);
+            this.shapes = (form == ValueForm.SHAPED
+                    ? new ShapedValue.Table() : null);
         }
 
         @Override
@@ -113,7 +138,15 @@ public class XmlConfigDescription extends ConfigDescription {
         @Override
         public ConfigValue next() {
             Element unfoldedElem = unfolded.next();
-            return new XmlConfigDescription(unfoldedElem).resolve();
+            XmlConfigDescription cdl = new XmlConfigDescription(unfoldedElem);
+            if (shapes != null) {
+                return shapes.create(
+                        ExpXml.evaluate(cdl.resolveReferences()));
+            } else if (compact) {
+                return CompactValue.create(
+                        ExpXml.evaluate(cdl.resolveReferences()));
+            }
+            return cdl.resolve();
         }
 
         @Override
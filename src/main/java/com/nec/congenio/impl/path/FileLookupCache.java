@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.impl.path;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * A cache of directory listings used to resolve file names
+ * without probing the file system for each candidate.
+ *
+ * <p>A directory is scanned once (one list call) and both
+ * hits and misses of name lookups are remembered. The cached
+ * listing is revalidated with the modification time of the
+ * directory, which is checked at most once per revalidation
+ * interval (one second).
+ * @author tatemura
+ *
+ */
+public final class FileLookupCache {
+    private static final long DEFAULT_INTERVAL = 1000L;
+    /**
+     * A listing taken within this time after the last
+     * modification of the directory is not trusted since
+     * the time stamp may be too coarse to detect an update.
+     */
+    private static final long MTIME_GRANULARITY = 2000L;
+
+    private static final FileLookupCache INSTANCE =
+            new FileLookupCache(DEFAULT_INTERVAL);
+
+    public static FileLookupCache getInstance() {
+        return INSTANCE;
+    }
+
+    private final long interval;
+    private final Map<String, DirEntry> dirs =
+            new HashMap<String, DirEntry>();
+
+    /**
+     * Creates a cache.
+     * @param interval the interval (in milliseconds) of
+     *        revalidating a cached directory listing. A negative
+     *        value disables the cache.
+     */
+    FileLookupCache(long interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Checks if the file is a normal file.
+     * @param file the file to be checked.
+     * @return equivalent to file.isFile().
+     */
+    public boolean isFile(File file) {
+        if (interval < 0) {
+            return file.isFile();
+        }
+        File abs = file.getAbsoluteFile();
+        File dir = abs.getParentFile();
+        if (dir == null) {
+            return file.isFile();
+        }
+        return entryOf(dir).isFile(abs.getName());
+    }
+
+    /**
+     * Discards all the cached listings.
+     */
+    public synchronized void clear() {
+        dirs.clear();
+    }
+
+    private synchronized DirEntry entryOf(File dir) {
+        String key = dir.getPath();
+        DirEntry entry = dirs.get(key);
+        long now = System.currentTimeMillis();
+        if (entry == null) {
+            entry = new DirEntry(dir, now);
+            dirs.put(key, entry);
+        } else if (now - entry.checked >= interval) {
+            if (!entry.isValid()) {
+                entry = new DirEntry(dir, now);
+                dirs.put(key, entry);
+            } else {
+                entry.checked = now;
+            }
+        }
+        return entry;
+    }
+
+    static class DirEntry {
+        private final File dir;
+        private final long mtime;
+        private final long scanned;
+        private long checked;
+        @Nullable
+        private final Set<String> names;
+        private final Map<String, Boolean> resolved =
+                new HashMap<String, Boolean>();
+
+        DirEntry(File dir, long now) {
+            this.dir = dir;
+            this.mtime = dir.lastModified();
+            this.scanned = now;
+            this.checked = now;
+            String[] list = dir.list();
+            if (list != null) {
+                this.names = new HashSet<String>(Arrays.asList(list));
+            } else {
+                this.names = null;
+            }
+        }
+
+        boolean isValid() {
+            if (scanned - mtime < MTIME_GRANULARITY) {
+                return false;
+            }
+            return dir.lastModified() == mtime;
+        }
+
+        synchronized boolean isFile(String name) {
+            if (names == null || !names.contains(name)) {
+                return false;
+            }
+            Boolean isFile = resolved.get(name);
+            if (isFile == null) {
+                isFile = new File(dir, name).isFile();
+                resolved.put(name, isFile);
+            }
+            return isFile;
+        }
+    }
+}
@@ -50,6 +50,13 @@ public class LibPath implements ResourceFinder {
     private final Map<String, ResourceFinder> global;
     private final Map<String, ResourceFinder> effective =
             new HashMap<String, ResourceFinder>();
+    /**
+     * Derived finders for directories. A derived finder depends
+     * on this finder (its local paths are resolved in this
+     * context), so the cache is kept per instance.
+     */
+    private final Map<String, LibPath> scopes =
+            new HashMap<String, LibPath>();
 
     public LibPath() {
         global = new HashMap<String, ResourceFinder>();
@@ -61,18 +68,32 @@ public class LibPath implements ResourceFinder {
     }
 
     /**
-     * Creates a derived LibPath resource finder for a
+     * Gets a derived LibPath resource finder for a
      * specified directory. Local lib path definitions
      * defined at the directory will be effective.
+     * The finder is created once per directory (for this
+     * finder) and reused.
      * @param dir the directory where the finder is used.
-     * @return a new LibPath finder for the directory
+     * @return a LibPath finder for the directory
      */
     public LibPath libPathAt(File dir) {
+        String key = (dir != null ? dir.getAbsolutePath() : "");
+        synchronized (scopes) {
+            LibPath libp = scopes.get(key);
+            if (libp == null) {
+                libp = createLibPathAt(dir);
+                scopes.put(key, libp);
+            }
+            return libp;
+        }
+    }
+
+    private LibPath createLibPathAt(File dir) {
         LibPath libp = new LibPath(global);
         Map<String, String> defs = ConfigProperties.getLibDefs(dir);
         for (Map.Entry<String, String> e : defs.entrySet()) {
             ResourceFinder finder =
-                    SearchPath.create(new File(e.getValue()), this);
+                    SearchPath.create(e.getValue(), this);
             libp.setLocalPath(e.getKey(), finder);
         }
         return libp;
@@ -88,6 +109,9 @@ public class LibPath implements ResourceFinder {
     public void setGlobalPathContext(String libName, ResourceFinder lib) {
         global.put(libName, lib);
         effective.put(libName, lib);
+        synchronized (scopes) {
+            scopes.clear();
+        }
     }
 
     /**
@@ -134,8 +158,7 @@ public class LibPath implements ResourceFinder {
     public static LibPath create(Map<String, String> libDefs) {
         LibPath lib = new LibPath();
         for (Map.Entry<String, String> e : libDefs.entrySet()) {
-            File dir = new File(e.getValue());
-            ResourceFinder finder = SearchPath.create(dir, lib);
+            ResourceFinder finder = SearchPath.create(e.getValue(), lib);
             lib.setGlobalPathContext(e.getKey(), finder);
         }
         return lib;
@@ -18,7 +18,9 @@ package com.nec.congenio.impl.path;
 
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nullable;
@@ -76,6 +78,23 @@ public abstract class SearchPath implements ResourceFinder {
         return new FileSearchPath(dir, libp);
     }
 
+    /**
+     * Creates a resource finder for a lib path.
+     * @param path an absolute path of a directory, a
+     *        template bundle (see {@link TemplateBundle}), or
+     *        a zip archive (see {@link ZipArchive}).
+     * @param libp the lib path used by the created finder.
+     * @return a resource finder.
+     */
+    public static ResourceFinder create(String path, LibPath libp) {
+        if (TemplateBundle.isBundle(path)) {
+            return new ArchiveSearchPath(TemplateBundle.open(path), libp);
+        } else if (ZipArchive.isArchive(path)) {
+            return new ArchiveSearchPath(ZipArchive.open(path), libp);
+        }
+        return create(new File(path), libp);
+    }
+
     @Nullable
     public abstract ConfigResource findResource(String name);
 
@@ -113,6 +132,90 @@ public abstract class SearchPath implements ResourceFinder {
 
     }
 
+    /**
+     * A search path in a directory of an archive, which
+     * resolves names relative to the directory as a file
+     * search path does.
+     */
+    public static class ArchiveSearchPath extends SearchPath {
+        private static final char SEPARATOR = '/';
+        private final TemplateArchive archive;
+        /**
+         * The directory in the archive ("" for the root,
+         * or a path that ends with '/').
+         */
+        private final String dir;
+
+        ArchiveSearchPath(TemplateArchive archive, LibPath libp) {
+            this(archive, "", libp);
+        }
+
+        ArchiveSearchPath(TemplateArchive archive, String dir, LibPath libp) {
+            super(libp);
+            this.archive = archive;
+            this.dir = dir;
+        }
+
+        protected ResourceFinder contextOf(String entry) {
+            String entryDir = entry.substring(0, entry.lastIndexOf(SEPARATOR) + 1);
+            if (entryDir.equals(dir)) {
+                return this;
+            }
+            return new ArchiveSearchPath(archive, entryDir, libPath());
+        }
+
+        @Override
+        public ConfigResource findResource(String name) {
+            String path = resolve(dir, name);
+            if (path == null) {
+                return null;
+            }
+            String entry = archive.find(path);
+            if (entry != null) {
+                return ConfigResource.create(contextOf(entry), archive, entry);
+            } else {
+                return null;
+            }
+        }
+
+        /**
+         * Resolves a name relative to a directory of the archive,
+         * removing "." and ".." segments.
+         * @return null if the name is outside the archive.
+         */
+        @Nullable
+        static String resolve(String dir, String name) {
+            List<String> segments = new ArrayList<String>();
+            for (String seg : (dir + name).split(String.valueOf(SEPARATOR))) {
+                if (seg.isEmpty() || ".".equals(seg)) {
+                    continue;
+                } else if ("..".equals(seg)) {
+                    if (segments.isEmpty()) {
+                        return null;
+                    }
+                    segments.remove(segments.size() - 1);
+                } else {
+                    segments.add(seg);
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            for (String seg : segments) {
+                if (sb.length() > 0) {
+                    sb.append(SEPARATOR);
+                }
+                sb.append(seg);
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public String getDescription() {
+            return "archive:" + archive.getUri()
+                    + (dir.isEmpty() ? "" : "!/" + dir);
+        }
+
+    }
+
     public static class FileSearchPath extends SearchPath {
         /**
          * Used to create File(parent, name). i.e., null means '.'
@@ -158,13 +261,14 @@ public abstract class SearchPath implements ResourceFinder {
         }
 
         protected File getFile(String name) {
+            FileLookupCache cache = FileLookupCache.getInstance();
             File file = new File(parent, name);
-            if (file.isFile()) {
+            if (cache.isFile(file)) {
                 return file;
             }
             for (String sfx : ConfigDescription.SUFFIXES) {
                 file = new File(parent, name + "." + sfx);
-                if (file.isFile()) {
+                if (cache.isFile(file)) {
                     return file;
                 }
             }
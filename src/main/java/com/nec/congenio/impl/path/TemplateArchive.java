@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.impl.path;
+
+import javax.annotation.Nullable;
+
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigDescription;
+
+/**
+ * A set of templates stored in a single file
+ * (e.g., a template bundle or a zip archive).
+ * @author tatemura
+ *
+ */
+public abstract class TemplateArchive {
+
+    /**
+     * Gets the URI of the archive.
+     */
+    public abstract String getUri();
+
+    /**
+     * Checks if the archive contains the entry.
+     * @param entry the name of the entry.
+     * @return true if the entry exists.
+     */
+    public abstract boolean contains(String entry);
+
+    /**
+     * Creates the content of the entry as an XML element.
+     * @param entry the name of the entry.
+     * @return a new element (which can be modified by the caller).
+     */
+    public abstract Element createElement(String entry);
+
+    /**
+     * Finds an entry in the same manner as a file
+     * search path: it tries the name as is and then
+     * the name with suffixes (.xml, .json, .properties).
+     * @param name the name of a template.
+     * @return null if not found.
+     */
+    @Nullable
+    public String find(String name) {
+        if (contains(name)) {
+            return name;
+        }
+        for (String sfx : ConfigDescription.SUFFIXES) {
+            String entry = name + "." + sfx;
+            if (contains(entry)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+}
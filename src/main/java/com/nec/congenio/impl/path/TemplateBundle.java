@@ -0,0 +1,322 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.impl.path;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigProperties;
+import com.nec.congenio.impl.ConfigResource;
+import com.nec.congenio.xml.BinaryXml;
+import com.nec.congenio.xml.Xml;
+
+/**
+ * A bundle of templates (config descriptions) in one
+ * archive, which has a precomputed name index and templates
+ * that are already parsed and encoded in binary XML
+ * (see {@link BinaryXml}).
+ *
+ * <pre>
+ *  BUNDLE := "CGB1" count (name offset length)* data
+ * </pre>
+ * A bundle is read with one open and kept in memory.
+ * JSON and properties files are converted into XML when
+ * the bundle is created.
+ *
+ * <p>A bundle is used as a lib path by giving its location
+ * either as a file (e.g., "conf=lib/conf.cgb") or as a class
+ * path resource (e.g., "conf=classpath:/templates/conf.cgb").
+ * Note that lib path definitions in a directory
+ * (congen-libs.properties) are not included in a bundle.
+ * @author tatemura
+ *
+ */
+public final class TemplateBundle extends TemplateArchive {
+    public static final String SUFFIX = ".cgb";
+    private static final byte[] MAGIC = { 'C', 'G', 'B', '1' };
+    private static final Map<String, TemplateBundle> BUNDLES =
+            new HashMap<String, TemplateBundle>();
+
+    private final String uri;
+    /**
+     * The bundle file (null if the bundle is not
+     * read from a file).
+     */
+    @Nullable
+    private final File file;
+    private final long mtime;
+    private final byte[] data;
+    private final Map<String, int[]> index;
+
+    private TemplateBundle(String uri, @Nullable File file,
+            byte[] data, Map<String, int[]> index) {
+        this.uri = uri;
+        this.file = file;
+        this.mtime = (file != null ? file.lastModified() : 0L);
+        this.data = data;
+        this.index = index;
+    }
+
+    /**
+     * Checks if the given lib path refers to a bundle.
+     * @param path a (absolute) lib path.
+     * @return true if the path is a bundle.
+     */
+    public static boolean isBundle(String path) {
+        return path.endsWith(SUFFIX);
+    }
+
+    /**
+     * Opens a bundle at the given location. A bundle
+     * is read once and shared.
+     * @param path the file path of the bundle or a class path
+     *        resource prefixed with "classpath:".
+     * @return the bundle.
+     */
+    public static TemplateBundle open(String path) {
+        synchronized (BUNDLES) {
+            TemplateBundle bundle = BUNDLES.get(path);
+            if (bundle == null || !bundle.isValid()) {
+                bundle = load(path);
+                BUNDLES.put(path, bundle);
+            }
+            return bundle;
+        }
+    }
+
+    private static TemplateBundle load(String path) {
+        if (path.startsWith(ConfigProperties.CLASSPATH_SCHEME)) {
+            String name = path.substring(
+                    ConfigProperties.CLASSPATH_SCHEME.length());
+            URL url = classLoader().getResource(
+                    name.startsWith("/") ? name.substring(1) : name);
+            if (url == null) {
+                throw new ConfigException("bundle not found: " + path);
+            }
+            return read(url);
+        } else {
+            File file = new File(path);
+            try {
+                InputStream instr = new FileInputStream(file);
+                try {
+                    return read(file.toURI().toString(), file, instr);
+                } finally {
+                    instr.close();
+                }
+            } catch (IOException ex) {
+                throw new ConfigException("failed to read bundle: " + path, ex);
+            }
+        }
+    }
+
+    private static ClassLoader classLoader() {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader != null) {
+            return loader;
+        }
+        return TemplateBundle.class.getClassLoader();
+    }
+
+    /**
+     * Reads a bundle from the given URL.
+     * @param url the location of the bundle.
+     * @return the bundle.
+     */
+    public static TemplateBundle read(URL url) {
+        try {
+            InputStream instr = url.openStream();
+            try {
+                return read(url.toString(), null, instr);
+            } finally {
+                instr.close();
+            }
+        } catch (IOException ex) {
+            throw new ConfigException("failed to read bundle: " + url, ex);
+        }
+    }
+
+    static TemplateBundle read(String uri, @Nullable File file,
+            InputStream instr) throws IOException {
+        byte[] bytes = readAll(instr);
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new ConfigException("not a template bundle: " + uri);
+        }
+        int count = in.readInt();
+        Map<String, int[]> index = new HashMap<String, int[]>();
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            int offset = in.readInt();
+            int length = in.readInt();
+            index.put(name, new int[] {offset, length});
+        }
+        int base = bytes.length - in.available();
+        for (int[] pos : index.values()) {
+            pos[0] += base;
+        }
+        return new TemplateBundle(uri, file, bytes, index);
+    }
+
+    private static byte[] readAll(InputStream instr) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        byte[] buff = new byte[BUFFER_SIZE];
+        int len;
+        while ((len = instr.read(buff)) > 0) {
+            bout.write(buff, 0, len);
+        }
+        return bout.toByteArray();
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private boolean isValid() {
+        return file == null || file.lastModified() == mtime;
+    }
+
+    @Override
+    public String getUri() {
+        return uri;
+    }
+
+    @Override
+    public boolean contains(String entry) {
+        return index.containsKey(entry);
+    }
+
+    /**
+     * Decodes the template of the given entry into
+     * a new DOM element.
+     * @param entry the name of the entry.
+     * @return the root element of the template.
+     */
+    @Override
+    public Element createElement(String entry) {
+        int[] pos = index.get(entry);
+        if (pos == null) {
+            throw new ConfigException("not in bundle: " + entry + " @ " + uri);
+        }
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(data, pos[0], pos[1]));
+        try {
+            return BinaryXml.read(in, Xml.createDocument());
+        } catch (IOException ex) {
+            throw new ConfigException("failed to decode: " + entry + " @ " + uri, ex);
+        }
+    }
+
+    /**
+     * Creates a bundle from the templates under the given
+     * directory. Entries are named with paths relative to the
+     * directory (e.g., "sub/a.xml").
+     * @param dir the root directory of templates.
+     * @param out the output of the bundle.
+     * @throws IOException if writing fails.
+     */
+    public static void write(File dir, OutputStream out) throws IOException {
+        Map<String, byte[]> entries = new TreeMap<String, byte[]>();
+        collect(dir, "", entries);
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.write(MAGIC);
+        dout.writeInt(entries.size());
+        int offset = 0;
+        for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+            dout.writeUTF(e.getKey());
+            dout.writeInt(offset);
+            dout.writeInt(e.getValue().length);
+            offset += e.getValue().length;
+        }
+        for (byte[] bytes : entries.values()) {
+            dout.write(bytes);
+        }
+        dout.flush();
+    }
+
+    private static void collect(File dir, String prefix,
+            Map<String, byte[]> entries) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new ConfigException("not a directory: " + dir);
+        }
+        for (File f : files) {
+            String name = prefix + f.getName();
+            if (f.isDirectory()) {
+                collect(f, name + "/", entries);
+            } else if (isTemplate(f.getName())) {
+                Element elem = ConfigResource.create(
+                        (ResourceFinder) null, f).createElement();
+                ByteArrayOutputStream bout = new ByteArrayOutputStream();
+                DataOutputStream dout = new DataOutputStream(bout);
+                BinaryXml.write(elem, dout);
+                dout.flush();
+                entries.put(name, bout.toByteArray());
+            }
+        }
+    }
+
+    private static boolean isTemplate(String name) {
+        for (String sfx : ConfigDescription.SUFFIXES) {
+            if (name.endsWith("." + sfx)
+                    && !name.startsWith(ConfigProperties.LIBPATH_FILE_NAME)
+                    && !name.equals(ConfigProperties.PROPERTY_FILE_NAME)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates a bundle file from a template directory.
+     * @param args OUTPUT_FILE TEMPLATE_DIR
+     * @throws IOException if writing fails.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: TemplateBundle OUTPUT_FILE TEMPLATE_DIR");
+            return;
+        }
+        OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(args[0]));
+        try {
+            write(new File(args[1]), out);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.impl.path;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.impl.ConfigResource;
+
+/**
+ * A zip archive of templates, which is used as a lib path
+ * (e.g., "conf=lib/conf.zip").
+ *
+ * <p>The archive file is memory-mapped and its central
+ * directory is read once when the archive is opened. An entry
+ * is parsed directly from the mapped buffer. Entries must be
+ * either stored or deflated; ZIP64 archives are not supported.
+ * @author tatemura
+ *
+ */
+public final class ZipArchive extends TemplateArchive {
+    public static final String SUFFIX = ".zip";
+
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int EOCD_LEN = 22;
+    private static final int CEN_LEN = 46;
+    private static final int LOC_LEN = 30;
+    private static final int MAX_COMMENT_LEN = 0xffff;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int UNSIGNED_SHORT = 0xffff;
+
+    private static final Map<String, ZipArchive> ARCHIVES =
+            new HashMap<String, ZipArchive>();
+
+    private final File file;
+    private final long mtime;
+    private final ByteBuffer buffer;
+    private final Map<String, ZipEntry> entries;
+
+    private ZipArchive(File file, long mtime, ByteBuffer buffer,
+            Map<String, ZipEntry> entries) {
+        this.file = file;
+        this.mtime = mtime;
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    /**
+     * Checks if the given lib path refers to a zip archive.
+     * @param path a (absolute) lib path.
+     * @return true if the path is a zip archive.
+     */
+    public static boolean isArchive(String path) {
+        return path.endsWith(SUFFIX);
+    }
+
+    /**
+     * Opens a zip archive. An archive is mapped once
+     * and shared until the file is modified.
+     * @param path the path of the archive file.
+     * @return the archive.
+     */
+    public static ZipArchive open(String path) {
+        synchronized (ARCHIVES) {
+            ZipArchive archive = ARCHIVES.get(path);
+            if (archive == null
+                    || archive.file.lastModified() != archive.mtime) {
+                archive = map(new File(path));
+                ARCHIVES.put(path, archive);
+            }
+            return archive;
+        }
+    }
+
+    static ZipArchive map(File file) {
+        try {
+            long mtime = file.lastModified();
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new ConfigException("archive too large: " + file);
+                }
+                ByteBuffer buffer = channel.map(
+                        FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                return new ZipArchive(file, mtime, buffer,
+                        readCentralDirectory(buffer, file));
+            } finally {
+                raf.close();
+            }
+        } catch (IOException ex) {
+            throw new ConfigException("failed to open archive: " + file, ex);
+        }
+    }
+
+    private static Map<String, ZipEntry> readCentralDirectory(
+            ByteBuffer buffer, File file) {
+        int eocd = findEndOfCentralDirectory(buffer);
+        if (eocd < 0) {
+            throw new ConfigException("not a zip archive: " + file);
+        }
+        int count = buffer.getShort(eocd + 10) & UNSIGNED_SHORT;
+        int pos = buffer.getInt(eocd + 16);
+        if (count == UNSIGNED_SHORT || pos == -1) {
+            throw new ConfigException("ZIP64 archive not supported: " + file);
+        }
+        Map<String, ZipEntry> entries = new HashMap<String, ZipEntry>();
+        for (int i = 0; i < count; i++) {
+            if (buffer.getInt(pos) != CEN_SIG) {
+                throw new ConfigException("malformed zip archive: " + file);
+            }
+            int method = buffer.getShort(pos + 10) & UNSIGNED_SHORT;
+            int csize = buffer.getInt(pos + 20);
+            int nameLen = buffer.getShort(pos + 28) & UNSIGNED_SHORT;
+            int extraLen = buffer.getShort(pos + 30) & UNSIGNED_SHORT;
+            int commentLen = buffer.getShort(pos + 32) & UNSIGNED_SHORT;
+            int locOffset = buffer.getInt(pos + 42);
+            String name = readName(buffer, pos + CEN_LEN, nameLen);
+            if (!name.endsWith("/")) {
+                entries.put(name, new ZipEntry(method, locOffset, csize));
+            }
+            pos += CEN_LEN + nameLen + extraLen + commentLen;
+        }
+        return entries;
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer buffer) {
+        int last = buffer.limit() - EOCD_LEN;
+        int first = Math.max(0, last - MAX_COMMENT_LEN);
+        for (int pos = last; pos >= first; pos--) {
+            if (buffer.getInt(pos) == EOCD_SIG) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    private static String readName(ByteBuffer buffer, int pos, int len) {
+        byte[] bytes = new byte[len];
+        ByteBuffer buf = buffer.duplicate();
+        buf.position(pos);
+        buf.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new ConfigException("UTF-8 not supported", ex);
+        }
+    }
+
+    @Override
+    public String getUri() {
+        return file.toURI().toString();
+    }
+
+    @Override
+    public boolean contains(String entry) {
+        return entries.containsKey(entry);
+    }
+
+    @Override
+    public Element createElement(String entry) {
+        ZipEntry zent = entries.get(entry);
+        if (zent == null) {
+            throw new ConfigException("not in archive: " + entry + " @ " + file);
+        }
+        ByteBuffer data = zent.data(buffer);
+        if (zent.method == STORED) {
+            return ConfigResource.createElement(entry,
+                    new ByteBufferInputStream(data));
+        } else if (zent.method == DEFLATED) {
+            Inflater inflater = new Inflater(true);
+            try {
+                return ConfigResource.createElement(entry,
+                        new InflaterInputStream(
+                                new ByteBufferInputStream(data), inflater));
+            } finally {
+                inflater.end();
+            }
+        } else {
+            throw new ConfigException("unsupported compression method ("
+                    + zent.method + "): " + entry + " @ " + file);
+        }
+    }
+
+    static class ZipEntry {
+        private final int method;
+        private final int locOffset;
+        private final int csize;
+
+        ZipEntry(int method, int locOffset, int csize) {
+            this.method = method;
+            this.locOffset = locOffset;
+            this.csize = csize;
+        }
+
+        /**
+         * Gets the (compressed) data of the entry. The sizes in
+         * the central directory are used since the local header
+         * may not have them.
+         */
+        ByteBuffer data(ByteBuffer buffer) {
+            ByteBuffer buf = buffer.duplicate();
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt(locOffset) != LOC_SIG) {
+                throw new ConfigException("malformed zip entry");
+            }
+            int nameLen = buf.getShort(locOffset + 26) & UNSIGNED_SHORT;
+            int extraLen = buf.getShort(locOffset + 28) & UNSIGNED_SHORT;
+            int start = locOffset + LOC_LEN + nameLen + extraLen;
+            buf.limit(start + csize);
+            buf.position(start);
+            return buf.slice();
+        }
+    }
+
+    static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            return buf.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            int size = Math.min(len, buf.remaining());
+            buf.get(bytes, off, size);
+            return size;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+}
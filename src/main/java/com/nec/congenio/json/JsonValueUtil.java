@@ -19,6 +19,7 @@ package com.nec.congenio.json;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -95,6 +96,18 @@ public final class JsonValueUtil {
         }
     }
 
+    /**
+     * Parses the content of the given input stream as a JSON
+     * object.
+     * @param instr the input stream that contains a JSON object.
+     *        The stream is NOT closed by this method.
+     * @return a parsed JSON object.
+     */
+    public static JsonObject parseObject(InputStream instr) {
+        JsonParser parser = Json.createParser(instr);
+        return (JsonObject) new JsonValueParser(parser).parse();
+    }
+
     public static JsonNumber number(String val) {
         return create(new BigDecimal(val));
     }
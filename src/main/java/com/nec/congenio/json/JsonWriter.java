@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.value.xml.CompactValue;
+import com.nec.congenio.value.xml.ShapedValue;
+import com.nec.congenio.value.xml.XmlValue;
+
+/**
+ * A streaming JSON serializer that writes a value to a
+ * writer without building a JSON tree of the value.
+ *
+ * <p>The indented output is the same as
+ * {@link JsonValueUtil#toString(JsonValue)}, and the compact
+ * output is the same as <code>toString()</code> of a JSON
+ * value. Characters are collected in a buffer, which is
+ * written to the writer when it is full or when
+ * {@link #release()} (or {@link #flush()}) is called. A released
+ * buffer is reused by the next writer in the same thread.
+ * @author tatemura
+ *
+ */
+public final class JsonWriter {
+    private static final int BUFFER_SIZE = 8192;
+    private static final String INDENT = "  ";
+    private static final int UNICODE_HEX_LEN = 4;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<char[]> BUFFERS = new ThreadLocal<char[]>();
+
+    private final Writer writer;
+    private final boolean indent;
+    @Nullable
+    private char[] buf;
+    private int len;
+    /**
+     * The capacity of the buffer (zero if the buffer is
+     * not acquired).
+     */
+    private int limit;
+    /**
+     * The number of members written so far in each
+     * enclosing object or array.
+     */
+    private int[] counts = new int[16];
+    private int depth;
+    private boolean afterName;
+
+    /**
+     * Creates a writer.
+     * @param writer the destination of characters.
+     * @param indent true to write indented output.
+     */
+    public JsonWriter(Writer writer, boolean indent) {
+        this.writer = writer;
+        this.indent = indent;
+    }
+
+    /**
+     * Writes a config value. A value converted from XML
+     * (either DOM-backed or compact) is written while its
+     * XML form is walked; other values are converted with
+     * {@link ConfigValue#toJson()}.
+     * @param value the value to be written.
+     * @return this writer.
+     * @throws IOException if writing fails.
+     */
+    public JsonWriter write(ConfigValue value) throws IOException {
+        if (value instanceof CompactValue) {
+            ((CompactValue) value).writeJson(this);
+        } else if (value instanceof ShapedValue) {
+            ((ShapedValue) value).toCompact().writeJson(this);
+        } else if (value instanceof XmlValue) {
+            JsonXml.writeJson(((XmlValue) value).toXml(), this);
+        } else {
+            value(value.toJson());
+        }
+        return this;
+    }
+
+    /**
+     * Writes an XML element as JSON (in the same way as
+     * {@link JsonXml#toJson(Element)} converts it).
+     * @param elem the element to be written.
+     * @return this writer.
+     * @throws IOException if writing fails.
+     */
+    public JsonWriter write(Element elem) throws IOException {
+        JsonXml.writeJson(elem, this);
+        return this;
+    }
+
+    /**
+     * Begins an object as a value.
+     * @return this writer.
+     * @throws IOException if writing fails.
+     */
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        put('{');
+        push();
+        return this;
+    }
+
+    /**
+     * Ends the current object.
+     * @return this writer.
+     * @throws IOException if writing fails.
+     */
+    public JsonWriter endObject() throws IOException {
+        int count = pop();
+        if (indent && count > 0) {
+            put('\n');
+            indent(depth);
+        }
+        put('}');
+        return this;
+    }
+
+    /**
+     * Begins an array as a value.
+     * @return this writer.
+     * @throws IOException if writing fails.
+     */
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        put('[');
+        push();
+        return this;
+    }
+
+    /**
+     * Ends the current array.
+     * @return this writer.
+     * @throws IOException if writing fails.
+     */
+    public JsonWriter endArray() throws IOException {
+        /**
+         * the indented format closes an array on the line
+         * of its last element.
+         */
+        pop();
+        put(']');
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of the current
+     * object.
+     * @param name the name of the member.
+     * @return this writer.
+     * @throws IOException if writing fails.
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        if (indent) {
+            put(':');
+            put(' ');
+        } else {
+            put(':');
+        }
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string as a value.
+     * @param value the string.
+     * @return this writer.
+     * @throws IOException if writing fails.
+     */
+    public JsonWriter value(String value) throws IOException {
+        beforeValue();
+        string(value);
+        return this;
+    }
+
+    /**
+     * Writes a JSON value.
+     * @param value the value to be written.
+     * @return this writer.
+     * @throws IOException if writing fails.
+     */
+    public JsonWriter value(JsonValue value) throws IOException {
+        switch (value.getValueType()) {
+        case OBJECT:
+            beginObject();
+            for (Map.Entry<String, JsonValue> e : ((JsonObject) value).entrySet()) {
+                name(e.getKey());
+                value(e.getValue());
+            }
+            return endObject();
+        case ARRAY:
+            beginArray();
+            for (JsonValue v : (JsonArray) value) {
+                value(v);
+            }
+            return endArray();
+        case STRING:
+            return value(((JsonString) value).getString());
+        default:
+            beforeValue();
+            put(value.toString());
+            return this;
+        }
+    }
+
+    /**
+     * Writes a line break (e.g., after a top-level value).
+     * @return this writer.
+     * @throws IOException if writing fails.
+     */
+    public JsonWriter newLine() throws IOException {
+        put('\n');
+        return this;
+    }
+
+    /**
+     * Writes the buffered characters to the writer and
+     * flushes it.
+     * @throws IOException if writing fails.
+     */
+    public void flush() throws IOException {
+        release();
+        writer.flush();
+    }
+
+    /**
+     * Writes the buffered characters to the writer (without
+     * flushing it) and returns the buffer for reuse.
+     * This writer can still be used after it is released.
+     * @throws IOException if writing fails.
+     */
+    public void release() throws IOException {
+        drain();
+        if (buf != null) {
+            BUFFERS.set(buf);
+            buf = null;
+            limit = 0;
+        }
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+        } else if (depth > 0) {
+            separate();
+        }
+    }
+
+    private void separate() throws IOException {
+        if (counts[depth - 1]++ > 0) {
+            put(',');
+        }
+        if (indent) {
+            put('\n');
+            indent(depth);
+        }
+    }
+
+    private void push() {
+        if (depth == counts.length) {
+            counts = Arrays.copyOf(counts, depth * 2);
+        }
+        counts[depth++] = 0;
+    }
+
+    private int pop() {
+        return counts[--depth];
+    }
+
+    private void indent(int level) throws IOException {
+        for (int i = 0; i < level; i++) {
+            put(INDENT);
+        }
+    }
+
+    private void string(String value) throws IOException {
+        put('"');
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char chr = value.charAt(i);
+                switch (chr) {
+                case '\\':
+                case '"':
+                    put('\\');
+                    put(chr);
+                    break;
+                case '\t':
+                    put('\\');
+                    put('t');
+                    break;
+                case '\n':
+                    put('\\');
+                    put('n');
+                    break;
+                case '\r':
+                    put('\\');
+                    put('r');
+                    break;
+                case '\b':
+                    put('\\');
+                    put('b');
+                    break;
+                case '\f':
+                    put('\\');
+                    put('f');
+                    break;
+                default:
+                    if (chr < ' ') {
+                        put('\\');
+                        put('u');
+                        for (int s = (UNICODE_HEX_LEN - 1) * 4; s >= 0; s -= 4) {
+                            put(HEX[(chr >> s) & 0xf]);
+                        }
+                    } else {
+                        put(chr);
+                    }
+                }
+            }
+        }
+        put('"');
+    }
+
+    private void put(char chr) throws IOException {
+        if (len == limit) {
+            reserve();
+        }
+        buf[len++] = chr;
+    }
+
+    private void put(String str) throws IOException {
+        int pos = 0;
+        int size = str.length();
+        while (pos < size) {
+            if (len == limit) {
+                reserve();
+            }
+            int n = Math.min(size - pos, limit - len);
+            str.getChars(pos, pos + n, buf, len);
+            pos += n;
+            len += n;
+        }
+    }
+
+    /**
+     * Makes room in the buffer, acquiring the buffer of the
+     * thread if this writer has none.
+     */
+    private void reserve() throws IOException {
+        if (buf == null) {
+            buf = BUFFERS.get();
+            if (buf != null) {
+                BUFFERS.remove();
+            } else {
+                buf = new char[BUFFER_SIZE];
+            }
+            limit = buf.length;
+        } else {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (len > 0) {
+            writer.write(buf, 0, len);
+            len = 0;
+        }
+    }
+}
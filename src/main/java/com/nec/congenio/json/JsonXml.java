@@ -16,6 +16,12 @@
 
 package com.nec.congenio.json;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +36,9 @@ import javax.json.JsonObjectBuilder;
 import javax.json.JsonString;
 import javax.json.JsonValue;
 import javax.json.JsonValue.ValueType;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParsingException;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -40,6 +49,7 @@ import com.nec.congenio.impl.ExpXml;
 import com.nec.congenio.value.PrimitiveValue;
 import com.nec.congenio.value.xml.Attrs;
 import com.nec.congenio.value.xml.XmlValue;
+import com.nec.congenio.xml.Compression;
 import com.nec.congenio.xml.Xml;
 
 public final class JsonXml {
@@ -73,6 +83,57 @@ public final class JsonXml {
         return elem;
     }
 
+    /**
+     * Parses JSON text of an object as an XML element. The
+     * element is built directly from parser events (without
+     * building a JSON object), and is the same as the one
+     * converted from the parsed object with {@link #toXml(JsonObject)}.
+     * @param instr the input stream of JSON text, which may be
+     *        compressed (see {@link Compression}). The stream
+     *        is NOT closed by this method.
+     * @return the generated element.
+     * @throws JsonParsingException if the text is not
+     *         a JSON object.
+     */
+    public static Element parseXml(InputStream instr) {
+        JsonParser parser;
+        try {
+            parser = Json.createParser(Compression.decompress(instr));
+        } catch (IOException ex) {
+            throw new ConfigException("failed to read json", ex);
+        }
+        try {
+            return new ElementParser(parser, Xml.createDocument())
+                .parse(TAG_OBJECT_NAME);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Parses a JSON file of an object as an XML element
+     * (see {@link #parseXml(InputStream)}).
+     * @param file the file that contains a JSON object.
+     * @return the generated element.
+     */
+    public static Element parseXml(File file) {
+        InputStream instr;
+        try {
+            instr = new FileInputStream(file);
+        } catch (FileNotFoundException ex) {
+            throw new ConfigException("json file not found", ex);
+        }
+        try {
+            return parseXml(instr);
+        } finally {
+            try {
+                instr.close();
+            } catch (IOException ex) {
+                throw new ConfigException("failed to close json file", ex);
+            }
+        }
+    }
+
     private static Element toXml(Document doc, String name, JsonString value) {
         return XmlValue.createElement(doc, name, value.getString());
     }
@@ -108,6 +169,97 @@ public final class JsonXml {
 
     }
 
+    /**
+     * Builds XML elements from the events of a JSON parser.
+     */
+    static class ElementParser {
+        private final JsonParser parser;
+        private final Document doc;
+
+        ElementParser(JsonParser parser, Document doc) {
+            this.parser = parser;
+            this.doc = doc;
+        }
+
+        Element parse(String name) {
+            if (next() != Event.START_OBJECT) {
+                throw error("object expected");
+            }
+            Element elem = parseObject(name);
+            if (parser.hasNext()) {
+                throw error("unexpected text after expression");
+            }
+            return elem;
+        }
+
+        private Element parseObject(String name) {
+            Element elem = XmlValue.createElement(doc, name, Type.OBJECT);
+            Map<String, Element> members = new HashMap<String, Element>();
+            Event event;
+            while ((event = next()) != Event.END_OBJECT) {
+                if (event != Event.KEY_NAME) {
+                    throw error("key expected");
+                }
+                String key = parser.getString();
+                Element child = parseValue(key, next());
+                Element prev = members.put(key, child);
+                if (prev != null) {
+                    /**
+                     * the last value of a key is kept
+                     * at the position of the first one
+                     * (as a JSON object does).
+                     */
+                    elem.replaceChild(child, prev);
+                } else {
+                    elem.appendChild(child);
+                }
+            }
+            return elem;
+        }
+
+        private Element parseArray(String name) {
+            Element elem = XmlValue.createElement(doc, name, Type.ARRAY);
+            Event event;
+            while ((event = next()) != Event.END_ARRAY) {
+                elem.appendChild(parseValue(TAG_ARRAY_ELEMENT, event));
+            }
+            return elem;
+        }
+
+        private Element parseValue(String name, Event event) {
+            switch (event) {
+            case START_OBJECT:
+                return parseObject(name);
+            case START_ARRAY:
+                return parseArray(name);
+            case VALUE_NUMBER:
+                return XmlValue.createElement(doc, name, Type.NUMBER,
+                        parser.getBigDecimal());
+            case VALUE_STRING:
+                return XmlValue.createElement(doc, name, parser.getString());
+            case VALUE_NULL:
+                return XmlValue.createElement(doc, name);
+            case VALUE_TRUE:
+                return XmlValue.createElement(doc, name, "true");
+            case VALUE_FALSE:
+                return XmlValue.createElement(doc, name, "false");
+            default:
+                throw error("unexpected event: " + event);
+            }
+        }
+
+        private Event next() {
+            if (parser.hasNext()) {
+                return parser.next();
+            }
+            throw error("unexpected end of text");
+        }
+
+        private JsonParsingException error(String msg) {
+            return new JsonParsingException(msg, parser.getLocation());
+        }
+    }
+
     /**
      * Converts an XML element to JSON value.
      * @param elem the element to be converted.
@@ -142,6 +294,67 @@ public final class JsonXml {
         return toJsonValue(type, XmlValue.primitiveValueOf(elem));
     }
 
+    /**
+     * Writes an XML element as JSON to a streaming writer
+     * without building a JSON value (the output is the same
+     * as {@link #toJson(Element)}).
+     * @param elem the element to be written.
+     * @param out the writer.
+     * @throws IOException if writing fails.
+     */
+    public static void writeJson(Element elem, JsonWriter out) throws IOException {
+        if (ExpXml.findExp(elem) != null) {
+            out.value(toJson(elem));
+            return;
+        }
+        List<Element> elements = Xml.getElements(elem);
+        Map<String, String> attrs = Attrs.userAttrs(elem);
+        Type type = XmlValue.findType(elem);
+        if (!elements.isEmpty() || !attrs.isEmpty()) {
+            if (type == null) {
+                type = guessType(elements);
+            }
+            if (Type.ARRAY.equals(type)) {
+                out.beginArray();
+                for (String value : attrs.values()) {
+                    out.value(value);
+                }
+                for (Element c : elements) {
+                    writeJson(c, out);
+                }
+                out.endArray();
+            } else if (hasDuplicateKeys(attrs, elements)) {
+                /**
+                 * a JSON object keeps the last value of a key.
+                 */
+                out.value(toJsonObject(attrs, elements));
+            } else {
+                out.beginObject();
+                for (Map.Entry<String, String> en : attrs.entrySet()) {
+                    out.name(en.getKey()).value(en.getValue());
+                }
+                for (Element c : elements) {
+                    out.name(XmlValue.nameOf(c));
+                    writeJson(c, out);
+                }
+                out.endObject();
+            }
+            return;
+        }
+        out.value(toJsonValue(type, XmlValue.primitiveValueOf(elem)));
+    }
+
+    private static boolean hasDuplicateKeys(Map<String, String> attrs,
+            List<Element> elements) {
+        Set<String> keys = new HashSet<String>(attrs.keySet());
+        for (Element c : elements) {
+            if (!keys.add(XmlValue.nameOf(c))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static JsonValue toJsonObject(
             Map<String, String> attrs, List<Element> elements) {
         JsonObjectBuilder builder = Json.createObjectBuilder();
@@ -179,7 +392,13 @@ public final class JsonXml {
         }
     }
 
-    private static JsonValue toJsonValue(@Nullable Type type, PrimitiveValue value) {
+    /**
+     * Converts a primitive value to JSON value.
+     * @param type the declared type (null if not declared).
+     * @param value the value to be converted.
+     * @return the converted JSON value.
+     */
+    public static JsonValue toJsonValue(@Nullable Type type, PrimitiveValue value) {
         if (type == null) {
             return value.toJson();
         }
@@ -24,16 +24,29 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
+import javax.annotation.Nullable;
 import javax.json.JsonValue;
 
 import org.w3c.dom.Element;
 
 import com.nec.congenio.ConfigException;
 import com.nec.congenio.ConfigValue;
+import com.nec.congenio.value.xml.CompactValue;
 import com.nec.congenio.xml.Xml;
 
 public abstract class AbstractValue implements ConfigValue {
 
+    /**
+     * Gets an immutable snapshot of the value (see
+     * {@link com.nec.congenio.Values#freeze(ConfigValue)}).
+     * This implementation copies the value to a {@link CompactValue};
+     * an immutable value returns itself.
+     * @return a value that answers the same as this value.
+     */
+    public ConfigValue freeze() {
+        return CompactValue.create(toXml(getName()));
+    }
+
     @Override
     public abstract String getName();
 
@@ -43,6 +56,24 @@ public abstract class AbstractValue implements ConfigValue {
     @Override
     public abstract boolean hasValue(String name);
 
+    /**
+     * Finds a child value by a (plain) name and a position,
+     * which is equivalent to findValue("name[position + 1]")
+     * (or findValue("name") for the first one).
+     * An attribute takes precedence at position 0.
+     * @param name the tag name of the child.
+     * @param position the position among the children of
+     *        the name (0 for the first one).
+     * @return null if not found.
+     */
+    @Nullable
+    public ConfigValue findChild(String name, int position) {
+        if (position == 0) {
+            return findValue(name);
+        }
+        return findValue(name + "[" + (position + 1) + "]");
+    }
+
     @Override
     public abstract Map<String, ConfigValue> toValueMap();
 
@@ -0,0 +1,641 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.value;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.ValueBuilder;
+
+/**
+ * Generates a {@link BeanAccessor} for a bean class as
+ * bytecode, which calls the constructor, setters and
+ * getters of the bean directly (without Method.invoke
+ * and boxing of primitive properties).
+ *
+ * <p>A generated class is a class file of version 49 (so that
+ * it needs no stack map frames) defined by its own class
+ * loader. Generation is given up (and the reflective binding
+ * is used) if the bean class is not public or has a property
+ * that generated code does not handle. If defining a generated
+ * class fails, the failure is logged and the reflective binding
+ * is used.
+ *
+ * <p>The loader of a generated class is a child of the loader
+ * of the bean class, and it is referred to only from the binder
+ * of the bean class (see {@link ClassBinder}), so it does not
+ * keep the bean class from being unloaded.
+ * @author tatemura
+ *
+ */
+final class AccessorGenerator {
+    private static final Logger LOGGER =
+            Logger.getLogger(AccessorGenerator.class.getName());
+    private static final String PACKAGE = "com/nec/congenio/value/gen/";
+    private static final AtomicInteger COUNT = new AtomicInteger();
+    private static final String BASE = internalName(BeanAccessor.class);
+    private static final String VALUE_DESC = descriptor(ConfigValue.class);
+    private static final Map<Class<?>, String> CONVERTERS =
+            new HashMap<Class<?>, String>();
+
+    static {
+        CONVERTERS.put(int.class, "toInt");
+        CONVERTERS.put(long.class, "toLong");
+        CONVERTERS.put(double.class, "toDouble");
+        CONVERTERS.put(boolean.class, "toBoolean");
+    }
+
+    private AccessorGenerator() {
+    }
+
+    /**
+     * Generates an accessor.
+     * @param binder the binding metadata of a bean class.
+     * @return null if an accessor cannot be generated.
+     */
+    @Nullable
+    static BeanAccessor generate(ClassBinder binder) {
+        Class<?> cls = binder.getBoundClass();
+        if (!isSupported(binder)) {
+            return null;
+        }
+        String name = PACKAGE + "Accessor" + COUNT.incrementAndGet();
+        try {
+            byte[] code = new ClassWriter(name, binder).toByteArray();
+            Class<?> gen = new Loader(cls.getClassLoader())
+                .define(name.replace('/', '.'), code);
+            return (BeanAccessor) gen.newInstance();
+        } catch (IOException ex) {
+            return fallback(cls, ex);
+        } catch (InstantiationException ex) {
+            return fallback(cls, ex);
+        } catch (IllegalAccessException ex) {
+            return fallback(cls, ex);
+        } catch (SecurityException ex) {
+            return fallback(cls, ex);
+        } catch (LinkageError err) {
+            return fallback(cls, err);
+        }
+    }
+
+    /**
+     * Logs a failure of generation, after which the
+     * reflective binding is used for the class.
+     * @return null (no accessor).
+     */
+    @Nullable
+    private static BeanAccessor fallback(Class<?> cls, Throwable th) {
+        LOGGER.log(Level.WARNING, "failed to generate an accessor of "
+                + cls.getName() + "; reflection is used instead", th);
+        return null;
+    }
+
+    private static boolean isSupported(ClassBinder binder) {
+        Class<?> cls = binder.getBoundClass();
+        if (!Modifier.isPublic(cls.getModifiers()) || cls.isInterface()
+                || cls.isPrimitive() || cls.isArray()
+                || cls.getClassLoader() == null) {
+            return false;
+        }
+        for (ClassBinder.Property p : binder.getSetters()) {
+            Class<?> type = p.getType();
+            if (type.isPrimitive() && !CONVERTERS.containsKey(type)) {
+                return false;
+            }
+            if (!isAccessible(type) || !isAccessible(p.getMethod())) {
+                return false;
+            }
+        }
+        for (ClassBinder.Property p : binder.getGetters()) {
+            if (!isAccessible(p.getMethod().getReturnType())
+                    || !isAccessible(p.getMethod())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAccessible(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || Modifier.isPublic(type.getModifiers());
+    }
+
+    private static boolean isAccessible(Method method) {
+        return Modifier.isPublic(method.getDeclaringClass().getModifiers());
+    }
+
+    static String internalName(Class<?> cls) {
+        return cls.getName().replace('.', '/');
+    }
+
+    static String descriptor(Class<?> cls) {
+        if (cls.isArray()) {
+            return cls.getName().replace('.', '/');
+        } else if (cls.isPrimitive()) {
+            if (cls == int.class) {
+                return "I";
+            } else if (cls == long.class) {
+                return "J";
+            } else if (cls == double.class) {
+                return "D";
+            } else if (cls == boolean.class) {
+                return "Z";
+            } else if (cls == float.class) {
+                return "F";
+            } else if (cls == short.class) {
+                return "S";
+            } else if (cls == byte.class) {
+                return "B";
+            } else if (cls == char.class) {
+                return "C";
+            }
+            return "V";
+        }
+        return "L" + internalName(cls) + ";";
+    }
+
+    static String descriptor(Method method) {
+        StringBuilder sb = new StringBuilder("(");
+        for (Class<?> p : method.getParameterTypes()) {
+            sb.append(descriptor(p));
+        }
+        return sb.append(')').append(descriptor(method.getReturnType())).toString();
+    }
+
+    /**
+     * Gets the wrapper class of a primitive class.
+     */
+    static Class<?> wrapper(Class<?> cls) {
+        if (cls == int.class) {
+            return Integer.class;
+        } else if (cls == long.class) {
+            return Long.class;
+        } else if (cls == double.class) {
+            return Double.class;
+        } else if (cls == boolean.class) {
+            return Boolean.class;
+        } else if (cls == float.class) {
+            return Float.class;
+        } else if (cls == short.class) {
+            return Short.class;
+        } else if (cls == byte.class) {
+            return Byte.class;
+        } else if (cls == char.class) {
+            return Character.class;
+        }
+        return cls;
+    }
+
+    static boolean isWide(Class<?> cls) {
+        return cls == long.class || cls == double.class;
+    }
+
+    /**
+     * A class loader that defines one generated class.
+     * Classes are resolved with the loader of the bean class
+     * first, and then with the loader of this library.
+     */
+    static final class Loader extends ClassLoader {
+        Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] code) {
+            return defineClass(name, code, 0, code.length);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            return BeanAccessor.class.getClassLoader().loadClass(name);
+        }
+    }
+
+    /**
+     * Writes a class file of an accessor.
+     */
+    static final class ClassWriter {
+        private static final int ACC_PUBLIC = 0x0001;
+        private static final int ACC_FINAL = 0x0010;
+        private static final int ACC_SUPER = 0x0020;
+
+        private final String name;
+        private final ClassBinder binder;
+        private final String target;
+        private final ConstantPool pool = new ConstantPool();
+        private final List<byte[]> methods = new ArrayList<byte[]>();
+
+        ClassWriter(String name, ClassBinder binder) {
+            this.name = name;
+            this.binder = binder;
+            this.target = internalName(binder.getBoundClass());
+        }
+
+        byte[] toByteArray() throws IOException {
+            int thisClass = pool.classRef(name);
+            int superClass = pool.classRef(BASE);
+            writeInit();
+            if (binder.getDefaultConstructor() != null) {
+                writeNewInstance();
+            }
+            writeBind();
+            writeBuild();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            pool.write(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (byte[] m : methods) {
+                out.write(m);
+            }
+            out.writeShort(0); // attributes
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private void writeInit() throws IOException {
+            Code code = new Code();
+            code.op(Code.ALOAD_0);
+            code.op(Code.INVOKESPECIAL, pool.methodRef(BASE, "<init>", "()V"));
+            code.op(Code.RETURN);
+            addMethod("<init>", "()V", code, 1, 1);
+        }
+
+        private void writeNewInstance() throws IOException {
+            Code code = new Code();
+            code.op(Code.NEW, pool.classRef(target));
+            code.op(Code.DUP);
+            code.op(Code.INVOKESPECIAL, pool.methodRef(target, "<init>", "()V"));
+            code.op(Code.ARETURN);
+            addMethod("newInstance", "()Ljava/lang/Object;", code, 2, 1);
+        }
+
+        /**
+         * Generates bind(Object obj, ConfigValue value). Locals:
+         * 3: the target object, 4: a child value, 5: a converted object.
+         * A setter call is guarded by a handler that wraps its
+         * exception (see {@link BeanAccessor#setterFailed(Throwable)}).
+         */
+        private void writeBind() throws IOException {
+            Code code = new Code();
+            code.op(Code.ALOAD_1);
+            code.op(Code.CHECKCAST, pool.classRef(target));
+            code.op(Code.ASTORE, 3);
+            int child = pool.methodRef(BASE, "child",
+                    "(" + VALUE_DESC + "Ljava/lang/String;)" + VALUE_DESC);
+            List<int[]> guarded = new ArrayList<int[]>();
+            for (ClassBinder.Property p : binder.getSetters()) {
+                Method setter = p.getMethod();
+                Class<?> type = p.getType();
+                code.op(Code.ALOAD_2);
+                code.op(Code.LDC_W, pool.string(p.getName()));
+                code.op(Code.INVOKESTATIC, child);
+                code.op(Code.ASTORE, 4);
+                code.op(Code.ALOAD, 4);
+                int skipMissing = code.jump(Code.IFNULL);
+                int skipNull = -1;
+                if (type.isPrimitive()) {
+                    code.op(Code.ALOAD_3);
+                    code.op(Code.ALOAD, 4);
+                    code.op(Code.INVOKESTATIC, pool.methodRef(BASE,
+                            CONVERTERS.get(type),
+                            "(" + VALUE_DESC + ")" + descriptor(type)));
+                } else {
+                    code.op(Code.ALOAD, 4);
+                    code.op(Code.LDC_W, pool.classRef(classConstant(type)));
+                    code.op(Code.INVOKESTATIC, pool.methodRef(BASE, "toObject",
+                            "(" + VALUE_DESC + "Ljava/lang/Class;)Ljava/lang/Object;"));
+                    code.op(Code.ASTORE, 5);
+                    code.op(Code.ALOAD, 5);
+                    skipNull = code.jump(Code.IFNULL);
+                    code.op(Code.ALOAD_3);
+                    code.op(Code.ALOAD, 5);
+                    code.op(Code.CHECKCAST, pool.classRef(classConstant(type)));
+                }
+                int start = code.position();
+                code.op(Code.INVOKEVIRTUAL, pool.methodRef(target,
+                        setter.getName(), descriptor(setter)));
+                guarded.add(new int[] {start, code.position()});
+                popResult(code, setter.getReturnType());
+                code.land(skipMissing);
+                if (skipNull >= 0) {
+                    code.land(skipNull);
+                }
+            }
+            code.op(Code.RETURN);
+            if (!guarded.isEmpty()) {
+                int handler = code.position();
+                code.op(Code.INVOKESTATIC, pool.methodRef(BASE, "setterFailed",
+                        "(Ljava/lang/Throwable;)" + descriptor(ConfigException.class)));
+                code.op(Code.ATHROW);
+                for (int[] range : guarded) {
+                    code.guard(range[0], range[1], handler);
+                }
+            }
+            addMethod("bind", "(Ljava/lang/Object;" + VALUE_DESC + ")V", code, 4, 6);
+        }
+
+        /**
+         * Generates build(ValueBuilder builder, Object obj). Locals:
+         * 3: the target object.
+         */
+        private void writeBuild() throws IOException {
+            Code code = new Code();
+            code.op(Code.ALOAD_2);
+            code.op(Code.CHECKCAST, pool.classRef(target));
+            code.op(Code.ASTORE, 3);
+            int set = pool.methodRef(BASE, "set", "(" + descriptor(ValueBuilder.class)
+                    + "Ljava/lang/String;Ljava/lang/Object;)V");
+            for (ClassBinder.Property p : binder.getGetters()) {
+                Method getter = p.getMethod();
+                Class<?> type = getter.getReturnType();
+                code.op(Code.ALOAD_1);
+                code.op(Code.LDC_W, pool.string(p.getName()));
+                code.op(Code.ALOAD_3);
+                code.op(Code.INVOKEVIRTUAL, pool.methodRef(target,
+                        getter.getName(), descriptor(getter)));
+                if (type.isPrimitive()) {
+                    Class<?> box = wrapper(type);
+                    code.op(Code.INVOKESTATIC, pool.methodRef(internalName(box),
+                            "valueOf", "(" + descriptor(type) + ")" + descriptor(box)));
+                }
+                code.op(Code.INVOKESTATIC, set);
+            }
+            code.op(Code.RETURN);
+            addMethod("build", "(" + descriptor(ValueBuilder.class)
+                    + "Ljava/lang/Object;)V", code, 5, 4);
+        }
+
+        /**
+         * Gets the name of a class as a constant of
+         * the class file (an array class is given by
+         * its descriptor).
+         */
+        private static String classConstant(Class<?> cls) {
+            return cls.isArray() ? descriptor(cls) : internalName(cls);
+        }
+
+        private void popResult(Code code, Class<?> type) {
+            if (isWide(type)) {
+                code.op(Code.POP2);
+            } else if (type != void.class) {
+                code.op(Code.POP);
+            }
+        }
+
+        private void addMethod(String methodName, String desc, Code code,
+                int maxStack, int maxLocals) throws IOException {
+            int codeAttr = pool.utf8("Code");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            byte[] body = code.toByteArray();
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(pool.utf8(methodName));
+            out.writeShort(pool.utf8(desc));
+            out.writeShort(1);
+            out.writeShort(codeAttr);
+            List<int[]> handlers = code.getHandlers();
+            out.writeInt(12 + body.length + 8 * handlers.size());
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(body.length);
+            out.write(body);
+            out.writeShort(handlers.size());
+            for (int[] h : handlers) {
+                out.writeShort(h[0]);
+                out.writeShort(h[1]);
+                out.writeShort(h[2]);
+                out.writeShort(0); // any throwable
+            }
+            out.writeShort(0); // attributes
+            out.flush();
+            methods.add(bytes.toByteArray());
+        }
+    }
+
+    /**
+     * Bytecode of a method.
+     */
+    static final class Code {
+        static final int ALOAD_0 = 0x2a;
+        static final int ALOAD_1 = 0x2b;
+        static final int ALOAD_2 = 0x2c;
+        static final int ALOAD_3 = 0x2d;
+        static final int ALOAD = 0x19;
+        static final int ASTORE = 0x3a;
+        static final int LDC_W = 0x13;
+        static final int DUP = 0x59;
+        static final int POP = 0x57;
+        static final int POP2 = 0x58;
+        static final int NEW = 0xbb;
+        static final int CHECKCAST = 0xc0;
+        static final int IFNULL = 0xc6;
+        static final int INVOKEVIRTUAL = 0xb6;
+        static final int INVOKESPECIAL = 0xb7;
+        static final int INVOKESTATIC = 0xb8;
+        static final int RETURN = 0xb1;
+        static final int ARETURN = 0xb0;
+        static final int ATHROW = 0xbf;
+
+        private byte[] buf = new byte[256];
+        private int len;
+        /**
+         * The exception table: {start, end, handler}.
+         */
+        private final List<int[]> handlers = new ArrayList<int[]>();
+
+        void op(int opcode) {
+            put(opcode);
+        }
+
+        void op(int opcode, int operand) {
+            put(opcode);
+            if (opcode == ALOAD || opcode == ASTORE) {
+                put(operand);
+            } else {
+                putShort(operand);
+            }
+        }
+
+        /**
+         * Writes a jump instruction to be landed later.
+         * @return the position of the instruction.
+         */
+        int jump(int opcode) {
+            int pos = len;
+            put(opcode);
+            putShort(0);
+            return pos;
+        }
+
+        /**
+         * Gets the current position.
+         */
+        int position() {
+            return len;
+        }
+
+        /**
+         * Adds an entry of the exception table that
+         * catches any throwable.
+         * @param start the start of the range (inclusive).
+         * @param end the end of the range (exclusive).
+         * @param handler the position of the handler.
+         */
+        void guard(int start, int end, int handler) {
+            handlers.add(new int[] {start, end, handler});
+        }
+
+        List<int[]> getHandlers() {
+            return handlers;
+        }
+
+        /**
+         * Sets the current position as the target
+         * of a jump instruction.
+         */
+        void land(int jumpPos) {
+            int offset = len - jumpPos;
+            buf[jumpPos + 1] = (byte) (offset >> 8);
+            buf[jumpPos + 2] = (byte) offset;
+        }
+
+        private void put(int val) {
+            if (len == buf.length) {
+                byte[] newBuf = new byte[buf.length * 2];
+                System.arraycopy(buf, 0, newBuf, 0, len);
+                buf = newBuf;
+            }
+            buf[len++] = (byte) val;
+        }
+
+        private void putShort(int val) {
+            put(val >> 8);
+            put(val);
+        }
+
+        byte[] toByteArray() {
+            byte[] res = new byte[len];
+            System.arraycopy(buf, 0, res, 0, len);
+            return res;
+        }
+    }
+
+    /**
+     * The constant pool of a class file.
+     */
+    static final class ConstantPool {
+        private static final int UTF8 = 1;
+        private static final int CLASS = 7;
+        private static final int STRING = 8;
+        private static final int METHODREF = 10;
+        private static final int NAME_AND_TYPE = 12;
+
+        private final Map<String, Integer> index = new HashMap<String, Integer>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int count = 1;
+
+        int utf8(String str) throws IOException {
+            String key = "U" + str;
+            Integer idx = index.get(key);
+            if (idx == null) {
+                out.writeByte(UTF8);
+                out.writeUTF(str);
+                idx = add(key);
+            }
+            return idx;
+        }
+
+        int classRef(String internalName) throws IOException {
+            String key = "C" + internalName;
+            Integer idx = index.get(key);
+            if (idx == null) {
+                int nameIdx = utf8(internalName);
+                out.writeByte(CLASS);
+                out.writeShort(nameIdx);
+                idx = add(key);
+            }
+            return idx;
+        }
+
+        int string(String str) throws IOException {
+            String key = "S" + str;
+            Integer idx = index.get(key);
+            if (idx == null) {
+                int strIdx = utf8(str);
+                out.writeByte(STRING);
+                out.writeShort(strIdx);
+                idx = add(key);
+            }
+            return idx;
+        }
+
+        int methodRef(String owner, String name, String desc) throws IOException {
+            String key = "M" + owner + "." + name + desc;
+            Integer idx = index.get(key);
+            if (idx == null) {
+                int ownerIdx = classRef(owner);
+                int nameIdx = utf8(name);
+                int descIdx = utf8(desc);
+                out.writeByte(NAME_AND_TYPE);
+                out.writeShort(nameIdx);
+                out.writeShort(descIdx);
+                int ntIdx = add("N" + key);
+                out.writeByte(METHODREF);
+                out.writeShort(ownerIdx);
+                out.writeShort(ntIdx);
+                idx = add(key);
+            }
+            return idx;
+        }
+
+        private int add(String key) {
+            int idx = count++;
+            index.put(key, idx);
+            return idx;
+        }
+
+        void write(DataOutputStream dest) throws IOException {
+            out.flush();
+            dest.writeShort(count);
+            bytes.writeTo(dest);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.value;
+
+import java.lang.reflect.InvocationTargetException;
+
+import javax.annotation.Nullable;
+
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.ValueBuilder;
+
+/**
+ * Accessor of a bean class that binds config values to the
+ * setters of the bean and builds a value with its getters
+ * (i.e., what {@link ValueUtil} does with reflection).
+ *
+ * <p>A subclass is generated for each bean class (see
+ * {@link AccessorGenerator}), which calls the setters and
+ * getters directly. This class is public only because
+ * generated code is loaded by its own class loader;
+ * it is not intended to be used by applications.
+ * @author tatemura
+ *
+ */
+public abstract class BeanAccessor {
+
+    protected BeanAccessor() {
+    }
+
+    /**
+     * Creates an instance with the default constructor.
+     * @return a new instance.
+     * @throws UnsupportedOperationException if the class
+     *         has no public default constructor.
+     */
+    public Object newInstance() {
+        throw new UnsupportedOperationException("no default constructor");
+    }
+
+    /**
+     * Sets values to the properties of an object (with setters).
+     * A property is not set if the value has no such name.
+     * @param obj the object to be set.
+     * @param value the value that contains properties.
+     */
+    public abstract void bind(Object obj, ConfigValue value);
+
+    /**
+     * Adds the properties of an object (with getters)
+     * to the builder.
+     * @param builder the builder to which properties are added.
+     * @param obj the object of which properties are added.
+     */
+    public abstract void build(ValueBuilder builder, Object obj);
+
+    /*
+     * The following methods are called by generated code.
+     */
+
+    @Nullable
+    public static ConfigValue child(ConfigValue value, String name) {
+        return value.findValue(name);
+    }
+
+    @Nullable
+    public static Object toObject(ConfigValue value, Class<?> cls) {
+        return ValueUtil.toObject(value, cls);
+    }
+
+    public static int toInt(ConfigValue value) {
+        String str = value.stringValue();
+        if (str == null) {
+            /**
+             * fails as the reflective binding does.
+             */
+            return ValueUtil.toObject(value, int.class);
+        }
+        return Integer.parseInt(str);
+    }
+
+    public static long toLong(ConfigValue value) {
+        String str = value.stringValue();
+        if (str == null) {
+            return ValueUtil.toObject(value, long.class);
+        }
+        return Long.parseLong(str);
+    }
+
+    public static double toDouble(ConfigValue value) {
+        String str = value.stringValue();
+        if (str == null) {
+            return ValueUtil.toObject(value, double.class);
+        }
+        return Double.parseDouble(str);
+    }
+
+    public static boolean toBoolean(ConfigValue value) {
+        String str = value.stringValue();
+        if (str == null) {
+            return ValueUtil.toObject(value, boolean.class);
+        }
+        return value.booleanValue();
+    }
+
+    /**
+     * Wraps an exception thrown by a setter as the reflective
+     * binding does (where Method.invoke wraps it with
+     * InvocationTargetException), so that it is not confused
+     * with a failure of converting the value.
+     * @param th the exception thrown by a setter.
+     * @return the exception to be thrown.
+     */
+    public static ConfigException setterFailed(Throwable th) {
+        return new ConfigException("failed to create instance",
+                new InvocationTargetException(th));
+    }
+
+    public static void set(ValueBuilder builder, String name, Object obj) {
+        ValueUtil.setObject(builder, name, obj);
+    }
+}
@@ -0,0 +1,368 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.value;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nullable;
+import javax.json.JsonValue;
+
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.annotation.ConfigBean;
+import com.nec.congenio.annotation.MapOf;
+import com.nec.congenio.annotation.processing.ConfigBeanProcessor;
+
+/**
+ * Binding metadata of a class, which is computed once
+ * per class: the constructors, setters and getters used to
+ * convert between config values and objects of the class
+ * (see {@link ValueUtil}).
+ *
+ * <p>Binders are cached with weak keys, and a binder is held
+ * softly since it refers to its class: the cache does not keep
+ * a class (and its class loader, e.g., of a web application or
+ * a plug-in) from being unloaded.
+ * @author tatemura
+ *
+ */
+final class ClassBinder {
+    private static final Map<Class<?>, SoftReference<ClassBinder>> BINDERS =
+            new WeakHashMap<Class<?>, SoftReference<ClassBinder>>();
+
+    private final Class<?> cls;
+    @Nullable
+    private final Primitive primitive;
+    /**
+     * The class of map values if the class is annotated
+     * with {@link MapOf}.
+     */
+    @Nullable
+    private final Class<?> mapValueClass;
+    @Nullable
+    private final Constructor<?> mapConstructor;
+    @Nullable
+    private final Constructor<?> valueConstructor;
+    @Nullable
+    private final Constructor<?> defaultConstructor;
+    private final List<Property> setters;
+    private final List<Property> getters;
+    /**
+     * The generated accessor, which is created when
+     * it is used first.
+     */
+    @Nullable
+    private volatile BeanAccessor accessor;
+    /**
+     * True if the accessor is generated at compile time
+     * (for a {@link ConfigBean} class).
+     */
+    private volatile boolean compiled;
+    private volatile boolean generated;
+
+    private ClassBinder(Class<?> cls) {
+        this.cls = cls;
+        this.primitive = Primitive.of(cls);
+        MapOf mo = cls.getAnnotation(MapOf.class);
+        this.mapValueClass = (mo != null ? mo.value() : null);
+        this.mapConstructor = (mo != null ? findConstructor(cls, Map.class) : null);
+        this.valueConstructor = findConstructor(cls, ConfigValue.class);
+        this.defaultConstructor = findConstructor(cls);
+        List<Property> setterList = new ArrayList<Property>();
+        List<Property> getterList = new ArrayList<Property>();
+        Field[] fields = (primitive == null ? cls.getDeclaredFields() : new Field[0]);
+        for (Field f : fields) {
+            Method setter = ValueUtil.getSetter(cls, f.getName(), f.getType());
+            if (setter != null) {
+                setterList.add(new Property(f.getName(), f.getType(), setter));
+            }
+            Method getter = ValueUtil.getGetter(cls, f.getName(), f.getType());
+            if (getter != null) {
+                getterList.add(new Property(f.getName(), f.getType(), getter));
+            }
+        }
+        this.setters = Collections.unmodifiableList(setterList);
+        this.getters = Collections.unmodifiableList(getterList);
+    }
+
+    /**
+     * Gets the binder of the class.
+     * @param cls the class to be bound.
+     * @return the binder (created once per class).
+     */
+    static ClassBinder of(Class<?> cls) {
+        synchronized (BINDERS) {
+            SoftReference<ClassBinder> ref = BINDERS.get(cls);
+            ClassBinder binder = (ref != null ? ref.get() : null);
+            if (binder == null) {
+                binder = new ClassBinder(cls);
+                BINDERS.put(cls, new SoftReference<ClassBinder>(binder));
+            }
+            return binder;
+        }
+    }
+
+    @Nullable
+    private static Constructor<?> findConstructor(Class<?> cls, Class<?>... argTypes) {
+        try {
+            return cls.getConstructor(argTypes);
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    Class<?> getBoundClass() {
+        return cls;
+    }
+
+    /**
+     * Gets the conversion for a primitive class (including
+     * String, BigDecimal, Properties and JsonValue).
+     * @return null if the class is not primitive.
+     */
+    @Nullable
+    Primitive getPrimitive() {
+        return primitive;
+    }
+
+    @Nullable
+    Class<?> getMapValueClass() {
+        return mapValueClass;
+    }
+
+    /**
+     * Gets the constructor with Map for a class annotated
+     * with {@link MapOf}.
+     * @return null if there is no such constructor.
+     */
+    @Nullable
+    Constructor<?> getMapConstructor() {
+        return mapConstructor;
+    }
+
+    /**
+     * Gets the constructor with ConfigValue.
+     * @return null if there is no such constructor.
+     */
+    @Nullable
+    Constructor<?> getValueConstructor() {
+        return valueConstructor;
+    }
+
+    /**
+     * Gets the public constructor without arguments.
+     * @return null if there is no such constructor.
+     */
+    @Nullable
+    Constructor<?> getDefaultConstructor() {
+        return defaultConstructor;
+    }
+
+    /**
+     * Gets the generated accessor of the class: the binder
+     * generated at compile time for a {@link ConfigBean} class,
+     * or an accessor generated when it is requested first.
+     * @return null if an accessor is not available
+     *         (the reflective binding is used instead).
+     */
+    @Nullable
+    BeanAccessor getAccessor() {
+        if (!generated) {
+            if (primitive == null) {
+                BeanAccessor acc = loadBinder(cls);
+                if (acc != null) {
+                    compiled = true;
+                } else {
+                    acc = AccessorGenerator.generate(this);
+                }
+                accessor = acc;
+            }
+            generated = true;
+        }
+        return accessor;
+    }
+
+    /**
+     * Checks if an instance can be created with the accessor.
+     */
+    boolean canInstantiate() {
+        return defaultConstructor != null || compiled;
+    }
+
+    /**
+     * Loads the binder generated by
+     * {@link ConfigBeanProcessor} for a {@link ConfigBean} class.
+     * @return null if the class has no generated binder.
+     */
+    @Nullable
+    private static BeanAccessor loadBinder(Class<?> cls) {
+        if (!cls.isAnnotationPresent(ConfigBean.class)) {
+            return null;
+        }
+        try {
+            Class<?> binder = Class.forName(
+                    ConfigBeanProcessor.binderName(cls.getName()),
+                    true, cls.getClassLoader());
+            return (BeanAccessor) binder.newInstance();
+        } catch (ClassNotFoundException ex) {
+            /**
+             * the processor did not run for the class.
+             */
+            return null;
+        } catch (InstantiationException ex) {
+            throw new ConfigException("failed to load binder", ex);
+        } catch (IllegalAccessException ex) {
+            throw new ConfigException("failed to load binder", ex);
+        }
+    }
+
+    List<Property> getSetters() {
+        return setters;
+    }
+
+    List<Property> getGetters() {
+        return getters;
+    }
+
+    /**
+     * A bean property with its accessor (a setter or a getter).
+     */
+    static final class Property {
+        private final String name;
+        private final Class<?> type;
+        private final Method method;
+
+        Property(String name, Class<?> type, Method method) {
+            this.name = name;
+            this.type = type;
+            this.method = method;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Class<?> getType() {
+            return type;
+        }
+
+        Method getMethod() {
+            return method;
+        }
+    }
+
+    /**
+     * Conversions from a config value to a primitive
+     * object.
+     */
+    enum Primitive {
+        PROPERTIES {
+            @Override
+            Object convert(ConfigValue value) {
+                return value.toProperties();
+            }
+        },
+        INT {
+            @Override
+            Object convert(ConfigValue value) {
+                String str = value.stringValue();
+                return (str != null ? Integer.valueOf(str) : null);
+            }
+        },
+        LONG {
+            @Override
+            Object convert(ConfigValue value) {
+                String str = value.stringValue();
+                return (str != null ? Long.valueOf(str) : null);
+            }
+        },
+        DOUBLE {
+            @Override
+            Object convert(ConfigValue value) {
+                String str = value.stringValue();
+                return (str != null ? Double.valueOf(str) : null);
+            }
+        },
+        BOOLEAN {
+            @Override
+            Object convert(ConfigValue value) {
+                String str = value.stringValue();
+                return (str != null ? Boolean.valueOf(value.booleanValue()) : null);
+            }
+        },
+        STRING {
+            @Override
+            Object convert(ConfigValue value) {
+                return value.stringValue();
+            }
+        },
+        DECIMAL {
+            @Override
+            Object convert(ConfigValue value) {
+                String str = value.stringValue();
+                return (str != null ? new BigDecimal(str) : null);
+            }
+        },
+        JSON {
+            @Override
+            Object convert(ConfigValue value) {
+                String str = value.stringValue();
+                return (str != null ? value.toJson() : null);
+            }
+        };
+
+        /**
+         * Converts a value.
+         * @return null if the value is null (i.e., it has
+         *         no string value).
+         */
+        @Nullable
+        abstract Object convert(ConfigValue value);
+
+        @Nullable
+        static Primitive of(Class<?> cls) {
+            if (cls.equals(Properties.class)) {
+                return PROPERTIES;
+            } else if (cls.equals(int.class) || cls.equals(Integer.class)) {
+                return INT;
+            } else if (cls.equals(long.class) || cls.equals(Long.class)) {
+                return LONG;
+            } else if (cls.equals(double.class) || cls.equals(Double.class)) {
+                return DOUBLE;
+            } else if (cls.equals(boolean.class) || cls.equals(Boolean.class)) {
+                return BOOLEAN;
+            } else if (cls.equals(String.class)) {
+                return STRING;
+            } else if (cls.equals(BigDecimal.class)) {
+                return DECIMAL;
+            } else if (JsonValue.class.isAssignableFrom(cls)) {
+                return JSON;
+            }
+            return null;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import com.nec.congenio.ConfigException;
 import com.nec.congenio.ConfigValue;
 import com.nec.congenio.Type;
 import com.nec.congenio.json.JsonValueUtil;
+import com.nec.congenio.xml.Interner;
 import com.nec.congenio.xml.Xml;
 
 public abstract class PrimitiveValue implements ConfigValue {
@@ -40,9 +41,47 @@ public abstract class PrimitiveValue implements ConfigValue {
     public static final PrimitiveValue NULL = new NullValue();
     public static final PrimitiveValue TRUE = new BooleanValue(true);
     public static final PrimitiveValue FALSE = new BooleanValue(false);
+    /**
+     * Shared values of small integers.
+     */
+    private static final int SMALL_MIN = -128;
+    private static final int SMALL_MAX = 1023;
+    private static final NumberValue[] SMALL_NUMBERS =
+            new NumberValue[SMALL_MAX - SMALL_MIN + 1];
+    /**
+     * A bounded table of shared values of short strings.
+     */
+    private static final int MAX_SHARED_LENGTH = 32;
+    private static final Interner.Table<StringValue> SHARED_STRINGS =
+            new Interner.Table<StringValue>(4096, MAX_SHARED_LENGTH) {
+                @Override
+                protected StringValue create(String key) {
+                    return new StringValue(Interner.text(key));
+                }
+
+                @Override
+                protected String keyOf(StringValue value) {
+                    return value.value;
+                }
+            };
+
+    static {
+        for (int i = SMALL_MIN; i <= SMALL_MAX; i++) {
+            SMALL_NUMBERS[i - SMALL_MIN] = new NumberValue(BigDecimal.valueOf(i));
+        }
+    }
 
+    /**
+     * Creates a string value. Values of short strings are
+     * shared.
+     * @param value the string.
+     * @return a string value.
+     */
     public static StringValue valueOf(String value) {
-        return new StringValue(value);
+        if (value == null) {
+            return new StringValue(value);
+        }
+        return SHARED_STRINGS.intern(value);
     }
 
     public static PrimitiveValue valueOf(boolean value) {
@@ -50,10 +89,16 @@ public abstract class PrimitiveValue implements ConfigValue {
     }
 
     public static NumberValue valueOf(int value) {
+        if (value >= SMALL_MIN && value <= SMALL_MAX) {
+            return SMALL_NUMBERS[value - SMALL_MIN];
+        }
         return new NumberValue(BigDecimal.valueOf(value));
     }
 
     public static NumberValue valueOf(long value) {
+        if (value >= SMALL_MIN && value <= SMALL_MAX) {
+            return SMALL_NUMBERS[(int) value - SMALL_MIN];
+        }
         return new NumberValue(BigDecimal.valueOf(value));
     }
 
@@ -93,6 +138,10 @@ public abstract class PrimitiveValue implements ConfigValue {
      *         not a valid number.
      */
     public static NumberValue number(String value) {
+        NumberValue small = smallNumber(value);
+        if (small != null) {
+            return small;
+        }
         try {
             return new NumberValue(new BigDecimal(value));
         } catch (NumberFormatException ex) {
@@ -100,6 +149,37 @@ public abstract class PrimitiveValue implements ConfigValue {
         }
     }
 
+    /**
+     * Gets a shared value if the string is a small integer
+     * (in plain digits).
+     */
+    @Nullable
+    private static NumberValue smallNumber(String value) {
+        int len = value.length();
+        if (len == 0 || len > 4) {
+            return null;
+        }
+        int start = (value.charAt(0) == '-' ? 1 : 0);
+        if (start == len) {
+            return null;
+        }
+        int num = 0;
+        for (int i = start; i < len; i++) {
+            char ch = value.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return null;
+            }
+            num = num * 10 + (ch - '0');
+        }
+        if (start > 0) {
+            num = -num;
+        }
+        if (num >= SMALL_MIN && num <= SMALL_MAX) {
+            return SMALL_NUMBERS[num - SMALL_MIN];
+        }
+        return null;
+    }
+
     /**
      * Converts a given primitive value to a number value.
      * @param val the value to be converted
@@ -317,6 +397,14 @@ public abstract class PrimitiveValue implements ConfigValue {
         return null;
     }
 
+    /**
+     * Gets this value, which is immutable
+     * (see {@link com.nec.congenio.Values#freeze(ConfigValue)}).
+     */
+    public ConfigValue freeze() {
+        return this;
+    }
+
     public static class StringValue extends PrimitiveValue {
         private final String value;
 
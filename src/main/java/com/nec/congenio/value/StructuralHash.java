@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.value;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.value.xml.XmlValueFormat;
+import com.nec.congenio.xml.Xml;
+
+/**
+ * A canonical hash of the structure and content of a config
+ * value, which does not depend on how the value is
+ * represented (e.g., DOM-backed or compact): two values have
+ * the same hash iff they have the same canonical XML form.
+ *
+ * <p>The canonical form keeps what distinguishes XML documents
+ * that JSON does not: the names of elements (including the
+ * root), attributes (in the order of names) as opposed to
+ * child elements, and repeated child elements in document order.
+ * The text of an element with child elements is the text that is
+ * not whitespace between elements. Each part is terminated with
+ * NUL (which cannot appear in XML), and the hash is the SHA-1
+ * digest of the form in UTF-8.
+ * @author tatemura
+ *
+ */
+public final class StructuralHash {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final byte ELEMENT = 'E';
+    private static final byte ATTRIBUTE = 'A';
+    private static final byte TEXT = 'T';
+    private static final byte END = 0;
+
+    private final MessageDigest digest;
+
+    private StructuralHash(MessageDigest digest) {
+        this.digest = digest;
+    }
+
+    /**
+     * Computes the hash of a value.
+     * @param value the value to be hashed.
+     * @return the SHA-1 digest (20 bytes).
+     */
+    public static byte[] digest(ConfigValue value) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new ConfigException("SHA-1 not supported", ex);
+        }
+        new StructuralHash(digest).element(XmlValueFormat.toXml(value));
+        return digest.digest();
+    }
+
+    private void element(Element elem) {
+        digest.update(ELEMENT);
+        string(elem.getTagName());
+        NamedNodeMap attrs = elem.getAttributes();
+        if (attrs.getLength() > 0) {
+            Map<String, String> sorted = new TreeMap<String, String>();
+            for (int i = 0; i < attrs.getLength(); i++) {
+                Node attr = attrs.item(i);
+                sorted.put(attr.getNodeName(), attr.getNodeValue());
+            }
+            for (Map.Entry<String, String> e : sorted.entrySet()) {
+                digest.update(ATTRIBUTE);
+                string(e.getKey());
+                string(e.getValue());
+            }
+        }
+        List<Element> children = Xml.getElements(elem);
+        digest.update(TEXT);
+        if (children.isEmpty()) {
+            string(elem.getTextContent());
+        } else {
+            for (Node child = elem.getFirstChild(); child != null;
+                    child = child.getNextSibling()) {
+                short type = child.getNodeType();
+                if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE) {
+                    String str = child.getNodeValue();
+                    if (!str.trim().isEmpty()) {
+                        digest.update(str.getBytes(UTF8));
+                    }
+                }
+            }
+            digest.update(END);
+            for (Element child : children) {
+                element(child);
+            }
+        }
+        digest.update(END);
+    }
+
+    private void string(String str) {
+        digest.update(str.getBytes(UTF8));
+        digest.update(END);
+    }
+
+    /**
+     * Computes the hash of a value as a hex string.
+     * @param value the value to be hashed.
+     * @return the SHA-1 digest in hex (40 characters).
+     */
+    public static String hex(ConfigValue value) {
+        byte[] bytes = digest(value);
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
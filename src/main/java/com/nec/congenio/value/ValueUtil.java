@@ -17,23 +17,33 @@
 package com.nec.congenio.value;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
-import javax.json.JsonValue;
-
 import com.nec.congenio.ConfigException;
 import com.nec.congenio.ConfigValue;
 import com.nec.congenio.ValueBuilder;
 import com.nec.congenio.Values;
-import com.nec.congenio.annotation.MapOf;
 
+/**
+ * Conversion between config values and objects.
+ *
+ * <p>The reflective information of a class (constructors,
+ * setters and getters) is looked up once and kept in a
+ * {@link ClassBinder}, so that binding many values to
+ * the same class does not repeat the lookup. For a public
+ * bean class, setters and getters are called through a
+ * generated {@link BeanAccessor} instead of reflection (which
+ * is generated at compile time for a
+ * {@link com.nec.congenio.annotation.ConfigBean} class).
+ * @author tatemura
+ *
+ */
 public final class ValueUtil {
 
     private ValueUtil() {
@@ -50,20 +60,21 @@ public final class ValueUtil {
         if (cls.isArray()) {
             return toObjArray(value, cls);
         }
-        T obj = toPrimitive(value, cls);
+        ClassBinder binder = ClassBinder.of(cls);
+        T obj = toPrimitive(value, binder, cls);
         if (obj != null) {
             return obj;
         }
-        obj = toMapObj(value, cls);
+        obj = toMapObj(value, binder, cls);
         if (obj != null) {
             return obj;
         }
+        Constructor<?> cons = binder.getValueConstructor();
+        if (cons == null) {
+            return toObjBySetters(value, binder, cls);
+        }
         try {
-            return cls.getConstructor(ConfigValue.class).newInstance(value);
-        } catch (NoSuchMethodException ex) {
-            return toObjBySetters(value, cls);
-        } catch (SecurityException ex) {
-            throw new ConfigException("failed to create instance", ex);
+            return cls.cast(cons.newInstance(value));
         } catch (InstantiationException ex) {
             throw new ConfigException("failed to create instance", ex);
         } catch (IllegalAccessException ex) {
@@ -87,12 +98,18 @@ public final class ValueUtil {
         return (T) arry;
     }
 
-    private static <T> T toMapObj(ConfigValue value, Class<T> cls) {
-        MapOf mo = cls.getAnnotation(MapOf.class);
-        if (mo != null) {
-            Map<String, ?> map = toMap(value, mo.value());
+    private static <T> T toMapObj(ConfigValue value,
+            ClassBinder binder, Class<T> cls) {
+        Class<?> valueClass = binder.getMapValueClass();
+        if (valueClass != null) {
+            Map<String, ?> map = toMap(value, valueClass);
+            Constructor<?> cons = binder.getMapConstructor();
+            if (cons == null) {
+                throw new ConfigException("failed to create instance",
+                        new NoSuchMethodException(cls.getName() + ".<init>(java.util.Map)"));
+            }
             try {
-                return cls.getConstructor(Map.class).newInstance(map);
+                return cls.cast(cons.newInstance(map));
             } catch (InstantiationException ex) {
                 throw new ConfigException("failed to create instance", ex);
             } catch (IllegalAccessException ex) {
@@ -101,10 +118,6 @@ public final class ValueUtil {
                 throw new ConfigException("failed to create instance", ex);
             } catch (InvocationTargetException ex) {
                 throw new ConfigException("failed to create instance", ex);
-            } catch (NoSuchMethodException ex) {
-                throw new ConfigException("failed to create instance", ex);
-            } catch (SecurityException ex) {
-                throw new ConfigException("failed to create instance", ex);
             }
         }
         return null;
@@ -127,49 +140,31 @@ public final class ValueUtil {
     }
 
     @SuppressWarnings("unchecked")
-    private static <T> T toPrimitive(ConfigValue value, Class<T> cls) {
-        if (cls.equals(Properties.class)) {
-            return cls.cast(value.toProperties());
-        }
-        String strVal = value.stringValue();
-        if (strVal == null) {
+    private static <T> T toPrimitive(ConfigValue value,
+            ClassBinder binder, Class<T> cls) {
+        ClassBinder.Primitive prim = binder.getPrimitive();
+        if (prim == null) {
             return null;
         }
-        if (cls.equals(int.class) || cls.equals(Integer.class)) {
-            return (T) Integer.valueOf(strVal);
-        }
-        if (cls.equals(long.class) || cls.equals(Long.class)) {
-            return (T) Long.valueOf(strVal);
-        }
-        if (cls.equals(double.class) || cls.equals(Double.class)) {
-            return (T) Double.valueOf(strVal);
-        }
-        if (cls.equals(boolean.class) || cls.equals(Boolean.class)) {
-            return (T) Boolean.valueOf(value.booleanValue());
-        }
-        if (cls.equals(String.class)) {
-            return cls.cast(strVal);
-        }
-        if (cls.equals(BigDecimal.class)) {
-            return cls.cast(new BigDecimal(strVal));
-        }
-        // if the given class is a subclass of JsonValue
-        if (JsonValue.class.isAssignableFrom(cls)) {
-            return cls.cast(value.toJson());
-        }
-        return null;
+        /**
+         * note: cls.cast() cannot be used for
+         * a primitive class (e.g., int.class)
+         */
+        return (T) prim.convert(value);
     }
 
-    static <T> T toObjBySetters(ConfigValue value, Class<T> cls) {
+    private static <T> T toObjBySetters(ConfigValue value,
+            ClassBinder binder, Class<T> cls) {
+        BeanAccessor accessor = binder.getAccessor();
+        if (accessor != null && binder.canInstantiate()) {
+            return toObjByAccessor(value, accessor, cls);
+        }
         try {
             T obj = cls.newInstance();
-            for (Field f : cls.getDeclaredFields()) {
-                Method setter = getSetter(cls, f.getName(), f.getType());
-                if (setter != null) {
-                    Object val = value.findObject(f.getName(), f.getType());
-                    if (val != null) {
-                        setter.invoke(obj, val);
-                    }
+            for (ClassBinder.Property p : binder.getSetters()) {
+                Object val = value.findObject(p.getName(), p.getType());
+                if (val != null) {
+                    p.getMethod().invoke(obj, val);
                 }
             }
             return obj;
@@ -186,6 +181,24 @@ public final class ValueUtil {
         }
     }
 
+    private static <T> T toObjByAccessor(ConfigValue value,
+            BeanAccessor accessor, Class<T> cls) {
+        try {
+            T obj = cls.cast(accessor.newInstance());
+            accessor.bind(obj, value);
+            return obj;
+        } catch (ConfigException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            /**
+             * an exception from the constructor (an exception
+             * from a setter is wrapped by the accessor, see
+             * BeanAccessor.setterFailed).
+             */
+            throw new ConfigException("failed to create instance", ex);
+        }
+    }
+
     static Method getSetter(Class<?> cls, String name, Class<?> type) {
         String methodName = "set" + name.substring(0, 1).toUpperCase() + name.substring(1);
         try {
@@ -230,16 +243,22 @@ public final class ValueUtil {
     }
 
     protected static void buildWithGetters(ValueBuilder builder, Object obj) {
-        Class<?> cls = obj.getClass();
+        ClassBinder binder = ClassBinder.of(obj.getClass());
+        BeanAccessor accessor = binder.getAccessor();
+        if (accessor != null) {
+            try {
+                accessor.build(builder, obj);
+                return;
+            } catch (ConfigException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new ConfigException("failed to create value from object", ex);
+            }
+        }
         try {
-            for (Field f : cls.getDeclaredFields()) {
-                Method getter = getGetter(cls, f.getName(), f.getType());
-                if (getter != null) {
-                    setObject(builder, f.getName(), getter.invoke(obj));
-                }
+            for (ClassBinder.Property p : binder.getGetters()) {
+                setObject(builder, p.getName(), p.getMethod().invoke(obj));
             }
-        } catch (SecurityException ex) {
-            throw new ConfigException("failed to create value from object", ex);
         } catch (IllegalAccessException ex) {
             throw new ConfigException("failed to create value from object", ex);
         } catch (IllegalArgumentException ex) {
@@ -0,0 +1,495 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.value.xml;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.Type;
+import com.nec.congenio.json.JsonValueUtil;
+import com.nec.congenio.json.JsonWriter;
+import com.nec.congenio.json.JsonXml;
+import com.nec.congenio.value.AbstractValue;
+import com.nec.congenio.value.PrimitiveValue;
+import com.nec.congenio.xml.Interner;
+import com.nec.congenio.xml.Xml;
+
+/**
+ * An immutable config value that is not backed by DOM.
+ * It is converted from an evaluated XML element (i.e.,
+ * after expressions are evaluated) and answers the same
+ * way as {@link XmlValue} does.
+ *
+ * <p>Children are kept in document order and looked up by
+ * their tag names with a hash index (for a value with
+ * many children). A primitive value is typed once when it
+ * is converted. A name that is not a simple tag name (e.g.,
+ * a path "a/b" or "item[2]") is evaluated as XPath on the
+ * XML form of the value.
+ *
+ * <p>Text is kept only for an element without child elements
+ * (which is always the case for an evaluated element).
+ * @author tatemura
+ *
+ */
+public final class CompactValue extends AbstractValue {
+    private static final int INDEX_THRESHOLD = 8;
+    private static final Pattern SIMPLE_NAME = Pattern.compile("^[A-Za-z_][\\w.\\-]*$");
+    private static final CompactValue[] NO_CHILDREN = new CompactValue[0];
+
+    private final String tag;
+    private final String name;
+    private final String[] attrs;
+    private final CompactValue[] children;
+    /**
+     * The text of an element without children (null
+     * for an element with children).
+     */
+    @Nullable
+    private final String text;
+    @Nullable
+    private final Map<String, CompactValue> index;
+    @Nullable
+    private final Type declaredType;
+    private final Type type;
+    private volatile PrimitiveValue primitive;
+
+    private CompactValue(String tag, String[] attrs,
+            CompactValue[] children, @Nullable String text,
+            @Nullable PrimitiveValue primitive) {
+        this.tag = tag;
+        this.attrs = attrs;
+        this.children = children;
+        this.text = text;
+        this.name = findAttr(Attrs.NAME, tag);
+        this.declaredType = findDeclaredType();
+        this.type = (declaredType != null ? declaredType : guessType());
+        this.primitive = primitive;
+        if (children.length > INDEX_THRESHOLD) {
+            Map<String, CompactValue> map =
+                    new HashMap<String, CompactValue>();
+            for (CompactValue c : children) {
+                if (!map.containsKey(c.tag)) {
+                    map.put(c.tag, c);
+                }
+            }
+            this.index = map;
+        } else {
+            this.index = null;
+        }
+    }
+
+    /**
+     * Converts an (evaluated) XML element into a compact value.
+     * @param elem the element to be converted.
+     * @return the converted value.
+     */
+    public static CompactValue create(Element elem) {
+        String[] attrs = attributes(elem);
+        List<Element> elements = Xml.getElements(elem);
+        if (elements.isEmpty()) {
+            return create(Interner.name(elem.getTagName()), attrs, NO_CHILDREN,
+                    Interner.text(elem.getTextContent()));
+        }
+        CompactValue[] children = new CompactValue[elements.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = create(elements.get(i));
+        }
+        return create(Interner.name(elem.getTagName()), attrs, children, null);
+    }
+
+    /**
+     * Gets the attributes of an element as an array
+     * of name-value pairs.
+     */
+    static String[] attributes(Element elem) {
+        NamedNodeMap map = elem.getAttributes();
+        String[] attrs = new String[map.getLength() * 2];
+        for (int i = 0; i < map.getLength(); i++) {
+            Attr attr = (Attr) map.item(i);
+            attrs[i * 2] = Interner.name(attr.getName());
+            attrs[i * 2 + 1] = Interner.text(attr.getValue());
+        }
+        return attrs;
+    }
+
+    /**
+     * Creates a value from its parts (attributes are given as
+     * name-value pairs).
+     */
+    static CompactValue create(String tag, String[] attrs,
+            CompactValue[] children, @Nullable String text) {
+        if (children.length == 0) {
+            return new CompactValue(tag, attrs, NO_CHILDREN, text,
+                    primitiveValueOf(attrs, text));
+        }
+        return new CompactValue(tag, attrs, children, null, null);
+    }
+
+    /**
+     * Converts the content of an element without children
+     * to a primitive value (as
+     * {@link XmlValue#primitiveValueOf(Element)} does).
+     */
+    static PrimitiveValue primitiveValueOf(String[] attrs,
+            @Nullable String text) {
+        PrimitiveValue val;
+        String avalue = findAttr(attrs, Attrs.VALUE, null);
+        if (avalue != null) {
+            val = PrimitiveValue.valueOf(avalue);
+        } else {
+            String value = (text != null ? text.trim() : "");
+            if (value.isEmpty()) {
+                return PrimitiveValue.NULL;
+            }
+            val = PrimitiveValue.valueOf(value);
+        }
+        String type = findAttr(attrs, Attrs.TYPE, null);
+        Type declared = (type != null ? XmlValue.typeOf(type) : null);
+        if (declared != null) {
+            return val.cast(declared);
+        }
+        return val;
+    }
+
+    static String findAttr(String[] attrs, String attrName,
+            String defaultValue) {
+        for (int i = 0; i < attrs.length; i += 2) {
+            if (attrs[i].equals(attrName) && !attrs[i + 1].isEmpty()) {
+                return attrs[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Checks if the name is a plain tag name (not
+     * an XPath expression).
+     */
+    static boolean isSimpleName(String name) {
+        return SIMPLE_NAME.matcher(name).matches();
+    }
+
+    static boolean isUserAttr(String attrName) {
+        for (String a : Attrs.VALUE_ATTRS) {
+            if (a.equals(attrName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String findAttr(String attrName, String defaultValue) {
+        return findAttr(attrs, attrName, defaultValue);
+    }
+
+    @Nullable
+    private Type findDeclaredType() {
+        String value = findAttr(Attrs.TYPE, null);
+        if (value != null) {
+            return XmlValue.typeOf(value);
+        }
+        return null;
+    }
+
+    private Type guessType() {
+        Set<String> names = new HashSet<String>();
+        for (CompactValue c : children) {
+            names.add(c.name);
+        }
+        if (names.size() == 1 && children.length > 1) {
+            return Type.ARRAY;
+        } else if (children.length > 0) {
+            return Type.OBJECT;
+        }
+        return hasUserAttrs() ? Type.OBJECT : Type.STRING;
+    }
+
+    private boolean hasUserAttrs() {
+        for (int i = 0; i < attrs.length; i += 2) {
+            if (isUserAttr(attrs[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    @Nullable
+    public ConfigValue findValue(String name) {
+        String value = findAttr(name, null);
+        if (value != null) {
+            return PrimitiveValue.valueOf(value);
+        }
+        if (isSimpleName(name)) {
+            return findChild(name);
+        }
+        Element elem = Xml.getSingleElement(name, toXml(), false);
+        if (elem != null) {
+            return create(elem);
+        }
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public ConfigValue findChild(String name, int position) {
+        if (position == 0) {
+            return findValue(name);
+        }
+        int count = 0;
+        for (CompactValue c : children) {
+            if (c.tag.equals(name)) {
+                if (count == position) {
+                    return c;
+                }
+                count++;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private CompactValue findChild(String childTag) {
+        if (index != null) {
+            return index.get(childTag);
+        }
+        for (CompactValue c : children) {
+            if (c.tag.equals(childTag)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean hasValue(String name) {
+        return findValue(name) != null;
+    }
+
+    @Override
+    public Map<String, ConfigValue> toValueMap() {
+        Map<String, ConfigValue> map = new HashMap<String, ConfigValue>();
+        for (int i = 0; i < attrs.length; i += 2) {
+            if (isUserAttr(attrs[i])) {
+                map.put(attrs[i], PrimitiveValue.valueOf(attrs[i + 1]));
+            }
+        }
+        for (CompactValue c : children) {
+            map.put(c.name, c);
+        }
+        return map;
+    }
+
+    @Override
+    public List<ConfigValue> toValueList() {
+        List<ConfigValue> list = new ArrayList<ConfigValue>(
+                children.length + attrs.length / 2);
+        for (int i = 0; i < attrs.length; i += 2) {
+            if (isUserAttr(attrs[i])) {
+                list.add(PrimitiveValue.valueOf(attrs[i + 1]));
+            }
+        }
+        for (CompactValue c : children) {
+            list.add(c);
+        }
+        return list;
+    }
+
+    @Override
+    public String stringValue() {
+        return toPrimitive().stringValue();
+    }
+
+    @Override
+    public BigDecimal numberValue() {
+        return toPrimitive().numberValue();
+    }
+
+    @Override
+    public boolean booleanValue() {
+        return toPrimitive().booleanValue();
+    }
+
+    /**
+     * Gets the primitive value, which is computed
+     * from the text of the descendants if this value
+     * has children.
+     */
+    PrimitiveValue toPrimitive() {
+        PrimitiveValue val = primitive;
+        if (val == null) {
+            val = XmlValue.primitiveValueOf(toXml());
+            primitive = val;
+        }
+        return val;
+    }
+
+    @Override
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public JsonValue toJson() {
+        if (children.length > 0 || hasUserAttrs()) {
+            if (Type.ARRAY.equals(type)) {
+                JsonArrayBuilder builder = Json.createArrayBuilder();
+                for (int i = 0; i < attrs.length; i += 2) {
+                    if (isUserAttr(attrs[i])) {
+                        builder.add(JsonValueUtil.create(attrs[i + 1]));
+                    }
+                }
+                for (CompactValue c : children) {
+                    builder.add(c.toJson());
+                }
+                return builder.build();
+            } else {
+                JsonObjectBuilder builder = Json.createObjectBuilder();
+                for (int i = 0; i < attrs.length; i += 2) {
+                    if (isUserAttr(attrs[i])) {
+                        builder.add(attrs[i], JsonValueUtil.create(attrs[i + 1]));
+                    }
+                }
+                for (CompactValue c : children) {
+                    builder.add(c.name, c.toJson());
+                }
+                return builder.build();
+            }
+        }
+        return JsonXml.toJsonValue(declaredType, toPrimitive());
+    }
+
+    /**
+     * Writes this value as JSON to a streaming writer without
+     * building a JSON value (the output is the same as
+     * {@link #toJson()}).
+     * @param out the writer.
+     * @throws IOException if writing fails.
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        if (children.length == 0 && !hasUserAttrs()) {
+            out.value(JsonXml.toJsonValue(declaredType, toPrimitive()));
+        } else if (Type.ARRAY.equals(type)) {
+            out.beginArray();
+            for (int i = 0; i < attrs.length; i += 2) {
+                if (isUserAttr(attrs[i])) {
+                    out.value(attrs[i + 1]);
+                }
+            }
+            for (CompactValue c : children) {
+                c.writeJson(out);
+            }
+            out.endArray();
+        } else if (hasDuplicateKeys()) {
+            /**
+             * a JSON object keeps the last value of a key.
+             */
+            out.value(toJson());
+        } else {
+            out.beginObject();
+            for (int i = 0; i < attrs.length; i += 2) {
+                if (isUserAttr(attrs[i])) {
+                    out.name(attrs[i]).value(attrs[i + 1]);
+                }
+            }
+            for (CompactValue c : children) {
+                out.name(c.name);
+                c.writeJson(out);
+            }
+            out.endObject();
+        }
+    }
+
+    private boolean hasDuplicateKeys() {
+        Set<String> keys = new HashSet<String>();
+        for (int i = 0; i < attrs.length; i += 2) {
+            if (isUserAttr(attrs[i])) {
+                keys.add(attrs[i]);
+            }
+        }
+        for (CompactValue c : children) {
+            if (!keys.add(c.name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Element toXml(Document doc, String name) {
+        Element elem;
+        if (tag.equals(name)) {
+            elem = doc.createElement(tag);
+            for (int i = 0; i < attrs.length; i += 2) {
+                elem.setAttribute(attrs[i], attrs[i + 1]);
+            }
+        } else {
+            elem = doc.createElement(name);
+        }
+        if (text != null && !text.isEmpty()) {
+            elem.setTextContent(text);
+        }
+        for (CompactValue c : children) {
+            elem.appendChild(c.toXml(doc, c.tag));
+        }
+        return elem;
+    }
+
+    /**
+     * Creates an XML form of the value with its
+     * original tag name.
+     * @return a new element.
+     */
+    public Element toXml() {
+        return toXml(Xml.createDocument(), tag);
+    }
+
+    @Override
+    public ConfigValue freeze() {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return Xml.toString(toXml());
+    }
+}
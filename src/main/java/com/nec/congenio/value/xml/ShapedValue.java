@@ -0,0 +1,420 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.value.xml;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.json.JsonValue;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.Type;
+import com.nec.congenio.value.AbstractValue;
+import com.nec.congenio.value.PrimitiveValue;
+import com.nec.congenio.xml.Interner;
+import com.nec.congenio.xml.Xml;
+
+/**
+ * A config value represented as a shape (tags, attributes,
+ * and the structure of elements) and an array of leaf texts.
+ *
+ * <p>Documents unfolded from one for-loop mostly have the same
+ * shape and differ only in leaf values. Shapes are shared
+ * through a {@link Table}, so that each document costs
+ * (roughly) the array of its leaf texts. A shape is also
+ * shared among sub-trees of the same structure.
+ *
+ * <p>A value is a view of a shape at a position of the leaf
+ * array. Output (XML and JSON) goes through {@link CompactValue}.
+ * @author tatemura
+ *
+ */
+public final class ShapedValue extends AbstractValue {
+    private static final int INDEX_THRESHOLD = 8;
+
+    private final Shape shape;
+    private final String[] texts;
+    private final int base;
+
+    ShapedValue(Shape shape, String[] texts, int base) {
+        this.shape = shape;
+        this.texts = texts;
+        this.base = base;
+    }
+
+    public Shape getShape() {
+        return shape;
+    }
+
+    @Override
+    public String getName() {
+        return shape.name;
+    }
+
+    @Override
+    @Nullable
+    public ConfigValue findValue(String name) {
+        String value = CompactValue.findAttr(shape.attrs, name, null);
+        if (value != null) {
+            return PrimitiveValue.valueOf(value);
+        }
+        int idx = shape.indexOf(name);
+        if (idx >= 0) {
+            return child(idx);
+        }
+        if (CompactValue.isSimpleName(name)) {
+            return null;
+        }
+        return toCompact().findValue(name);
+    }
+
+    @Override
+    @Nullable
+    public ConfigValue findChild(String name, int position) {
+        if (position == 0) {
+            return findValue(name);
+        }
+        int idx = shape.indexOf(name, position);
+        if (idx >= 0) {
+            return child(idx);
+        }
+        return null;
+    }
+
+    private ShapedValue child(int idx) {
+        return new ShapedValue(shape.children[idx], texts,
+                base + shape.offsets[idx]);
+    }
+
+    @Override
+    public boolean hasValue(String name) {
+        return findValue(name) != null;
+    }
+
+    @Override
+    public Map<String, ConfigValue> toValueMap() {
+        Map<String, ConfigValue> map = new HashMap<String, ConfigValue>();
+        String[] attrs = shape.attrs;
+        for (int i = 0; i < attrs.length; i += 2) {
+            if (CompactValue.isUserAttr(attrs[i])) {
+                map.put(attrs[i], PrimitiveValue.valueOf(attrs[i + 1]));
+            }
+        }
+        for (int i = 0; i < shape.children.length; i++) {
+            map.put(shape.children[i].name, child(i));
+        }
+        return map;
+    }
+
+    @Override
+    public List<ConfigValue> toValueList() {
+        List<ConfigValue> list = new ArrayList<ConfigValue>();
+        String[] attrs = shape.attrs;
+        for (int i = 0; i < attrs.length; i += 2) {
+            if (CompactValue.isUserAttr(attrs[i])) {
+                list.add(PrimitiveValue.valueOf(attrs[i + 1]));
+            }
+        }
+        for (int i = 0; i < shape.children.length; i++) {
+            list.add(child(i));
+        }
+        return list;
+    }
+
+    @Override
+    public String stringValue() {
+        return toPrimitive().stringValue();
+    }
+
+    @Override
+    public BigDecimal numberValue() {
+        return toPrimitive().numberValue();
+    }
+
+    @Override
+    public boolean booleanValue() {
+        return toPrimitive().booleanValue();
+    }
+
+    private PrimitiveValue toPrimitive() {
+        if (shape.isLeaf()) {
+            return CompactValue.primitiveValueOf(shape.attrs, texts[base]);
+        }
+        return toCompact().toPrimitive();
+    }
+
+    @Override
+    public Type getType() {
+        return shape.type;
+    }
+
+    @Override
+    public JsonValue toJson() {
+        return toCompact().toJson();
+    }
+
+    @Override
+    public Element toXml(Document doc, String name) {
+        return toCompact().toXml(doc, name);
+    }
+
+    public Element toXml() {
+        return toCompact().toXml();
+    }
+
+    /**
+     * Materializes this value as a compact value.
+     * @return a new compact value.
+     */
+    public CompactValue toCompact() {
+        return shape.toCompact(texts, base);
+    }
+
+    /**
+     * Gets this value, which is immutable (shapes are
+     * shared but never modified).
+     */
+    @Override
+    public ConfigValue freeze() {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return toCompact().toString();
+    }
+
+    /**
+     * The shape of a value: tag names, attributes and
+     * the structure of elements. A leaf (an element without
+     * children) takes one slot of the leaf text array.
+     */
+    public static final class Shape {
+        private final String tag;
+        private final String name;
+        private final String[] attrs;
+        private final Shape[] children;
+        /**
+         * The offsets of children in the leaf text array.
+         */
+        private final int[] offsets;
+        private final int size;
+        /**
+         * The index of children by tag, which is created
+         * when it is used first.
+         */
+        @Nullable
+        private volatile Map<String, Integer> index;
+        private final Type type;
+        private final int hash;
+
+        Shape(String tag, String[] attrs, Shape[] children) {
+            this.tag = tag;
+            this.attrs = attrs;
+            this.children = children;
+            this.name = CompactValue.findAttr(attrs, Attrs.NAME, tag);
+            this.offsets = new int[children.length];
+            int total = 0;
+            for (int i = 0; i < children.length; i++) {
+                offsets[i] = total;
+                total += children[i].size;
+            }
+            this.size = (children.length == 0 ? 1 : total);
+            this.type = typeOf(attrs, children);
+            int code = tag.hashCode() * 31 + Arrays.hashCode(attrs);
+            for (Shape c : children) {
+                code = code * 31 + System.identityHashCode(c);
+            }
+            this.hash = code;
+        }
+
+        private static Type typeOf(String[] attrs, Shape[] children) {
+            String value = CompactValue.findAttr(attrs, Attrs.TYPE, null);
+            if (value != null) {
+                Type type = XmlValue.typeOf(value);
+                if (type != null) {
+                    return type;
+                }
+            }
+            Set<String> names = new HashSet<String>();
+            for (Shape c : children) {
+                names.add(c.name);
+            }
+            if (names.size() == 1 && children.length > 1) {
+                return Type.ARRAY;
+            } else if (children.length > 0) {
+                return Type.OBJECT;
+            }
+            for (int i = 0; i < attrs.length; i += 2) {
+                if (CompactValue.isUserAttr(attrs[i])) {
+                    return Type.OBJECT;
+                }
+            }
+            return Type.STRING;
+        }
+
+        public boolean isLeaf() {
+            return children.length == 0;
+        }
+
+        /**
+         * Gets the number of leaf texts of a value of this shape.
+         * @return the number of leaves.
+         */
+        public int size() {
+            return size;
+        }
+
+        int indexOf(String childTag) {
+            if (children.length > INDEX_THRESHOLD) {
+                Map<String, Integer> map = index;
+                if (map == null) {
+                    map = new HashMap<String, Integer>();
+                    for (int i = children.length - 1; i >= 0; i--) {
+                        map.put(children[i].tag, i);
+                    }
+                    index = map;
+                }
+                Integer idx = map.get(childTag);
+                return (idx != null ? idx : -1);
+            }
+            for (int i = 0; i < children.length; i++) {
+                if (children[i].tag.equals(childTag)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int indexOf(String childTag, int position) {
+            int count = 0;
+            for (int i = 0; i < children.length; i++) {
+                if (children[i].tag.equals(childTag)) {
+                    if (count == position) {
+                        return i;
+                    }
+                    count++;
+                }
+            }
+            return -1;
+        }
+
+        CompactValue toCompact(String[] texts, int base) {
+            if (isLeaf()) {
+                return CompactValue.create(tag, attrs,
+                        new CompactValue[0], texts[base]);
+            }
+            CompactValue[] values = new CompactValue[children.length];
+            for (int i = 0; i < children.length; i++) {
+                values[i] = children[i].toCompact(texts, base + offsets[i]);
+            }
+            return CompactValue.create(tag, attrs, values, null);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * Two shapes are equal if they have the same tag
+         * and attributes and the identical (shared) children.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Shape)) {
+                return false;
+            }
+            Shape sh = (Shape) obj;
+            if (hash != sh.hash || !tag.equals(sh.tag)
+                    || !Arrays.equals(attrs, sh.attrs)
+                    || children.length != sh.children.length) {
+                return false;
+            }
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] != sh.children[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A table of shared shapes.
+     */
+    public static final class Table {
+        private final Map<Shape, Shape> shapes = new HashMap<Shape, Shape>();
+
+        /**
+         * Converts an (evaluated) XML element into a shaped
+         * value, sharing its shape with values converted
+         * previously.
+         * @param elem the element to be converted.
+         * @return the converted value.
+         */
+        public ShapedValue create(Element elem) {
+            List<String> texts = new ArrayList<String>();
+            Shape shape;
+            synchronized (this) {
+                shape = shapeOf(elem, texts);
+            }
+            return new ShapedValue(shape,
+                    texts.toArray(new String[texts.size()]), 0);
+        }
+
+        /**
+         * Gets the number of distinct shapes.
+         * @return the number of shapes in the table.
+         */
+        public synchronized int size() {
+            return shapes.size();
+        }
+
+        private Shape shapeOf(Element elem, List<String> texts) {
+            List<Element> elements = Xml.getElements(elem);
+            Shape[] children = new Shape[elements.size()];
+            if (children.length == 0) {
+                texts.add(Interner.text(elem.getTextContent()));
+            }
+            for (int i = 0; i < children.length; i++) {
+                children[i] = shapeOf(elements.get(i), texts);
+            }
+            Shape shape = new Shape(Interner.name(elem.getTagName()),
+                    CompactValue.attributes(elem), children);
+            Shape shared = shapes.get(shape);
+            if (shared != null) {
+                return shared;
+            }
+            shapes.put(shape, shape);
+            return shape;
+        }
+    }
+}
@@ -66,6 +66,28 @@ public class XmlValue extends AbstractValue implements ConfigValue {
         }
     }
 
+    @Override
+    public ConfigValue findChild(String name, int position) {
+        if (position == 0) {
+            String value = Xml.getAttribute(name, root, null);
+            if (value != null) {
+                return PrimitiveValue.valueOf(value);
+            }
+        }
+        int count = 0;
+        for (Node node = root.getFirstChild(); node != null;
+                node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE
+                    && ((Element) node).getTagName().equals(name)) {
+                if (count == position) {
+                    return new XmlValue((Element) node);
+                }
+                count++;
+            }
+        }
+        return null;
+    }
+
     @Override
     public boolean hasValue(String name) {
         Element elem = Xml.getSingleElement(name, root, false);
@@ -183,6 +205,15 @@ public class XmlValue extends AbstractValue implements ConfigValue {
         return Xml.toString(root);
     }
 
+    /**
+     * Converts the value to a {@link CompactValue}, which
+     * has no reference to DOM.
+     */
+    @Override
+    public ConfigValue freeze() {
+        return CompactValue.create(root);
+    }
+
     @Override
     public Type getType() {
         Type type = findType(root);
@@ -57,13 +57,24 @@ public class XmlValueFormat implements ValueFormat {
 
     @Override
     public void write(ConfigValue conf, Writer writer, boolean indent) {
+        Xml.write(toXml(conf), writer, false, indent);
+    }
+
+    /**
+     * Gets the XML form of a value (with its own name),
+     * which is not copied if the value already has one.
+     * @param conf the value.
+     * @return the XML element, which must not be modified.
+     */
+    public static Element toXml(ConfigValue conf) {
         if (conf instanceof XmlValue) {
-            Element elem = ((XmlValue) conf).toXml();
-            Xml.write(elem, writer, false, indent);
-        } else {
-            Element elem = conf.toXml(conf.getName());
-            Xml.write(elem, writer, false, indent);
+            return ((XmlValue) conf).toXml();
+        } else if (conf instanceof CompactValue) {
+            return ((CompactValue) conf).toXml();
+        } else if (conf instanceof ShapedValue) {
+            return ((ShapedValue) conf).toXml();
         }
+        return conf.toXml(conf.getName());
     }
 
     /**
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.xml;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A compact binary encoding of an XML element, which
+ * can be decoded into a DOM element without XML parsing.
+ *
+ * <pre>
+ *  ELEMENT := NAMES NODE
+ *  NAMES   := count (UTF)*
+ *  NODE    := 'E' name_idx attr_count (name_idx STR)* child_count NODE*
+ *           | 'T' STR
+ *           | 'C' STR
+ * </pre>
+ * Whitespace-only text between child elements is dropped.
+ * @author tatemura
+ *
+ */
+public final class BinaryXml {
+    private static final int ELEMENT = 'E';
+    private static final int TEXT = 'T';
+    private static final int COMMENT = 'C';
+
+    private BinaryXml() {
+    }
+
+    /**
+     * Encodes an element.
+     * @param elem the element to be encoded.
+     * @param out the output of the encoded data.
+     * @throws IOException if writing fails.
+     */
+    public static void write(Element elem, DataOutput out) throws IOException {
+        List<String> names = new ArrayList<String>();
+        Map<String, Integer> index = new HashMap<String, Integer>();
+        collectNames(elem, names, index);
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+        writeElement(elem, index, out);
+    }
+
+    /**
+     * Decodes an element.
+     * @param in the input of the encoded data.
+     * @param doc the document to which the decoded element belongs.
+     * @return the decoded element.
+     * @throws IOException if reading fails.
+     */
+    public static Element read(DataInput in, Document doc) throws IOException {
+        int count = in.readInt();
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = in.readUTF();
+        }
+        if (in.readByte() != ELEMENT) {
+            throw new InvalidXmlException("malformed binary XML");
+        }
+        return readElement(in, names, doc);
+    }
+
+    private static void collectNames(Element elem,
+            List<String> names, Map<String, Integer> index) {
+        addName(elem.getTagName(), names, index);
+        NamedNodeMap attrs = elem.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            addName(((Attr) attrs.item(i)).getName(), names, index);
+        }
+        for (Element c : Xml.getElements(elem)) {
+            collectNames(c, names, index);
+        }
+    }
+
+    private static void addName(String name,
+            List<String> names, Map<String, Integer> index) {
+        if (!index.containsKey(name)) {
+            index.put(name, names.size());
+            names.add(name);
+        }
+    }
+
+    private static void writeElement(Element elem,
+            Map<String, Integer> index, DataOutput out) throws IOException {
+        out.writeByte(ELEMENT);
+        out.writeInt(index.get(elem.getTagName()));
+        NamedNodeMap attrs = elem.getAttributes();
+        out.writeInt(attrs.getLength());
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Attr attr = (Attr) attrs.item(i);
+            out.writeInt(index.get(attr.getName()));
+            writeString(attr.getValue(), out);
+        }
+        List<Node> children = significantChildren(elem);
+        out.writeInt(children.size());
+        for (Node n : children) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                writeElement((Element) n, index, out);
+            } else if (n.getNodeType() == Node.COMMENT_NODE) {
+                out.writeByte(COMMENT);
+                writeString(n.getNodeValue(), out);
+            } else {
+                out.writeByte(TEXT);
+                writeString(n.getNodeValue(), out);
+            }
+        }
+    }
+
+    private static List<Node> significantChildren(Element elem) {
+        NodeList nlist = elem.getChildNodes();
+        boolean hasElement = false;
+        for (int i = 0; i < nlist.getLength(); i++) {
+            if (nlist.item(i).getNodeType() == Node.ELEMENT_NODE) {
+                hasElement = true;
+                break;
+            }
+        }
+        List<Node> nodes = new ArrayList<Node>();
+        for (int i = 0; i < nlist.getLength(); i++) {
+            Node node = nlist.item(i);
+            short type = node.getNodeType();
+            if (type == Node.ELEMENT_NODE || type == Node.COMMENT_NODE) {
+                nodes.add(node);
+            } else if (type == Node.TEXT_NODE
+                    || type == Node.CDATA_SECTION_NODE) {
+                if (!hasElement || !node.getNodeValue().trim().isEmpty()) {
+                    nodes.add(node);
+                }
+            }
+        }
+        return nodes;
+    }
+
+    private static Element readElement(DataInput in,
+            String[] names, Document doc) throws IOException {
+        Element elem = doc.createElement(names[in.readInt()]);
+        int attrCount = in.readInt();
+        for (int i = 0; i < attrCount; i++) {
+            String name = names[in.readInt()];
+            elem.setAttribute(name, readString(in));
+        }
+        int childCount = in.readInt();
+        for (int i = 0; i < childCount; i++) {
+            int type = in.readByte();
+            if (type == ELEMENT) {
+                elem.appendChild(readElement(in, names, doc));
+            } else if (type == TEXT) {
+                elem.appendChild(doc.createTextNode(readString(in)));
+            } else if (type == COMMENT) {
+                elem.appendChild(doc.createComment(readString(in)));
+            } else {
+                throw new InvalidXmlException("malformed binary XML");
+            }
+        }
+        return elem;
+    }
+
+    /**
+     * Writes a string (which can be longer than
+     * the limit of DataOutput.writeUTF).
+     */
+    static void writeString(String str, DataOutput out) throws IOException {
+        byte[] bytes = str.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.xml;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * Compression of output files and detection of compressed
+ * input (XML, JSON or properties files compressed with gzip
+ * or deflate in the zlib format).
+ * @author tatemura
+ *
+ */
+public enum Compression {
+    NONE(""),
+    GZIP(".gz"),
+    /**
+     * Deflate in the zlib format (RFC 1950).
+     */
+    DEFLATE(".zz");
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int GZIP_MAGIC1 = 0x1f;
+    private static final int GZIP_MAGIC2 = 0x8b;
+    /**
+     * The first byte of a zlib stream with deflate
+     * and the 32K window.
+     */
+    private static final int ZLIB_HEADER = 0x78;
+
+    private final String suffix;
+
+    private Compression(String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * Finds the compression for the given name.
+     * @param name the name of compression.
+     * @return a compression if it is found. null otherwise.
+     */
+    @Nullable
+    public static Compression find(String name) {
+        String normalized = name.trim().toUpperCase();
+        try {
+            return Compression.valueOf(normalized);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the suffix appended to the name of a compressed
+     * file (empty for NONE).
+     */
+    public String suffix() {
+        return suffix;
+    }
+
+    /**
+     * Wraps a stream to compress the written bytes.
+     * @param out the stream to which compressed bytes are
+     *        written (closed when the returned stream is closed).
+     * @return a compressing stream.
+     * @throws IOException if writing a header fails.
+     */
+    public OutputStream wrap(OutputStream out) throws IOException {
+        switch (this) {
+        case GZIP:
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        case DEFLATE:
+            return new DeflaterOutputStream(out,
+                    new Deflater(Deflater.DEFAULT_COMPRESSION), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        def.end();
+                    }
+                }
+            };
+        default:
+            return out;
+        }
+    }
+
+    /**
+     * Compresses bytes.
+     * @param data the bytes to be compressed.
+     * @param off the start offset of the bytes.
+     * @param len the number of the bytes.
+     * @return compressed bytes (a complete gzip member or
+     *         zlib stream).
+     */
+    public byte[] compress(byte[] data, int off, int len) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(len / 4 + 64);
+        try {
+            OutputStream out = wrap(bytes);
+            out.write(data, off, len);
+            out.close();
+        } catch (IOException ex) {
+            /**
+             * not thrown by a byte array stream.
+             */
+            throw new IllegalStateException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Removes the suffix of compression from a file name
+     * (e.g., "a.json.gz" to "a.json").
+     * @param name the file name.
+     * @return the name without the suffix.
+     */
+    public static String stripSuffix(String name) {
+        for (Compression c : values()) {
+            if (c != NONE && name.endsWith(c.suffix)) {
+                return name.substring(0, name.length() - c.suffix.length());
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Detects compression of a stream from its first bytes.
+     * @param instr a stream that supports mark.
+     * @return the detected compression (NONE if the stream
+     *         is not compressed).
+     * @throws IOException if reading fails.
+     */
+    public static Compression detect(InputStream instr) throws IOException {
+        instr.mark(2);
+        int b1 = instr.read();
+        int b2 = instr.read();
+        instr.reset();
+        if (b1 == GZIP_MAGIC1 && b2 == GZIP_MAGIC2) {
+            return GZIP;
+        }
+        /**
+         * the second bytes of the compression levels
+         * written by Deflater.
+         */
+        if (b1 == ZLIB_HEADER && (b2 == 0x01 || b2 == 0x5e
+                || b2 == 0x9c || b2 == 0xda)) {
+            return DEFLATE;
+        }
+        return NONE;
+    }
+
+    /**
+     * Wraps a stream to decompress its content if it is
+     * compressed (detected from its first bytes).
+     * @param instr the input stream.
+     * @return a stream of the decompressed content (or
+     *         a buffered stream of the same content if it is
+     *         not compressed).
+     * @throws IOException if reading fails.
+     */
+    public static InputStream decompress(InputStream instr) throws IOException {
+        InputStream in = (instr.markSupported() ? instr
+                : new BufferedInputStream(instr, BUFFER_SIZE));
+        switch (detect(in)) {
+        case GZIP:
+            return new BufferedInputStream(
+                    new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+        case DEFLATE:
+            return new BufferedInputStream(
+                    new InflaterInputStream(in), BUFFER_SIZE);
+        default:
+            return in;
+        }
+    }
+}
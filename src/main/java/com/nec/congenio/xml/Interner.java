@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.xml;
+
+/**
+ * Bounded tables of shared strings: element and attribute names,
+ * and short texts (values) that tend to repeat in many documents
+ * (e.g., "true", small numbers, and enum-like words).
+ *
+ * <p>A table is a fixed-size array indexed by hash: a string
+ * replaces the entry of its slot when the slot holds a different
+ * string, so the table never grows. Entries are immutable, so
+ * the tables are read and written without locks (a lost update
+ * only results in an unshared copy). {@link Table} is also used
+ * to share other immutable values keyed by a string.
+ * @author tatemura
+ *
+ */
+public final class Interner {
+    private static final int MAX_NAME_LENGTH = 64;
+    private static final int MAX_TEXT_LENGTH = 32;
+    private static final Table<String> NAMES =
+            new StringTable(4096, MAX_NAME_LENGTH);
+    private static final Table<String> TEXTS =
+            new StringTable(8192, MAX_TEXT_LENGTH);
+
+    private Interner() {
+    }
+
+    /**
+     * Gets a shared instance of an element or attribute name.
+     * @param name the name.
+     * @return the shared string equal to the name.
+     */
+    public static String name(String name) {
+        return NAMES.intern(name);
+    }
+
+    /**
+     * Gets a shared instance of a short text. A long text
+     * is returned as it is.
+     * @param text the text.
+     * @return the shared string equal to the text.
+     */
+    public static String text(String text) {
+        return TEXTS.intern(text);
+    }
+
+    /**
+     * A bounded table of shared immutable values keyed by
+     * strings.
+     * @param <T> the type of values.
+     */
+    public abstract static class Table<T> {
+        private final Object[] slots;
+        private final int mask;
+        private final int maxLength;
+
+        /**
+         * Creates a table.
+         * @param size the number of slots (a power of 2).
+         * @param maxLength the maximum length of keys to be shared.
+         */
+        public Table(int size, int maxLength) {
+            this.slots = new Object[size];
+            this.mask = size - 1;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * Gets a shared value for the key. A value of a long key
+         * is created and not shared.
+         * @param key the key.
+         * @return the value for the key.
+         */
+        public T intern(String key) {
+            if (key.length() > maxLength) {
+                return create(key);
+            }
+            int hash = key.hashCode();
+            int idx = (hash ^ (hash >>> 16)) & mask;
+            @SuppressWarnings("unchecked")
+            T shared = (T) slots[idx];
+            if (shared != null && key.equals(keyOf(shared))) {
+                return shared;
+            }
+            shared = create(key);
+            slots[idx] = shared;
+            return shared;
+        }
+
+        /**
+         * Creates a value for the key.
+         * @param key the key.
+         * @return a new value.
+         */
+        protected abstract T create(String key);
+
+        /**
+         * Gets the key of a value created by this table.
+         * @param value the value.
+         * @return the key.
+         */
+        protected abstract String keyOf(T value);
+    }
+
+    static final class StringTable extends Table<String> {
+        StringTable(int size, int maxLength) {
+            super(size, maxLength);
+        }
+
+        @Override
+        protected String create(String key) {
+            return key;
+        }
+
+        @Override
+        protected String keyOf(String value) {
+            return value;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.nec.congenio.xml;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
@@ -25,24 +26,19 @@ import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.FactoryConfigurationError;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.TransformerFactoryConfigurationError;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
@@ -57,7 +53,45 @@ import org.xml.sax.SAXException;
 import com.nec.congenio.ConfigException;
 
 public final class Xml {
-    static final XPath XPATH = XPathFactory.newInstance().newXPath();
+    /**
+     * The max number of compiled XPath expressions
+     * cached per thread.
+     */
+    private static final int XPATH_CACHE_SIZE = 256;
+    /**
+     * A path that consists of a single child name step,
+     * which is evaluated directly on DOM.
+     */
+    private static final Pattern CHILD_NAME =
+            Pattern.compile("^[A-Za-z_][\\w.\\-]*$");
+    /**
+     * XPath and compiled expressions are not thread-safe,
+     * so they are kept per thread.
+     */
+    private static final ThreadLocal<XPathCache> XPATHS =
+            new ThreadLocal<XPathCache>() {
+                @Override
+                protected XPathCache initialValue() {
+                    return new XPathCache(XPATH_CACHE_SIZE);
+                }
+            };
+
+    private static final ThreadLocal<DocumentBuilder> BUILDER =
+            new ThreadLocal<DocumentBuilder>() {
+                @Override
+                protected DocumentBuilder initialValue() {
+                    try {
+                        return DocumentBuilderFactory.newInstance()
+                                .newDocumentBuilder();
+                    } catch (FactoryConfigurationError ex) {
+                        throw new InvalidXmlException(
+                                "failed to create a document", ex);
+                    } catch (ParserConfigurationException ex) {
+                        throw new InvalidXmlException(
+                                "failed to create a document", ex);
+                    }
+                }
+            };
 
     private Xml() {
         // not instantiated
@@ -74,7 +108,8 @@ public final class Xml {
     }
 
     /**
-     * Parses an XML document in the given input stream.
+     * Parses an XML document in the given input stream
+     * (which may be compressed, see {@link Compression}).
      * @param instr an input stream from which a document
      *        is read. The input stream is NOT closed by
      *        this method.
@@ -82,11 +117,19 @@ public final class Xml {
      * @throws InvalidXmlException if parsing failed.
      */
     public static Document parse(InputStream instr) {
+        return parse(instr, null);
+    }
+
+    private static Document parse(InputStream instr, @Nullable String systemId) {
         try {
             DocumentBuilder builder =
                     DocumentBuilderFactory.newInstance()
                     .newDocumentBuilder();
-            return builder.parse(instr);
+            InputStream in = Compression.decompress(instr);
+            if (systemId != null) {
+                return builder.parse(in, systemId);
+            }
+            return builder.parse(in);
         } catch (ParserConfigurationException ex) {
             throw new InvalidXmlException(
                     "parse failed due to configuration exception", ex);
@@ -107,23 +150,16 @@ public final class Xml {
      * @throws InvalidXmlException if parsing failed.
      */
     public static Document parse(URL resource) {
+        if (resource == null) {
+            throw new InvalidXmlException("resource URL is null");
+        }
         try {
-            DocumentBuilder builder =
-                    DocumentBuilderFactory.newInstance()
-                    .newDocumentBuilder();
-            if (builder == null) {
-                throw new InvalidXmlException("document builder not created");
-            }
-            if (resource == null) {
-                throw new InvalidXmlException("resource URL is null");
+            InputStream instr = resource.openStream();
+            try {
+                return parse(instr, resource.toString());
+            } finally {
+                instr.close();
             }
-            return builder.parse(resource.toString());
-        } catch (ParserConfigurationException ex) {
-            throw new InvalidXmlException(
-                    "parse failed due to configuration exception", ex);
-        } catch (SAXException ex) {
-            throw new InvalidXmlException(
-                    "parse failed due to SAX exception", ex);
         } catch (IOException ex) {
             throw new InvalidXmlException(
                     "parse failed due to IO exception", ex);
@@ -131,7 +167,8 @@ public final class Xml {
     }
 
     /**
-     * Parses an XML text file as a W3C DOM document.
+     * Parses an XML text file (which may be compressed)
+     * as a W3C DOM document.
      * 
      * @param file the file that contains an XML document.
      * @return parsed Document
@@ -139,16 +176,12 @@ public final class Xml {
      */
     public static Document parse(File file) {
         try {
-            DocumentBuilder builder =
-                    DocumentBuilderFactory.newInstance()
-                    .newDocumentBuilder();
-            return builder.parse(file);
-        } catch (ParserConfigurationException ex) {
-            throw new InvalidXmlException(
-                    "parse failed due to configuration exception", ex);
-        } catch (SAXException ex) {
-            throw new InvalidXmlException(
-                    "parse failed due to SAX exception", ex);
+            InputStream instr = new FileInputStream(file);
+            try {
+                return parse(instr, file.toURI().toString());
+            } finally {
+                instr.close();
+            }
         } catch (IOException ex) {
             throw new InvalidXmlException(
                     "parse failed due to IO exception", ex);
@@ -163,17 +196,40 @@ public final class Xml {
      *         (due to configuration errors).
      */
     public static Document createDocument() {
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            return builder.newDocument();
-        } catch (FactoryConfigurationError ex) {
-            throw new InvalidXmlException(
-                    "failed to create a document", ex);
-        } catch (ParserConfigurationException ex) {
-            throw new InvalidXmlException(
-                    "failed to create a document", ex);
-        }
+        return BUILDER.get().newDocument();
+    }
+
+    /**
+     * Loads the root element of an XML file. The file is
+     * parsed once into a tree kept in {@link XmlNodeCache}, and
+     * a new DOM element is materialized from it for each load
+     * (so the caller may modify the element).
+     * @param file the file that contains an XML document.
+     * @return the root element of a new document.
+     * @throws InvalidXmlException if parsing failed.
+     */
+    public static Element loadElement(File file) {
+        return XmlNodeCache.getInstance().get(file).toElement(createDocument());
+    }
+
+    /**
+     * Loads the root element of an XML document at the URL.
+     * @param resource the URL of the XML document.
+     * @return the root element of a new document.
+     * @throws InvalidXmlException if parsing failed.
+     */
+    public static Element loadElement(URL resource) {
+        return parse(resource).getDocumentElement();
+    }
+
+    /**
+     * Loads the root element of an XML document in the stream.
+     * @param instr the input, which is NOT closed by this method.
+     * @return the root element of a new document.
+     * @throws InvalidXmlException if parsing failed.
+     */
+    public static Element loadElement(InputStream instr) {
+        return parse(instr).getDocumentElement();
     }
 
     // XML DOM utilities
@@ -286,9 +342,16 @@ public final class Xml {
     @Nullable
     public static Element getSingleElement(String path,
             Node node, boolean mandate) {
+        if (CHILD_NAME.matcher(path).matches()) {
+            Element result = getChild(path, node);
+            if (result == null && mandate) {
+                throw new InvalidXmlException("no element matched:" + path);
+            }
+            return result;
+        }
         try {
-            Node result = (Node) XPATH.evaluate(
-                    path, node, XPathConstants.NODE);
+            Node result = (Node) XPATHS.get().compile(path)
+                    .evaluate(node, XPathConstants.NODE);
             if (result == null) {
                 if (mandate) {
                     throw new InvalidXmlException("no element matched:" + path);
@@ -306,6 +369,18 @@ public final class Xml {
 
     }
 
+    @Nullable
+    private static Element getChild(String name, Node node) {
+        for (Node child = node.getFirstChild(); child != null;
+                child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE
+                    && child.getNodeName().equals(name)) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
     /**
      * Gets a list of elements that matches with the path
      * expression.
@@ -314,9 +389,20 @@ public final class Xml {
      * @return an empty list when no match is found.
      */
     public static List<Element> getElements(String path, Node node) {
+        if (CHILD_NAME.matcher(path).matches()) {
+            List<Element> elements = new ArrayList<Element>();
+            for (Node child = node.getFirstChild(); child != null;
+                    child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE
+                        && child.getNodeName().equals(path)) {
+                    elements.add((Element) child);
+                }
+            }
+            return elements;
+        }
         try {
-            NodeList nlist = (NodeList) XPATH.evaluate(
-                    path, node, XPathConstants.NODESET);
+            NodeList nlist = (NodeList) XPATHS.get().compile(path)
+                    .evaluate(node, XPathConstants.NODESET);
             List<Element> elements =
                     new ArrayList<Element>(nlist.getLength());
             for (int i = 0; i < nlist.getLength(); i++) {
@@ -432,31 +518,45 @@ public final class Xml {
      */
     public static void write(Node node, Writer writer,
             boolean xmldecl, boolean indent) {
+        XmlWriter out = new XmlWriter(writer, indent);
         try {
-            TransformerFactory factory =
-                    TransformerFactory.newInstance();
-            Transformer trans = factory.newTransformer();
-            if (!xmldecl) {
-                trans.setOutputProperty("omit-xml-declaration", "yes");
-            }
-            if (indent) {
-                trans.setOutputProperty(OutputKeys.INDENT, "yes");
-                trans.setOutputProperty(
-                        "{http://xml.apache.org/xslt}indent-amount", "2");
+            if (xmldecl) {
+                out.writeDeclaration();
             }
-            DOMSource src = new DOMSource();
-            src.setNode(node);
-            StreamResult dst = new StreamResult();
-            dst.setWriter(writer);
-            trans.transform(src, dst);
-
-        } catch (TransformerConfigurationException ex) {
-            throw new ConfigException("cannot transform XML node", ex);
-        } catch (TransformerFactoryConfigurationError ex) {
-            throw new ConfigException("cannot transform XML node", ex);
-        } catch (TransformerException ex) {
-            throw new ConfigException("cannot transform XML node", ex);
+            out.write(node);
+        } catch (IOException ex) {
+            throw new ConfigException("cannot write XML node", ex);
         }
     }
 
+    /**
+     * An XPath and a bounded (LRU) cache of compiled
+     * expressions, which are used by one thread.
+     */
+    static final class XPathCache extends LinkedHashMap<String, XPathExpression> {
+        private static final long serialVersionUID = 1L;
+        private final transient XPath xpath =
+                XPathFactory.newInstance().newXPath();
+        private final int capacity;
+
+        XPathCache(int capacity) {
+            super(capacity, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        XPathExpression compile(String path) throws XPathExpressionException {
+            XPathExpression exp = get(path);
+            if (exp == null) {
+                exp = xpath.compile(path);
+                put(path, exp);
+            }
+            return exp;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<String, XPathExpression> eldest) {
+            return size() > capacity;
+        }
+    }
 }
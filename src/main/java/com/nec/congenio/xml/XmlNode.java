@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.xml;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A compact immutable XML tree loaded with StAX.
+ *
+ * <p>Whitespace-only text between child elements is
+ * dropped and element/attribute names are interned. A tree
+ * can be shared (e.g., cached per template file) and is
+ * materialized into a DOM element with
+ * {@link XmlElement#toElement(Document)}
+ * when the evaluation pipeline (which updates DOM) needs it.
+ * @author tatemura
+ *
+ */
+public abstract class XmlNode {
+    private static final int BUFFER_SIZE = 8192;
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    XmlNode() {
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
+    }
+
+    /**
+     * Materializes this node as a DOM node.
+     * @param doc the document the created node belongs to.
+     * @return a new DOM node.
+     */
+    public abstract Node toNode(Document doc);
+
+    /**
+     * Parses an XML document in the given input stream
+     * (which may be compressed, see {@link Compression}).
+     * @param instr the input. The stream is NOT closed by
+     *        this method.
+     * @return the root element.
+     * @throws InvalidXmlException if parsing failed.
+     */
+    public static XmlElement parse(InputStream instr) {
+        try {
+            InputStream in = Compression.decompress(instr);
+            XMLStreamReader reader;
+            synchronized (FACTORY) {
+                reader = FACTORY.createXMLStreamReader(in);
+            }
+            try {
+                return read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new InvalidXmlException(
+                    "parse failed due to StAX exception", ex);
+        } catch (IOException ex) {
+            throw new InvalidXmlException(
+                    "parse failed due to IO exception", ex);
+        }
+    }
+
+    /**
+     * Parses an XML file.
+     * @param file the file that contains an XML document.
+     * @return the root element.
+     * @throws InvalidXmlException if parsing failed.
+     */
+    public static XmlElement parse(File file) {
+        try {
+            InputStream instr = new BufferedInputStream(
+                    new FileInputStream(file), BUFFER_SIZE);
+            try {
+                return parse(instr);
+            } finally {
+                instr.close();
+            }
+        } catch (IOException ex) {
+            throw new InvalidXmlException(
+                    "parse failed due to IO exception", ex);
+        }
+    }
+
+    /**
+     * Parses an XML document at the given URL.
+     * @param resource the URL of the XML document.
+     * @return the root element.
+     * @throws InvalidXmlException if parsing failed.
+     */
+    public static XmlElement parse(URL resource) {
+        try {
+            InputStream instr = new BufferedInputStream(
+                    resource.openStream(), BUFFER_SIZE);
+            try {
+                return parse(instr);
+            } finally {
+                instr.close();
+            }
+        } catch (IOException ex) {
+            throw new InvalidXmlException(
+                    "parse failed due to IO exception", ex);
+        }
+    }
+
+    private static XmlElement read(XMLStreamReader reader)
+            throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                return readElement(reader);
+            }
+        }
+        throw new InvalidXmlException("no root element");
+    }
+
+    private static XmlElement readElement(XMLStreamReader reader)
+            throws XMLStreamException {
+        String name = Interner.name(reader.getLocalName());
+        int attrCount = reader.getAttributeCount();
+        String[] attrs = new String[attrCount * 2];
+        for (int i = 0; i < attrCount; i++) {
+            attrs[i * 2] = Interner.name(reader.getAttributeLocalName(i));
+            attrs[i * 2 + 1] = Interner.text(reader.getAttributeValue(i));
+        }
+        List<XmlNode> children = new ArrayList<XmlNode>();
+        boolean hasElement = false;
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                hasElement = true;
+                children.add(readElement(reader));
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            } else if (event == XMLStreamConstants.CHARACTERS
+                    || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                addText(reader.getText(), children);
+            } else if (event == XMLStreamConstants.COMMENT) {
+                children.add(new XmlComment(reader.getText()));
+            }
+        }
+        if (hasElement) {
+            removeSpaces(children);
+        }
+        return new XmlElement(name, attrs,
+                children.toArray(new XmlNode[children.size()]));
+    }
+
+    private static void addText(String str, List<XmlNode> children) {
+        int last = children.size() - 1;
+        if (last >= 0 && children.get(last) instanceof XmlText) {
+            XmlText prev = (XmlText) children.get(last);
+            children.set(last, new XmlText(prev.text + str));
+        } else {
+            children.add(new XmlText(str));
+        }
+    }
+
+    /**
+     * Removes whitespace-only text between child elements
+     * (as {@link BinaryXml} does).
+     */
+    private static void removeSpaces(List<XmlNode> children) {
+        for (Iterator<XmlNode> iter = children.iterator(); iter.hasNext();) {
+            XmlNode node = iter.next();
+            if (node instanceof XmlText
+                    && ((XmlText) node).text.trim().isEmpty()) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * An immutable element.
+     */
+    public static final class XmlElement extends XmlNode {
+        private final String name;
+        private final String[] attrs;
+        private final XmlNode[] children;
+
+        XmlElement(String name, String[] attrs, XmlNode[] children) {
+            this.name = name;
+            this.attrs = attrs;
+            this.children = children;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAttributeCount() {
+            return attrs.length / 2;
+        }
+
+        public String getAttributeName(int idx) {
+            return attrs[idx * 2];
+        }
+
+        public String getAttributeValue(int idx) {
+            return attrs[idx * 2 + 1];
+        }
+
+        /**
+         * Gets the value of the attribute.
+         * @param attrName the name of the attribute.
+         * @return null if the attribute does not exist.
+         */
+        @Nullable
+        public String getAttribute(String attrName) {
+            for (int i = 0; i < attrs.length; i += 2) {
+                if (attrs[i].equals(attrName)) {
+                    return attrs[i + 1];
+                }
+            }
+            return null;
+        }
+
+        public List<XmlNode> getChildren() {
+            return Collections.unmodifiableList(
+                    Arrays.asList(children));
+        }
+
+        @Override
+        public Node toNode(Document doc) {
+            return toElement(doc);
+        }
+
+        /**
+         * Materializes this element as a DOM element.
+         * @param doc the document the created element belongs to.
+         * @return a new DOM element.
+         */
+        public Element toElement(Document doc) {
+            Element elem = doc.createElement(name);
+            for (int i = 0; i < attrs.length; i += 2) {
+                elem.setAttribute(attrs[i], attrs[i + 1]);
+            }
+            for (XmlNode c : children) {
+                elem.appendChild(c.toNode(doc));
+            }
+            return elem;
+        }
+    }
+
+    /**
+     * An immutable text node.
+     */
+    public static final class XmlText extends XmlNode {
+        private final String text;
+
+        XmlText(String text) {
+            this.text = Interner.text(text);
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public Node toNode(Document doc) {
+            return doc.createTextNode(text);
+        }
+    }
+
+    /**
+     * An immutable comment node.
+     */
+    public static final class XmlComment extends XmlNode {
+        private final String text;
+
+        XmlComment(String text) {
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public Node toNode(Document doc) {
+            return doc.createComment(text);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nec.congenio.xml;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of parsed XML files (as immutable {@link XmlNode}
+ * trees), so that a template loaded repeatedly (e.g., a base
+ * document extended by many documents) is parsed once and only
+ * materialized into a new DOM element for each load.
+ *
+ * <p>An entry is validated with the modification time and the
+ * length of the file at each lookup. A file modified within
+ * the granularity of time stamps is not cached since an update
+ * may not be detected. The number of entries is bounded (the
+ * least recently used one is evicted).
+ * @author tatemura
+ *
+ */
+public final class XmlNodeCache {
+    private static final int MAX_ENTRIES = 256;
+    private static final long MTIME_GRANULARITY = 2000L;
+    private static final XmlNodeCache INSTANCE = new XmlNodeCache(MAX_ENTRIES);
+
+    public static XmlNodeCache getInstance() {
+        return INSTANCE;
+    }
+
+    private final Map<String, Entry> entries;
+
+    XmlNodeCache(final int maxEntries) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the parsed tree of an XML file.
+     * @param file the file that contains an XML document.
+     * @return the root element, which must not be modified
+     *         (it is shared).
+     * @throws InvalidXmlException if parsing failed.
+     */
+    public XmlNode.XmlElement get(File file) {
+        String key = file.getAbsolutePath();
+        long mtime = file.lastModified();
+        long length = file.length();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.mtime == mtime && entry.length == length) {
+                return entry.root;
+            }
+        }
+        XmlNode.XmlElement root = XmlNode.parse(file);
+        if (System.currentTimeMillis() - mtime >= MTIME_GRANULARITY) {
+            synchronized (this) {
+                entries.put(key, new Entry(mtime, length, root));
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Discards all the cached trees.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        private final long mtime;
+        private final long length;
+        private final XmlNode.XmlElement root;
+
+        Entry(long mtime, long length, XmlNode.XmlElement root) {
+            this.mtime = mtime;
+            this.length = length;
+            this.root = root;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.xml;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A streaming serializer of DOM nodes, which writes
+ * the text representation of a node directly to a writer
+ * (i.e., without a Transformer).
+ *
+ * <p>The output is the same as the one of the identity
+ * transformation with the same options, except that
+ * whitespace-only text between child elements is not written
+ * when the output is indented (it is replaced with the
+ * indentation).
+ * @author tatemura
+ *
+ */
+public final class XmlWriter {
+    public static final String DECLARATION =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+    private static final String INDENT = "  ";
+    private static final String CDATA_END = "]]>";
+
+    private final Writer writer;
+    private final boolean indent;
+
+    /**
+     * Creates a serializer.
+     * @param writer the destination of the text.
+     * @param indent true to indent elements.
+     */
+    public XmlWriter(Writer writer, boolean indent) {
+        this.writer = writer;
+        this.indent = indent;
+    }
+
+    /**
+     * Writes the XML declaration.
+     * @throws IOException if writing fails.
+     */
+    public void writeDeclaration() throws IOException {
+        writer.write(DECLARATION);
+    }
+
+    /**
+     * Writes a node (a line break follows if the output is
+     * indented).
+     * @param node the node to be written.
+     * @throws IOException if writing fails.
+     */
+    public void write(Node node) throws IOException {
+        if (node.getNodeType() == Node.DOCUMENT_NODE) {
+            for (Node c = node.getFirstChild(); c != null; c = c.getNextSibling()) {
+                write(c);
+            }
+            return;
+        }
+        writeNode(node, 0);
+        if (indent) {
+            writer.write('\n');
+        }
+    }
+
+    private void writeNode(Node node, int level) throws IOException {
+        switch (node.getNodeType()) {
+        case Node.ELEMENT_NODE:
+            writeElement(node, level);
+            break;
+        case Node.TEXT_NODE:
+            writeText(node.getNodeValue(), false);
+            break;
+        case Node.CDATA_SECTION_NODE:
+            writeCdata(node.getNodeValue());
+            break;
+        case Node.COMMENT_NODE:
+            writer.write("<!--");
+            writer.write(node.getNodeValue());
+            writer.write("-->");
+            break;
+        case Node.PROCESSING_INSTRUCTION_NODE:
+            writer.write("<?");
+            writer.write(node.getNodeName());
+            String data = node.getNodeValue();
+            if (data != null && !data.isEmpty()) {
+                writer.write(' ');
+                writer.write(data);
+            }
+            writer.write("?>");
+            break;
+        case Node.ATTRIBUTE_NODE:
+            writeText(node.getNodeValue(), true);
+            break;
+        default:
+            for (Node c = node.getFirstChild(); c != null; c = c.getNextSibling()) {
+                writeNode(c, level);
+            }
+        }
+    }
+
+    private void writeElement(Node elem, int level) throws IOException {
+        String tag = elem.getNodeName();
+        writer.write('<');
+        writer.write(tag);
+        NamedNodeMap attrs = elem.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Attr attr = (Attr) attrs.item(i);
+            writer.write(' ');
+            writer.write(attr.getName());
+            writer.write("=\"");
+            writeText(attr.getValue(), true);
+            writer.write('"');
+        }
+        Node first = elem.getFirstChild();
+        if (first == null) {
+            writer.write("/>");
+            return;
+        }
+        writer.write('>');
+        if (!indent || isTextOnly(elem)) {
+            for (Node c = first; c != null; c = c.getNextSibling()) {
+                writeNode(c, level + 1);
+            }
+        } else {
+            for (Node c = first; c != null; c = c.getNextSibling()) {
+                if (c.getNodeType() == Node.TEXT_NODE
+                        && c.getNodeValue().trim().isEmpty()) {
+                    continue;
+                }
+                newLine(level + 1);
+                writeNode(c, level + 1);
+            }
+            newLine(level);
+        }
+        writer.write("</");
+        writer.write(tag);
+        writer.write('>');
+    }
+
+    private static boolean isTextOnly(Node elem) {
+        for (Node c = elem.getFirstChild(); c != null; c = c.getNextSibling()) {
+            short type = c.getNodeType();
+            if (type != Node.TEXT_NODE && type != Node.CDATA_SECTION_NODE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void newLine(int level) throws IOException {
+        writer.write('\n');
+        for (int i = 0; i < level; i++) {
+            writer.write(INDENT);
+        }
+    }
+
+    /**
+     * Writes escaped text, writing runs of characters
+     * that need no escape at once.
+     * @param text the text to be written.
+     * @param attr true if the text is an attribute value.
+     */
+    private void writeText(String text, boolean attr) throws IOException {
+        int start = 0;
+        int len = text.length();
+        for (int i = 0; i < len; i++) {
+            String esc = escape(text.charAt(i), attr);
+            if (esc != null) {
+                if (i > start) {
+                    writer.write(text, start, i - start);
+                }
+                writer.write(esc);
+                start = i + 1;
+            }
+        }
+        if (len > start) {
+            writer.write(text, start, len - start);
+        }
+    }
+
+    private static String escape(char chr, boolean attr) {
+        switch (chr) {
+        case '&':
+            return "&amp;";
+        case '<':
+            return "&lt;";
+        case '>':
+            return "&gt;";
+        case '\r':
+            return "&#13;";
+        case '"':
+            return attr ? "&quot;" : null;
+        case '\n':
+            return attr ? "&#10;" : null;
+        case '\t':
+            return attr ? "&#9;" : null;
+        default:
+            return null;
+        }
+    }
+
+    private void writeCdata(String text) throws IOException {
+        writer.write("<![CDATA[");
+        int start = 0;
+        int end;
+        while ((end = text.indexOf(CDATA_END, start)) >= 0) {
+            /**
+             * "]]>" is split into two sections.
+             */
+            writer.write(text, start, end + 2 - start);
+            writer.write("]]><![CDATA[");
+            start = end + 2;
+        }
+        writer.write(text, start, text.length() - start);
+        writer.write("]]>");
+    }
+}
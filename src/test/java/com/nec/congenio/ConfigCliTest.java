@@ -3,7 +3,9 @@ package com.nec.congenio;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
@@ -59,4 +61,31 @@ public class ConfigCliTest {
         }
         assertTrue(failed);
     }
+
+    @Test
+    public void testConflictingOutputOptions() throws Exception {
+        String[][] conflicts = {
+            {"-o", "out", "-d", "first", "-f", "json"},
+            {"-o", "out", "-d", "first", "-f", "jsonl"},
+            {"-o", "out", "-d", "first", "-a", "zip"},
+            {"-o", "out", "-d", "0", "-u"},
+            {"-o", "out", "-d", "0", "-z", "gzip"},
+            {"-o", "out", "-a", "tar", "-u"},
+        };
+        for (String[] opts : conflicts) {
+            String[] args = Arrays.copyOf(opts, opts.length + 1);
+            args[opts.length] = "test.xml";
+            try {
+                new ConfigCli().execute(args);
+                fail(Arrays.toString(opts));
+            } catch (ConfigException ex) {
+                /**
+                 * rejected before the document is read.
+                 */
+                assertTrue(ex.getMessage(),
+                        ex.getMessage().startsWith("delta")
+                        || ex.getMessage().startsWith("archive"));
+            }
+        }
+    }
 }
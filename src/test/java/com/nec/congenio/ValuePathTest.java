@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import com.nec.congenio.value.xml.CompactValue;
+import com.nec.congenio.value.xml.ShapedValue;
+import com.nec.congenio.value.xml.XmlValue;
+import com.nec.congenio.xml.Xml;
+
+public class ValuePathTest {
+    private static final String DOC = "<t a='x'><o><i>10</i><j b='y'>20</j></o>"
+            + "<l><e>1</e><e>2</e><e>3</e></l></t>";
+
+    @Test
+    public void testPaths() {
+        Element elem = Xml.parse(DOC).getDocumentElement();
+        ConfigValue[] values = {
+            XmlValue.create(elem),
+            CompactValue.create(elem),
+            new ShapedValue.Table().create(elem),
+        };
+        ValuePath pathI = ValuePath.compile("o/i");
+        ValuePath pathE = ValuePath.compile("l/e[3]");
+        ValuePath pathB = ValuePath.compile("o/j/b");
+        ValuePath pathNone = ValuePath.compile("o/k");
+        for (ConfigValue v : values) {
+            assertEquals(10, pathI.get(v).intValue(0));
+            assertEquals("3", pathE.get(v).stringValue());
+            assertEquals("y", pathB.get(v).stringValue());
+            assertEquals("x", ValuePath.compile("a").get(v).stringValue());
+            assertNull(pathNone.find(v));
+            assertNull(ValuePath.compile("l/e[4]").find(v));
+        }
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testNotFound() {
+        ValuePath.compile("o/k").get(
+                Values.parseValue(DOC));
+    }
+}
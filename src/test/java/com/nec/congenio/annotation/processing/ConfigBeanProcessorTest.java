@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.annotation.processing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.Values;
+
+public class ConfigBeanProcessorTest {
+
+    @Test
+    public void testBinderName() {
+        assertEquals("p.FooConfigBinder", ConfigBeanProcessor.binderName("p.Foo"));
+        assertEquals("p.Outer_InnerConfigBinder",
+                ConfigBeanProcessor.binderName("p.Outer$Inner"));
+        assertEquals("FooConfigBinder", ConfigBeanProcessor.binderName("Foo"));
+    }
+
+    @Test
+    public void testGeneratedBinder() throws Exception {
+        File dir = tempDir();
+        File src = source(dir, "Bean", "package test;\n"
+                + "import com.nec.congenio.annotation.*;\n"
+                + "@ConfigBean\n"
+                + "public class Bean {\n"
+                + "    int num;\n"
+                + "    @ConfigField(name = \"address\", required = true)\n"
+                + "    String url;\n"
+                + "    private boolean flag;\n"
+                + "    @ConfigIgnore\n"
+                + "    String memo;\n"
+                + "    Item item;\n"
+                + "    public boolean isFlag() { return flag; }\n"
+                + "    public void setFlag(boolean flag) { this.flag = flag; }\n"
+                + "    public int getNum() { return num; }\n"
+                + "    public String getUrl() { return url; }\n"
+                + "    public String getMemo() { return memo; }\n"
+                + "    public Item getItem() { return item; }\n"
+                + "    @ConfigBean\n"
+                + "    public static class Item {\n"
+                + "        long id;\n"
+                + "        public long getId() { return id; }\n"
+                + "    }\n"
+                + "}\n");
+        DiagnosticCollector<JavaFileObject> diag = compile(dir, src);
+        assertEquals(diag.getDiagnostics().toString(), 0, errors(diag));
+        assertTrue(new File(dir, "test/BeanConfigBinder.class").exists());
+        assertTrue(new File(dir, "test/Bean_ItemConfigBinder.class").exists());
+
+        URLClassLoader loader = new URLClassLoader(new URL[] {dir.toURI().toURL()},
+                getClass().getClassLoader());
+        Class<?> cls = loader.loadClass("test.Bean");
+        ConfigValue value = Values.builder("test")
+                .add("num", 10)
+                .add("address", "http://test.org/")
+                .add("flag", true)
+                .add("memo", "ignored")
+                .add("item", Values.builder("item").add("id", 7L))
+                .build();
+        Object bean = value.toObject(cls);
+        assertEquals(10, cls.getMethod("getNum").invoke(bean));
+        assertEquals("http://test.org/", cls.getMethod("getUrl").invoke(bean));
+        assertEquals(true, cls.getMethod("isFlag").invoke(bean));
+        assertEquals(null, cls.getMethod("getMemo").invoke(bean));
+        Object item = cls.getMethod("getItem").invoke(bean);
+        assertNotNull(item);
+        assertEquals(7L, item.getClass().getMethod("getId").invoke(item));
+
+        ConfigValue out = Values.create(bean);
+        assertEquals(10, out.getInt("num"));
+        assertEquals("http://test.org/", out.getValue("address").stringValue());
+        assertTrue(out.getBoolean("flag"));
+        assertFalse(out.hasValue("memo"));
+        assertEquals(7L, out.getValue("item").getLong("id"));
+
+        try {
+            Values.builder("test").add("num", 1).build().toObject(cls);
+            fail("required value missing");
+        } catch (ConfigException ex) {
+            assertTrue(ex.getMessage().contains("address"));
+        }
+    }
+
+    @Test
+    public void testSetterException() throws Exception {
+        File dir = tempDir();
+        File src = source(dir, "Checked", "package test;\n"
+                + "import com.nec.congenio.annotation.*;\n"
+                + "@ConfigBean\n"
+                + "public class Checked {\n"
+                + "    private int num;\n"
+                + "    public int getNum() { return num; }\n"
+                + "    public void setNum(int num) {\n"
+                + "        if (num < 0) {\n"
+                + "            throw new com.nec.congenio.ConfigException(\"negative\");\n"
+                + "        }\n"
+                + "        this.num = num;\n"
+                + "    }\n"
+                + "}\n");
+        DiagnosticCollector<JavaFileObject> diag = compile(dir, src);
+        assertEquals(diag.getDiagnostics().toString(), 0, errors(diag));
+        URLClassLoader loader = new URLClassLoader(new URL[] {dir.toURI().toURL()},
+                getClass().getClassLoader());
+        Class<?> cls = loader.loadClass("test.Checked");
+        Object bean = Values.builder("test").add("num", 2).build().toObject(cls);
+        assertEquals(2, cls.getMethod("getNum").invoke(bean));
+        try {
+            Values.builder("test").add("num", -1).build().toObject(cls);
+            fail("setter exception not wrapped");
+        } catch (ConfigException ex) {
+            assertTrue(ex.getCause() instanceof InvocationTargetException);
+            assertTrue(ex.getCause().getCause() instanceof ConfigException);
+        }
+    }
+
+    @Test
+    public void testBadMapping() throws Exception {
+        File dir = tempDir();
+        File src = source(dir, "Bad", "package test;\n"
+                + "import com.nec.congenio.annotation.*;\n"
+                + "@ConfigBean\n"
+                + "public class Bad {\n"
+                + "    private int hidden;\n"
+                + "    java.util.List<String> list;\n"
+                + "}\n");
+        DiagnosticCollector<JavaFileObject> diag = compile(dir, src);
+        for (Diagnostic<? extends JavaFileObject> d : diag.getDiagnostics()) {
+            if (d.getKind() == Diagnostic.Kind.ERROR) {
+                String msg = d.getMessage(Locale.ROOT);
+                assertTrue(msg, msg.contains("hidden") || msg.contains("generic"));
+            }
+        }
+        assertEquals(2, errors(diag));
+        assertFalse(new File(dir, "test/BadConfigBinder.class").exists());
+    }
+
+    private static int errors(DiagnosticCollector<JavaFileObject> diag) {
+        int count = 0;
+        for (Diagnostic<? extends JavaFileObject> d : diag.getDiagnostics()) {
+            if (d.getKind() == Diagnostic.Kind.ERROR) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static File tempDir() throws IOException {
+        File dir = File.createTempFile("congen", "");
+        dir.delete();
+        dir.mkdirs();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    private static File source(File dir, String name, String content) throws IOException {
+        File pkg = new File(dir, "test");
+        pkg.mkdirs();
+        File file = new File(pkg, name + ".java");
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static DiagnosticCollector<JavaFileObject> compile(File dir, File src)
+            throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diag = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager files = compiler.getStandardFileManager(diag, null, null);
+        try {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, files, diag,
+                    Arrays.asList("-d", dir.getPath(), "-s", dir.getPath(),
+                            "-classpath", System.getProperty("java.class.path"),
+                            "-implicit:class"),
+                    null, files.getJavaFileObjects(src));
+            task.setProcessors(Arrays.asList(new ConfigBeanProcessor()));
+            task.call();
+        } finally {
+            files.close();
+        }
+        return diag;
+    }
+}
@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.impl.XmlConfigDescription;
+import com.nec.congenio.xml.Compression;
+import com.nec.congenio.xml.Xml;
+
+public class ArchiveValuesTest {
+
+    private static ConfigDescription description() {
+        return description("0..99");
+    }
+
+    private static ConfigDescription description(String range) {
+        return new XmlConfigDescription(Xml.parse("<t>"
+                + "<foreach name='id' range='" + range + "'/>"
+                + "<name>node-&amp;-あ</name>"
+                + "</t>").getDocumentElement());
+    }
+
+    private static List<String> expected(OutputFormat format) throws IOException {
+        return expected(format, description());
+    }
+
+    private static List<String> expected(OutputFormat format,
+            ConfigDescription cdl) throws IOException {
+        List<String> values = new ArrayList<String>();
+        for (ConfigValue v : cdl.evaluate()) {
+            StringWriter writer = new StringWriter();
+            format.write(v, writer);
+            values.add(writer.toString());
+        }
+        return values;
+    }
+
+    private static File tempDir() throws IOException {
+        File dir = File.createTempFile("archive", "");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    private static void assertArchive(OutputFormat format,
+            ArchiveFormat archive, String filter) throws IOException {
+        assertArchive(format, archive, filter, Compression.NONE, description());
+    }
+
+    private static void assertArchive(OutputFormat format,
+            ArchiveFormat archive, String filter, Compression compression,
+            ConfigDescription cdl) throws IOException {
+        List<String> expected = expected(format, cdl);
+        File dir = tempDir();
+        try {
+            ArchiveValues handler = new ArchiveValues(dir, format, archive,
+                    compression);
+            new ValueExecBuilder(cdl)
+            .filterIndex(filter)
+            .handler(handler).build().run();
+            ArchiveIndex index = ArchiveIndex.open(handler.getFile());
+            try {
+                for (int i = 0; i < index.size(); i++) {
+                    int idx = index.indexAt(i);
+                    assertEquals(expected.get(idx), index.readText(idx));
+                }
+                if (archive == ArchiveFormat.ZIP) {
+                    assertZip(handler.getFile(), index, expected);
+                }
+            } finally {
+                index.close();
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void assertZip(File file, ArchiveIndex index,
+            List<String> expected) throws IOException {
+        ZipFile zip = new ZipFile(file);
+        try {
+            assertEquals(index.size(), zip.size());
+            ZipEntry entry = zip.getEntry("00000007.jsonl");
+            InputStream in = zip.getInputStream(entry);
+            byte[] data = new byte[(int) entry.getSize()];
+            int pos = 0;
+            while (pos < data.length) {
+                pos += in.read(data, pos, data.length - pos);
+            }
+            in.close();
+            assertEquals(expected.get(7), new String(data, "UTF-8"));
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void testStream() throws IOException {
+        assertArchive(OutputFormat.JSONL, ArchiveFormat.STREAM, "");
+        assertArchive(OutputFormat.XML, ArchiveFormat.STREAM, "");
+    }
+
+    @Test
+    public void testTar() throws IOException {
+        assertArchive(OutputFormat.JSON, ArchiveFormat.TAR, "");
+    }
+
+    @Test
+    public void testZip() throws IOException {
+        assertArchive(OutputFormat.JSONL, ArchiveFormat.ZIP, "");
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        /**
+         * the output (about 300KB) has more than one block.
+         */
+        ConfigDescription cdl = description("0..9999");
+        assertArchive(OutputFormat.JSONL, ArchiveFormat.STREAM, "",
+                Compression.GZIP, cdl);
+        assertArchive(OutputFormat.JSON, ArchiveFormat.TAR, "0..99",
+                Compression.GZIP, cdl);
+    }
+
+    @Test
+    public void testGzipFile() throws IOException {
+        File dir = tempDir();
+        try {
+            ArchiveValues handler = new ArchiveValues(dir,
+                    OutputFormat.JSONL, ArchiveFormat.STREAM, Compression.GZIP);
+            new ValueExecBuilder(description()).handler(handler).build().run();
+            assertEquals("out.jsonl.gz", handler.getFile().getName());
+            StringBuilder sb = new StringBuilder();
+            for (String value : expected(OutputFormat.JSONL)) {
+                sb.append(value);
+            }
+            InputStream in = new GZIPInputStream(new FileInputStream(handler.getFile()));
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buff = new byte[4096];
+                int len;
+                while ((len = in.read(buff)) > 0) {
+                    bytes.write(buff, 0, len);
+                }
+                assertEquals(sb.toString(), bytes.toString("UTF-8"));
+            } finally {
+                in.close();
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testZipCompression() {
+        new ArchiveValues(new File("."), OutputFormat.JSONL,
+                ArchiveFormat.ZIP, Compression.GZIP);
+    }
+
+    @Test
+    public void testFilteredIndex() throws IOException {
+        File dir = tempDir();
+        try {
+            ArchiveValues handler = new ArchiveValues(dir,
+                    OutputFormat.JSONL, ArchiveFormat.STREAM);
+            new ValueExecBuilder(description())
+            .filterIndex("3,5,8..10")
+            .handler(handler).build().run();
+            ArchiveIndex index = ArchiveIndex.open(handler.getFile());
+            try {
+                assertEquals(5, index.size());
+                assertEquals(9, index.indexAt(3));
+                assertNull(index.read(4));
+                assertEquals(expected(OutputFormat.JSONL).get(8), index.readText(8));
+            } finally {
+                index.close();
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+}
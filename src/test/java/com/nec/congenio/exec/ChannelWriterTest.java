@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+
+import org.junit.Test;
+
+public class ChannelWriterTest {
+
+    private static String text() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("aéあ😀").append(i);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[4096];
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                out.write(buf, 0, len);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        String text = text();
+        File file = File.createTempFile("channel", ".txt");
+        try {
+            for (boolean sync : new boolean[] {false, true}) {
+                ChannelWriter writer = ChannelWriter.open(file, sync);
+                try {
+                    /**
+                     * writes in pieces that split surrogate pairs.
+                     */
+                    for (int i = 0; i < text.length(); i += 7) {
+                        writer.write(text, i, Math.min(7, text.length() - i));
+                    }
+                } finally {
+                    writer.close();
+                }
+                assertArrayEquals(text.getBytes("UTF-8"), readFile(file));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testFlush() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChannelWriter writer = new ChannelWriter(
+                Channels.newChannel(out), false, false);
+        writer.write("abc");
+        assertEquals(0, out.size());
+        writer.flush();
+        assertEquals("abc", out.toString("UTF-8"));
+        writer.write('あ');
+        writer.close();
+        assertEquals("abcあ", out.toString("UTF-8"));
+        writer.close();
+    }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.impl.XmlConfigDescription;
+import com.nec.congenio.xml.Xml;
+
+public class DedupValuesTest {
+
+    private static ConfigDescription description() {
+        return new XmlConfigDescription(Xml.parse("<t>"
+                + "<foreach name='mode' sep=','>x,y,z</foreach>"
+                + "<foreach name='id' range='1..4'/>"
+                + "<conf><m ref='mode'/><k>1</k></conf>"
+                + "</t>").getDocumentElement());
+    }
+
+    static class Collect implements ValueHandler {
+        private final List<Integer> indexes = new ArrayList<Integer>();
+
+        @Override
+        public void init(ConfigDescription cdl) {
+        }
+
+        @Override
+        public void value(int idx, ConfigValue value) {
+            indexes.add(idx);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testDedup() throws IOException {
+        File mapping = File.createTempFile("dedup", ".txt");
+        try {
+            Collect handler = new Collect();
+            new ValueExecBuilder(description()).path("conf")
+            .handler(handler).dedup(mapping).build().run();
+            List<Integer> expected = new ArrayList<Integer>();
+            expected.add(0);
+            expected.add(4);
+            expected.add(8);
+            assertEquals(expected, handler.indexes);
+
+            BufferedReader reader = new BufferedReader(new FileReader(mapping));
+            try {
+                for (int i = 0; i < 12; i++) {
+                    assertEquals(i + "\t" + (i / 4 * 4), reader.readLine());
+                }
+                assertEquals(null, reader.readLine());
+            } finally {
+                reader.close();
+            }
+        } finally {
+            mapping.delete();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.impl.XmlConfigDescription;
+import com.nec.congenio.xml.Xml;
+import com.nec.congenio.xml.XmlWriter;
+
+public class DeltaValuesTest {
+
+    private static ConfigDescription description() {
+        return new XmlConfigDescription(Xml.parse("<t>"
+                + "<foreach name='id' range='0..49'/>"
+                + "<name exp=\"concat('-')\"><a ref='id'/><b>x</b></name>"
+                + "<fixed><p>1</p><q type='number'>2</q><r>&amp;あ</r></fixed>"
+                + "</t>").getDocumentElement());
+    }
+
+    private static String text(Element elem) throws IOException {
+        StringWriter writer = new StringWriter();
+        new XmlWriter(writer, false).write(elem);
+        return writer.toString();
+    }
+
+    private static File tempDir() throws IOException {
+        File dir = File.createTempFile("delta", "");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    private static void assertDelta(int baseIndex, String filter) throws IOException {
+        List<ConfigValue> expected = new ArrayList<ConfigValue>();
+        for (ConfigValue v : description().evaluate()) {
+            expected.add(v);
+        }
+        File dir = tempDir();
+        try {
+            new ValueExecBuilder(description())
+            .filterIndex(filter)
+            .delta(dir, baseIndex).build().run();
+            DeltaIndex index = DeltaIndex.open(dir);
+            try {
+                for (int i = 0; i < index.size(); i++) {
+                    int idx = index.indexAt(i);
+                    ConfigValue value = index.read(idx);
+                    assertEquals(expected.get(idx).toJson(), value.toJson());
+                    assertEquals(expected.get(idx).get("name"), value.get("name"));
+                }
+            } finally {
+                index.close();
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testFirst() throws IOException {
+        assertDelta(-1, "");
+    }
+
+    @Test
+    public void testChosenBase() throws IOException {
+        assertDelta(10, "");
+        assertDelta(10, "3,5,10..12");
+    }
+
+    @Test
+    public void testSize() throws IOException {
+        File dir = tempDir();
+        try {
+            DeltaValues handler = new DeltaValues(dir);
+            new ValueExecBuilder(description()).handler(handler).build().run();
+            File base = new File(dir, DeltaValues.BASE_FILE);
+            assertTrue(handler.getFile().length() < base.length() * 50);
+            DeltaIndex index = DeltaIndex.open(dir);
+            try {
+                assertEquals(50, index.size());
+                assertEquals("0-x", index.getBase().get("name"));
+                assertNull(index.read(50));
+            } finally {
+                index.close();
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testPatch() throws IOException {
+        String[][] pairs = {
+            {"<a><b>1</b><c><d>2</d></c></a>", "<a><b>1</b><c><d>3</d></c></a>"},
+            {"<a><b>1</b><c><d>2</d></c></a>", "<a><b>1</b><c><d>2</d><e/></c></a>"},
+            {"<a><b>1</b></a>", "<a><b type='number'>1</b></a>"},
+            {"<a><b>1</b></a>", "<x><b>1</b></x>"},
+            {"<a><b>1</b><c>2</c></a>", "<a><b>5</b><c>6</c></a>"},
+        };
+        for (String[] pair : pairs) {
+            Element base = Xml.parse(pair[0]).getDocumentElement();
+            Element doc = Xml.parse(pair[1]).getDocumentElement();
+            Element patch = DeltaPatch.diff(base, doc);
+            assertEquals(text(doc), text(DeltaPatch.apply(base, patch)));
+            assertEquals(pair[0], text(base));
+        }
+        Element base = Xml.parse(pairs[0][0]).getDocumentElement();
+        Element doc = Xml.parse(pairs[0][1]).getDocumentElement();
+        assertEquals("<delta><set path=\"1/0\"><d>3</d></set></delta>",
+                text(DeltaPatch.diff(base, doc)));
+        assertEquals("<delta/>", text(DeltaPatch.diff(base, base)));
+    }
+}
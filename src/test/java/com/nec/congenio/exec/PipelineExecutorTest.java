@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.impl.XmlConfigDescription;
+import com.nec.congenio.xml.Xml;
+
+public class PipelineExecutorTest {
+
+    private static ConfigDescription description() {
+        return new XmlConfigDescription(Xml.parse("<t>"
+                + "<foreach name='id' range='0..199'/>"
+                + "<a><b>x</b></a>"
+                + "<name exp=\"concat('-')\"><a ref='a/b'/><b ref='id'/></name>"
+                + "</t>").getDocumentElement());
+    }
+
+    static class Collect implements ValueHandler {
+        private final List<String> values = new ArrayList<String>();
+        private final List<Integer> indexes = new ArrayList<Integer>();
+        private Thread thread;
+        private boolean closed;
+        private final int failAt;
+
+        Collect(int failAt) {
+            this.failAt = failAt;
+        }
+
+        @Override
+        public void init(ConfigDescription cdl) {
+        }
+
+        @Override
+        public void value(int idx, ConfigValue value) {
+            if (thread == null) {
+                thread = Thread.currentThread();
+            }
+            assertTrue(thread == Thread.currentThread());
+            if (idx == failAt) {
+                throw new ConfigException("fail at " + idx);
+            }
+            indexes.add(idx);
+            values.add(value.toJson().toString());
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void testSameAsSerial() {
+        Collect expected = new Collect(-1);
+        new ValueExecBuilder(description()).filterIndex("3..150")
+        .path("name").handler(expected).build().run();
+        assertEquals(148, expected.values.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Collect actual = new Collect(-1);
+            new ValueExecBuilder(description()).filterIndex("3..150")
+            .path("name").handler(actual)
+            .pipeline(4, executor).build().run();
+            assertEquals(expected.indexes, actual.indexes);
+            assertEquals(expected.values, actual.values);
+            assertTrue(actual.closed);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testHandlerFailure() {
+        Collect handler = new Collect(20);
+        try {
+            new ValueExecBuilder(description()).handler(handler)
+            .pipeline(2).build().run();
+            fail("failure not thrown");
+        } catch (ConfigException ex) {
+            assertTrue(ex.getCause().getMessage().contains("fail at 20"));
+        }
+        assertEquals(20, handler.values.size());
+        assertTrue(handler.closed);
+    }
+}
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.impl.XmlConfigDescription;
+import com.nec.congenio.xml.Compression;
+import com.nec.congenio.xml.Xml;
+
+public class SaveValuesTest {
+
+    private static ConfigDescription description(String range, String suffix) {
+        return new XmlConfigDescription(Xml.parse("<t>"
+                + "<foreach name='id' range='" + range + "'/>"
+                + "<name exp=\"concat('-')\"><a ref='id'/><b>" + suffix + "</b></name>"
+                + "<fixed>x</fixed>"
+                + "</t>").getDocumentElement());
+    }
+
+    private static Manifest save(File dir, ConfigDescription cdl) {
+        SaveValues handler = new SaveValues(dir, OutputFormat.JSON, true);
+        new ValueExecBuilder(cdl).handler(handler).build().run();
+        return handler.getManifest();
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testIncremental() throws IOException {
+        File dir = File.createTempFile("save", "");
+        dir.delete();
+        try {
+            Manifest first = save(dir, description("1..20", "a"));
+            assertEquals(21, first.getAdded());
+            assertTrue(new File(dir, Manifest.FILE_NAME).exists());
+            File file = new File(dir, "out/00000005.json");
+            file.setLastModified(1000L);
+
+            Manifest same = save(dir, description("1..20", "a"));
+            assertEquals(21, same.getUnchanged());
+            assertEquals(0, same.getAdded() + same.getChanged() + same.getRemoved());
+            assertEquals(1000L, file.lastModified());
+
+            Manifest shrunk = save(dir, description("1..15", "a"));
+            assertEquals(1, shrunk.getChanged());
+            assertEquals(15, shrunk.getUnchanged());
+            assertEquals(5, shrunk.getRemoved());
+            assertFalse(new File(dir, "out/00000015.json").exists());
+            assertEquals(1000L, file.lastModified());
+
+            new File(dir, "out/00000003.json").delete();
+            Manifest restored = save(dir, description("1..15", "a"));
+            assertEquals(1, restored.getChanged());
+            assertTrue(new File(dir, "out/00000003.json").exists());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testPartial() throws IOException {
+        File dir = File.createTempFile("save", "");
+        dir.delete();
+        try {
+            save(dir, description("1..5", "a"));
+            for (boolean pipeline : new boolean[] {false, true}) {
+                SaveValues failing = new SaveValues(dir, OutputFormat.JSON, true) {
+                    @Override
+                    public void value(int idx, ConfigValue value) throws Exception {
+                        if (idx == 2) {
+                            throw new IOException("failure for test");
+                        }
+                        super.value(idx, value);
+                    }
+                };
+                ValueExecBuilder builder = new ValueExecBuilder(description("1..5", "b"));
+                if (pipeline) {
+                    builder.pipeline(2);
+                }
+                try {
+                    builder.handler(failing).build().run();
+                    fail();
+                } catch (ConfigException ex) {
+                    assertEquals(0, failing.getManifest().getRemoved());
+                }
+            }
+            for (int i = 0; i < 5; i++) {
+                assertTrue(new File(dir, "out/0000000" + i + ".json").exists());
+            }
+
+            SaveValues filtered = new SaveValues(dir, OutputFormat.JSON, true);
+            new ValueExecBuilder(description("1..5", "b"))
+            .filterIndex("4").handler(filtered).build().run();
+            assertEquals(1, filtered.getManifest().getChanged());
+            assertEquals(0, filtered.getManifest().getRemoved());
+
+            /**
+             * the manifest has the files of the partial runs
+             * (and the snapshot).
+             */
+            Manifest rest = save(dir, description("1..5", "b"));
+            assertEquals(2, rest.getChanged());
+            assertEquals(4, rest.getUnchanged());
+            assertEquals(0, rest.getRemoved());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testCompressed() throws IOException {
+        File dir = File.createTempFile("save", "");
+        dir.delete();
+        try {
+            SaveValues handler = new SaveValues(dir, OutputFormat.JSON,
+                    true, Compression.GZIP);
+            new ValueExecBuilder(description("1..20", "a"))
+            .handler(handler).build().run();
+            assertEquals(21, handler.getManifest().getAdded());
+            File file = new File(dir, "out/00000005.json.gz");
+            assertTrue(file.exists());
+            assertFalse(new File(dir, "out/00000005.json").exists());
+            ConfigValue value = ConfigDescription.create(file).resolve();
+            assertEquals("6-a", value.get("name"));
+
+            Manifest same = save(dir, description("1..20", "a"));
+            assertEquals(20, same.getAdded());
+            assertEquals(20, same.getRemoved());
+            assertEquals(1, same.getUnchanged());
+            assertFalse(file.exists());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testCompressionFailure() throws IOException {
+        File dir = File.createTempFile("save", "");
+        dir.delete();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SaveValues first = new SaveValues(dir, OutputFormat.JSON,
+                    true, Compression.GZIP);
+            new ValueExecBuilder(description("1..10", "a"))
+            .handler(first).build().run();
+
+            /**
+             * writing the 4th file fails, and the tasks queued
+             * after it are skipped.
+             */
+            File blocked = new File(dir, "out/00000003.json.gz");
+            blocked.delete();
+            blocked.mkdir();
+            new File(blocked, "x").createNewFile();
+            SaveValues failing = new SaveValues(dir, OutputFormat.JSON,
+                    true, Compression.GZIP) {
+                @Override
+                Compressor createCompressor(Compression comp) {
+                    return new Compressor(comp, executor, 20, false);
+                }
+            };
+            try {
+                new ValueExecBuilder(description("1..10", "b"))
+                .handler(failing).build().run();
+                fail();
+            } catch (ConfigException ex) {
+                assertEquals(0, failing.getManifest().getRemoved());
+            }
+            Scanner manifest = new Scanner(new File(dir, Manifest.FILE_NAME), "UTF-8");
+            try {
+                String entries = manifest.useDelimiter("\\A").next();
+                assertFalse(entries.contains("out/00000005.json.gz"));
+                assertFalse(new File(dir, "out/00000005.json.gz").exists());
+            } finally {
+                manifest.close();
+            }
+            delete(blocked);
+
+            SaveValues next = new SaveValues(dir, OutputFormat.JSON,
+                    true, Compression.GZIP);
+            new ValueExecBuilder(description("1..10", "b"))
+            .handler(next).build().run();
+            for (int i = 0; i < 10; i++) {
+                File file = new File(dir, "out/0000000" + i + ".json.gz");
+                ConfigValue value = ConfigDescription.create(file).resolve();
+                assertEquals((i + 1) + "-b", value.get("name"));
+            }
+        } finally {
+            executor.shutdown();
+            delete(dir);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigException;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.ValueForm;
+import com.nec.congenio.value.xml.CompactValue;
+import com.nec.congenio.value.xml.ShapedValue;
+import com.nec.congenio.xml.Xml;
+
+public class ParallelBindingTest {
+
+    private static ConfigDescription description() {
+        return new XmlConfigDescription(Xml.parse("<t>"
+                + "<foreach name='id' range='1..40'/>"
+                + "<foreach name='mode' sep=','>x,y</foreach>"
+                + "<base>node</base>"
+                + "<name exp=\"concat('-')\"><a ref='base'/><b ref='mode'/></name>"
+                + "</t>").getDocumentElement());
+    }
+
+    @Test
+    public void testSameAsEvaluate() {
+        ConfigDescription cdl = description();
+        List<Item> expected = new ArrayList<Item>();
+        for (ConfigValue v : cdl.evaluate()) {
+            expected.add(v.toObject(Item.class));
+        }
+        assertEquals(80, expected.size());
+        assertEquals("node-y", expected.get(1).getName());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertSameItems(expected, cdl.evaluate(Item.class, executor));
+        } finally {
+            executor.shutdown();
+        }
+        assertSameItems(expected, cdl.evaluate(Item.class));
+    }
+
+    /**
+     * A description that implements only the abstract methods
+     * (as a subclass outside this library does).
+     */
+    static class Delegate extends ConfigDescription {
+        private final ConfigDescription cdl;
+
+        Delegate(ConfigDescription cdl) {
+            this.cdl = cdl;
+        }
+
+        @Override
+        public ConfigValue resolve() {
+            return cdl.resolve();
+        }
+
+        @Override
+        public Iterable<ConfigValue> evaluate() {
+            return cdl.evaluate();
+        }
+
+        @Override
+        public String getName() {
+            return cdl.getName();
+        }
+
+        @Override
+        public void write(Writer writer, boolean indent) {
+            cdl.write(writer, indent);
+        }
+
+        @Override
+        public String get(String name) {
+            return cdl.get(name);
+        }
+    }
+
+    @Test
+    public void testDefaultBinding() {
+        List<Item> expected = new ArrayList<Item>();
+        for (ConfigValue v : description().evaluate()) {
+            expected.add(v.toObject(Item.class));
+        }
+        ConfigDescription cdl = new Delegate(description());
+        assertSameItems(expected, cdl.evaluate(Item.class));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertSameItems(expected, cdl.evaluate(Item.class, executor));
+        } finally {
+            executor.shutdown();
+        }
+        for (ConfigValue v : cdl.evaluate(ConfigValue.class)) {
+            assertTrue(v.getInt("id") > 0);
+        }
+    }
+
+    @Test
+    public void testDefaultValueForm() {
+        List<String> expected = new ArrayList<String>();
+        for (ConfigValue v : description().evaluate()) {
+            expected.add(v.toJson().toString());
+        }
+        ConfigDescription cdl = new Delegate(description());
+        List<String> compact = new ArrayList<String>();
+        for (ConfigValue v : cdl.evaluate(ValueForm.COMPACT)) {
+            assertTrue(v instanceof CompactValue);
+            compact.add(v.toJson().toString());
+        }
+        assertEquals(expected, compact);
+        List<String> shaped = new ArrayList<String>();
+        for (ConfigValue v : cdl.evaluate(ValueForm.SHAPED)) {
+            assertTrue(v instanceof ShapedValue);
+            shaped.add(v.toJson().toString());
+        }
+        assertEquals(expected, shaped);
+    }
+
+    @Test
+    public void testValueClass() {
+        int count = 0;
+        for (ConfigValue v : description().evaluate(ConfigValue.class)) {
+            assertTrue(v.getInt("id") > 0);
+            count++;
+        }
+        assertEquals(80, count);
+    }
+
+    @Test
+    public void testFailure() {
+        ConfigDescription cdl = new XmlConfigDescription(Xml.parse("<t>"
+                + "<foreach name='id' range='1..3'/>"
+                + "<name ref='missing'/>"
+                + "</t>").getDocumentElement());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (Item item : cdl.evaluate(Item.class, executor)) {
+                fail("unexpected item " + item.getId());
+            }
+        } catch (ConfigException ex) {
+            assertTrue(ex.getMessage().contains("missing"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertSameItems(List<Item> expected, Iterable<Item> items) {
+        int idx = 0;
+        for (Item item : items) {
+            Item exp = expected.get(idx++);
+            assertEquals(exp.getId(), item.getId());
+            assertEquals(exp.getMode(), item.getMode());
+            assertEquals(exp.getName(), item.getName());
+        }
+        assertEquals(expected.size(), idx);
+    }
+
+    public static final class Item {
+        private int id;
+        private String mode;
+        private String name;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getMode() {
+            return mode;
+        }
+
+        public void setMode(String mode) {
+            this.mode = mode;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
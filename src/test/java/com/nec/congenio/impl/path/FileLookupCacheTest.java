@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.impl.path;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.nec.congenio.test.TestDataUtil;
+
+public class FileLookupCacheTest {
+
+    @Test
+    public void testLookup() {
+        FileLookupCache cache = new FileLookupCache(0);
+        File dir = TestDataUtil.getFile("extendxml");
+        assertTrue(cache.isFile(new File(dir, "lib.xml")));
+        assertFalse(cache.isFile(new File(dir, "lib")));
+        assertFalse(cache.isFile(new File(dir, "repo")));
+        assertTrue(cache.isFile(new File(dir, "repo/sub/a.xml")));
+        assertFalse(cache.isFile(new File(dir, "nosuchdir/a.xml")));
+    }
+
+    @Test
+    public void testUpdate() throws IOException {
+        FileLookupCache cache = new FileLookupCache(0);
+        File file = File.createTempFile("congen", ".xml");
+        try {
+            assertTrue(cache.isFile(file));
+            assertTrue(file.delete());
+            assertFalse(cache.isFile(file));
+            assertTrue(file.createNewFile());
+            assertTrue(cache.isFile(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Creates a directory whose modification time is old
+     * enough for its listing to be trusted.
+     */
+    private static File oldDir() throws IOException {
+        File dir = File.createTempFile("congen", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        assertTrue(dir.setLastModified(System.currentTimeMillis() - 10000L));
+        return dir;
+    }
+
+    private static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testCachedWithinInterval() throws IOException {
+        FileLookupCache cache = new FileLookupCache(1000L);
+        File dir = oldDir();
+        try {
+            File added = new File(dir, "added.xml");
+            File removed = new File(dir, "removed.xml");
+            assertTrue(removed.createNewFile());
+            assertTrue(dir.setLastModified(System.currentTimeMillis() - 10000L));
+            assertFalse(cache.isFile(added));
+            assertTrue(cache.isFile(removed));
+            /**
+             * the directory is not checked again within
+             * the interval: both the miss and the hit are
+             * served from the cached listing.
+             */
+            assertTrue(added.createNewFile());
+            assertTrue(removed.delete());
+            assertFalse(cache.isFile(added));
+            assertTrue(cache.isFile(removed));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testRevalidatedAfterInterval() throws Exception {
+        FileLookupCache cache = new FileLookupCache(200L);
+        File dir = oldDir();
+        try {
+            File added = new File(dir, "added.xml");
+            assertFalse(cache.isFile(added));
+            assertTrue(added.createNewFile());
+            Thread.sleep(300L);
+            /**
+             * the modification time of the directory has
+             * changed, so it is scanned again.
+             */
+            assertTrue(cache.isFile(added));
+        } finally {
+            delete(dir);
+        }
+    }
+}
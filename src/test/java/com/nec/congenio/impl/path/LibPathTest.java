@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nec.congenio.impl.path;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import com.nec.congenio.test.TestDataUtil;
+
+public class LibPathTest {
+
+    @Test
+    public void testScopes() {
+        File dir = TestDataUtil.getFile("extendxml");
+        File sub = new File(dir, "repo");
+        LibPath root = new LibPath();
+        LibPath scope = root.libPathAt(dir);
+        assertSame(scope, root.libPathAt(dir));
+        /**
+         * a scope derived from another finder is not shared
+         * (its local paths are resolved in that finder).
+         */
+        LibPath nested = scope.libPathAt(sub);
+        assertSame(nested, scope.libPathAt(sub));
+        assertNotSame(nested, root.libPathAt(sub));
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.impl.path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.impl.ConfigResource;
+import com.nec.congenio.impl.ExtendXml;
+import com.nec.congenio.impl.XmlConfigDescription;
+import com.nec.congenio.test.TestDataUtil;
+import com.nec.congenio.xml.Xml;
+
+public class TemplateBundleTest {
+
+    @Test
+    public void testFindEntries() throws IOException {
+        File file = createBundle();
+        try {
+            TemplateBundle bundle = TemplateBundle.open(file.getAbsolutePath());
+            assertEquals("a.xml", bundle.find("a"));
+            assertEquals("sub/a.xml", bundle.find("sub/a"));
+            assertNull(bundle.find("c"));
+            Element elem = bundle.createElement("sub/a.xml");
+            assertEquals("3", Xml.getSingleElement("a", elem).getTextContent());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLibBundle() throws IOException {
+        File file = createBundle();
+        try {
+            Map<String, String> defs = new HashMap<String, String>();
+            defs.put("bundle", file.getAbsolutePath());
+            defs.put("sub", file.getAbsolutePath());
+            LibPath lib = LibPath.create(defs);
+            Element elem = Xml.parse("<t extends='lib:bundle:b'><b>5</b></t>")
+                    .getDocumentElement();
+            ConfigResource res = ConfigResource.create(
+                    SearchPath.create(new File("."), lib), new File("t.xml"));
+            ExtendXml.resolve(elem, res);
+            ConfigValue val = new XmlConfigDescription(elem).resolve();
+            assertEquals(1, val.getInt("a"));
+            assertEquals(5, val.getInt("b"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void writeFile(File file, String text) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String resolve(LibPath lib, String path, String name) {
+        Element elem = Xml.parse("<t extends='" + path + "'/>")
+                .getDocumentElement();
+        ConfigResource res = ConfigResource.create(
+                SearchPath.create(new File("."), lib), new File("t.xml"));
+        ExtendXml.resolve(elem, res);
+        return new XmlConfigDescription(elem).resolve().get(name);
+    }
+
+    @Test
+    public void testRelativeReference() throws IOException {
+        File dir = File.createTempFile("congen", "");
+        dir.delete();
+        File file = File.createTempFile("congen", TemplateBundle.SUFFIX);
+        try {
+            writeFile(new File(dir, "b.xml"), "<t><y>root</y></t>");
+            writeFile(new File(dir, "sub/a.xml"), "<t extends='b'><x>1</x></t>");
+            writeFile(new File(dir, "sub/b.xml"), "<t><y>sub</y></t>");
+            writeFile(new File(dir, "sub/c.xml"), "<t extends='../b'/>");
+            writeFile(new File(dir, "sub/deep/d.xml"), "<t extends='../a'/>");
+            OutputStream out = new FileOutputStream(file);
+            try {
+                TemplateBundle.write(dir, out);
+            } finally {
+                out.close();
+            }
+            Map<String, String> defs = new HashMap<String, String>();
+            defs.put("dir", dir.getAbsolutePath());
+            defs.put("bundle", file.getAbsolutePath());
+            LibPath lib = LibPath.create(defs);
+            for (String name : new String[] {"dir", "bundle"}) {
+                assertEquals("sub", resolve(lib, "lib:" + name + ":sub/a", "y"));
+                assertEquals("root", resolve(lib, "lib:" + name + ":sub/c", "y"));
+                assertEquals("sub", resolve(lib, "lib:" + name + ":sub/deep/d", "y"));
+                assertEquals("1", resolve(lib, "lib:" + name + ":sub/deep/d", "x"));
+            }
+        } finally {
+            file.delete();
+            for (String f : new String[] {"sub/deep/d.xml", "sub/deep", "sub/a.xml",
+                "sub/b.xml", "sub/c.xml", "sub", "b.xml", ""}) {
+                new File(dir, f).delete();
+            }
+        }
+    }
+
+    private File createBundle() throws IOException {
+        File file = File.createTempFile("congen", TemplateBundle.SUFFIX);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            TemplateBundle.write(TestDataUtil.getFile("extendxml/repo"), out);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.impl.path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.impl.ConfigResource;
+import com.nec.congenio.impl.ExtendXml;
+import com.nec.congenio.impl.XmlConfigDescription;
+import com.nec.congenio.xml.Xml;
+
+public class ZipArchiveTest {
+
+    @Test
+    public void testFindEntries() throws IOException {
+        File file = createZip();
+        try {
+            ZipArchive zip = ZipArchive.open(file.getAbsolutePath());
+            assertEquals("a.xml", zip.find("a"));
+            assertEquals("sub/b.json", zip.find("sub/b"));
+            assertNull(zip.find("sub"));
+            Element elem = zip.createElement("a.xml");
+            assertEquals("1", Xml.getSingleElement("a", elem).getTextContent());
+            elem = zip.createElement("sub/b.json");
+            assertEquals("2", Xml.getSingleElement("b", elem).getTextContent());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLibZip() throws IOException {
+        File file = createZip();
+        try {
+            Map<String, String> defs = new HashMap<String, String>();
+            defs.put("zip", file.getAbsolutePath());
+            LibPath lib = LibPath.create(defs);
+            Element elem = Xml.parse(
+                    "<t extends='lib:zip:a'><s extends='lib:zip:sub/b'/><c>5</c></t>")
+                    .getDocumentElement();
+            ConfigResource res = ConfigResource.create(
+                    SearchPath.create(new File("."), lib), new File("t.xml"));
+            ExtendXml.resolve(elem, res);
+            ConfigValue val = new XmlConfigDescription(elem).resolve();
+            assertEquals(1, val.getInt("a"));
+            assertEquals(2, val.getValue("s").getInt("b"));
+            assertEquals(5, val.getInt("c"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRelativeReference() throws IOException {
+        File file = createZip();
+        try {
+            Map<String, String> defs = new HashMap<String, String>();
+            defs.put("zip", file.getAbsolutePath());
+            LibPath lib = LibPath.create(defs);
+            Element elem = Xml.parse(
+                    "<t><s extends='lib:zip:sub/c'/><r extends='lib:zip:sub/e'/></t>")
+                    .getDocumentElement();
+            ConfigResource res = ConfigResource.create(
+                    SearchPath.create(new File("."), lib), new File("t.xml"));
+            ExtendXml.resolve(elem, res);
+            ConfigValue val = new XmlConfigDescription(elem).resolve();
+            assertEquals(2, val.getValue("s").getInt("b"));
+            assertEquals(1, val.getValue("r").getInt("a"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void putEntry(ZipOutputStream out, String name,
+            String text) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(text.getBytes("UTF-8"));
+        out.closeEntry();
+    }
+
+    private File createZip() throws IOException {
+        File file = File.createTempFile("congen", ZipArchive.SUFFIX);
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            out.putNextEntry(new ZipEntry("sub/"));
+            out.closeEntry();
+            byte[] data = "<t><a>1</a></t>".getBytes("UTF-8");
+            ZipEntry stored = new ZipEntry("a.xml");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(data.length);
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            stored.setCrc(crc.getValue());
+            out.putNextEntry(stored);
+            out.write(data);
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("sub/b.json"));
+            out.write("{\"b\": 2}".getBytes("UTF-8"));
+            out.closeEntry();
+            putEntry(out, "b.xml", "<t><b>0</b></t>");
+            putEntry(out, "sub/c.xml", "<t extends='b'/>");
+            putEntry(out, "sub/e.xml", "<t extends='../a'/>");
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
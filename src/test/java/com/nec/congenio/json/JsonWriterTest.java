@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.json;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import javax.json.JsonValue;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.value.xml.CompactValue;
+import com.nec.congenio.value.xml.XmlValue;
+import com.nec.congenio.xml.Xml;
+
+public class JsonWriterTest {
+    private static final String DOC = "<t a='x&quot;y'>"
+            + "<n type='number'>1.50</n>"
+            + "<b type='bool'>true</b>"
+            + "<s>tab\there\nline\\</s>"
+            + "<l><e>1</e><e>2</e><e>3</e></l>"
+            + "<empty type='object'/>"
+            + "<ea type='array'/>"
+            + "<nil/>"
+            + "<j type='object'>{\"k\": [1, {\"m\": \"v\"}]}</j>"
+            + "<property name='p.q'>pq</property>"
+            + "<o><i>10</i><j>20</j></o>"
+            + "</t>";
+
+    private static String write(ConfigValue value, boolean indent) throws IOException {
+        StringWriter writer = new StringWriter();
+        new JsonWriter(writer, indent).write(value).flush();
+        return writer.toString();
+    }
+
+    private static void assertSameOutput(ConfigValue value) throws IOException {
+        JsonValue json = value.toJson();
+        assertEquals(JsonValueUtil.toString(json), write(value, true));
+        assertEquals(json.toString(), write(value, false));
+    }
+
+    @Test
+    public void testSameAsJsonValue() throws IOException {
+        Element elem = Xml.parse(DOC).getDocumentElement();
+        assertSameOutput(XmlValue.create(elem));
+        assertSameOutput(CompactValue.create(elem));
+    }
+
+    @Test
+    public void testDuplicateKeys() throws IOException {
+        Element elem = Xml.parse("<t><a>1</a><b>2</b><a>3</a></t>")
+                .getDocumentElement();
+        assertSameOutput(XmlValue.create(elem));
+        assertSameOutput(CompactValue.create(elem));
+    }
+
+    @Test
+    public void testLargeValue() throws IOException {
+        StringBuilder sb = new StringBuilder("<t>");
+        for (int i = 0; i < 2000; i++) {
+            sb.append("<item><id>").append(i)
+            .append("</id><name>item-").append(i).append("</name></item>");
+        }
+        sb.append("</t>");
+        Element elem = Xml.parse(sb.toString()).getDocumentElement();
+        assertSameOutput(CompactValue.create(elem));
+    }
+
+    @Test
+    public void testStreamingApi() throws IOException {
+        StringWriter writer = new StringWriter();
+        new JsonWriter(writer, false)
+        .beginObject()
+        .name("a").value("x")
+        .name("b").beginArray().value("1").value(JsonValue.TRUE).endArray()
+        .name("c").beginObject().endObject()
+        .endObject().flush();
+        assertEquals("{\"a\":\"x\",\"b\":[\"1\",true],\"c\":{}}", writer.toString());
+    }
+
+    @Test
+    public void testEscape() throws IOException {
+        String str = "q\"b\\c\u0001\u001f\b\f\r/";
+        StringWriter writer = new StringWriter();
+        new JsonWriter(writer, false).value(str).flush();
+        assertEquals(JsonValueUtil.create(str).toString(), writer.toString());
+    }
+}
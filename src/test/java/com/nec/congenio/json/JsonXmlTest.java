@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+import javax.json.stream.JsonParsingException;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.value.xml.XmlValue;
+
+public class JsonXmlTest {
+
+    private static InputStream input(String text) throws UnsupportedEncodingException {
+        return new ByteArrayInputStream(text.getBytes("UTF-8"));
+    }
+
+    private static void assertSameElement(String text) throws UnsupportedEncodingException {
+        Element expected = JsonXml.toXml(JsonValueUtil.parseObject(input(text)));
+        Element actual = JsonXml.parseXml(input(text));
+        assertEquals(expected.getTagName(), actual.getTagName());
+        assertEquals(JsonXml.toJson(expected), JsonXml.toJson(actual));
+        assertEquals(XmlValue.create(expected).toString(),
+                XmlValue.create(actual).toString());
+    }
+
+    @Test
+    public void testSameAsJsonObject() throws UnsupportedEncodingException {
+        assertSameElement("{\"a\": 1, \"b\": \"text\", \"c\": true, \"d\": false,"
+                + " \"e\": [1, 2.50, 1e3, {\"x\": [\"y\"]}],"
+                + " \"f\": {}, \"g\": [], \"url-name\": \"u\"}");
+    }
+
+    @Test
+    public void testDuplicateKeys() throws UnsupportedEncodingException {
+        assertSameElement("{\"a\": 1, \"b\": 2, \"a\": {\"c\": 3}}");
+        ConfigValue value = XmlValue.create(
+                JsonXml.parseXml(input("{\"a\": 1, \"b\": 2, \"a\": 3}")));
+        assertEquals(3, value.getInt("a"));
+        assertEquals(2, value.toValueList().size());
+    }
+
+    @Test
+    public void testNull() throws UnsupportedEncodingException {
+        ConfigValue value = XmlValue.create(
+                JsonXml.parseXml(input("{\"a\": null, \"b\": [null]}")));
+        assertEquals("", value.get("a"));
+        assertEquals(1, value.getValue("b").toValueList().size());
+    }
+
+    @Test
+    public void testNotObject() throws UnsupportedEncodingException {
+        try {
+            JsonXml.parseXml(input("[1, 2]"));
+            fail("array accepted");
+        } catch (JsonParsingException ex) {
+            return;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nec.congenio.value;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+import com.nec.congenio.Values;
+
+public class ClassBinderTest {
+    private static final String BEAN = Bean.class.getName();
+
+    @Test
+    public void testClassUnloaded() throws Exception {
+        WeakReference<ClassLoader> loader = bindIsolated();
+        for (int i = 0; i < 100 && loader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("class loader pinned by the binder cache", loader.get());
+    }
+
+    /**
+     * Binds a value to the bean class defined by a class loader
+     * that is not referred to after this call.
+     */
+    private static WeakReference<ClassLoader> bindIsolated() throws Exception {
+        ClassLoader loader = new IsolatedLoader();
+        Class<?> cls = loader.loadClass(BEAN);
+        assertNotSame(Bean.class, cls);
+        Object bean = Values.builder("test").add("num", 3).build().toObject(cls);
+        assertEquals(3, cls.getMethod("getNum").invoke(bean));
+        assertEquals(3, Values.create(bean).getInt("num"));
+        return new WeakReference<ClassLoader>(loader);
+    }
+
+    /**
+     * Defines its own copy of the bean class.
+     */
+    static final class IsolatedLoader extends ClassLoader {
+        IsolatedLoader() {
+            super(ClassBinderTest.class.getClassLoader());
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve)
+                throws ClassNotFoundException {
+            if (!BEAN.equals(name)) {
+                return super.loadClass(name, resolve);
+            }
+            Class<?> cls = findLoadedClass(name);
+            if (cls == null) {
+                byte[] code = read(name.replace('.', '/') + ".class");
+                cls = defineClass(name, code, 0, code.length);
+            }
+            return cls;
+        }
+
+        private byte[] read(String resource) throws ClassNotFoundException {
+            InputStream in = getParent().getResourceAsStream(resource);
+            if (in == null) {
+                throw new ClassNotFoundException(resource);
+            }
+            try {
+                try {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    byte[] buf = new byte[4096];
+                    int len;
+                    while ((len = in.read(buf)) > 0) {
+                        bytes.write(buf, 0, len);
+                    }
+                    return bytes.toByteArray();
+                } finally {
+                    in.close();
+                }
+            } catch (IOException ex) {
+                throw new ClassNotFoundException(resource, ex);
+            }
+        }
+    }
+
+    public static final class Bean {
+        private int num;
+
+        public int getNum() {
+            return num;
+        }
+
+        public void setNum(int num) {
+            this.num = num;
+        }
+    }
+}
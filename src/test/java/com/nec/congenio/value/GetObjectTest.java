@@ -17,12 +17,19 @@
 package com.nec.congenio.value;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.lang.reflect.InvocationTargetException;
 import java.util.Properties;
 
 import org.junit.Test;
 
+import com.nec.congenio.ConfigException;
 import com.nec.congenio.ConfigValue;
 import com.nec.congenio.Values;
 
@@ -99,6 +106,74 @@ public class GetObjectTest {
         assertEquals(prop, testProp.getParams());
     }
 
+    @Test
+    public void testBinderIsShared() {
+        ClassBinder binder = ClassBinder.of(TestEntity.class);
+        assertSame(binder, ClassBinder.of(TestEntity.class));
+        assertEquals(4, binder.getSetters().size());
+        assertEquals(4, binder.getGetters().size());
+        assertNull(binder.getValueConstructor());
+        assertNotNull(ClassBinder.of(int.class).getPrimitive());
+    }
+
+    @Test
+    public void testObjectRoundTrip() {
+        TestEntity entity = entity(100).toObject(TestEntity.class);
+        ConfigValue value = Values.create(entity);
+        TestEntity copy = value.toObject(TestEntity.class);
+        assertEquals(entity.getNum(), copy.getNum());
+        assertEquals(entity.getId(), copy.getId());
+        assertEquals(entity.getValue(), copy.getValue(), 0.0001);
+        assertEquals(entity.getUrl(), copy.getUrl());
+    }
+
+    @Test
+    public void testGeneratedAccessor() {
+        BeanAccessor accessor = ClassBinder.of(TestEntity.class).getAccessor();
+        assertNotNull(accessor);
+        assertNotSame(TestEntity.class.getClassLoader(),
+                accessor.getClass().getClassLoader());
+        assertNull(ClassBinder.of(HiddenEntity.class).getAccessor());
+        ConfigValue value = Values.builder("test")
+                .add("name", "n1")
+                .add("flag", true)
+                .build();
+        HiddenEntity hidden = value.toObject(HiddenEntity.class);
+        assertEquals("n1", hidden.getName());
+        TestFluent fluent = value.toObject(TestFluent.class);
+        assertEquals("n1", fluent.getName());
+        assertTrue(fluent.isFlag());
+    }
+
+    @Test
+    public void testSetterException() {
+        ConfigValue value = Values.builder("test")
+                .add("name", "")
+                .build();
+        try {
+            value.toObject(TestFluent.class);
+            fail("setter exception not wrapped");
+        } catch (ConfigException ex) {
+            assertTrue(ex.getCause() instanceof InvocationTargetException);
+            assertTrue(ex.getCause().getCause() instanceof IllegalArgumentException);
+        }
+        /**
+         * a ConfigException thrown by a setter is wrapped
+         * (as a failure of the setter) in both bindings.
+         */
+        try {
+            Values.builder("test").add("num", -1).build()
+                .toObject(TestChecked.class);
+            fail("setter exception not wrapped");
+        } catch (ConfigException ex) {
+            assertTrue(ex.getCause() instanceof InvocationTargetException);
+            assertTrue(ex.getCause().getCause() instanceof ConfigException);
+        }
+        TestChecked checked = Values.builder("test").add("num", 3).build()
+                .toObject(TestChecked.class);
+        assertEquals(3, checked.getNum());
+    }
+
     ConfigValue entity(long id) {
         return Values.builder("test")
                 .add("num", 10)
@@ -189,6 +264,62 @@ public class GetObjectTest {
         }
     }
 
+    static final class HiddenEntity {
+        private String name;
+
+        public HiddenEntity() {
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    public static final class TestFluent {
+        private String name;
+        private boolean flag;
+
+        public String getName() {
+            return name;
+        }
+
+        public TestFluent setName(String name) {
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("empty name");
+            }
+            this.name = name;
+            return this;
+        }
+
+        public boolean isFlag() {
+            return flag;
+        }
+
+        public TestFluent setFlag(boolean flag) {
+            this.flag = flag;
+            return this;
+        }
+    }
+
+    public static final class TestChecked {
+        private int num;
+
+        public int getNum() {
+            return num;
+        }
+
+        public void setNum(int num) {
+            if (num < 0) {
+                throw new ConfigException("negative num");
+            }
+            this.num = num;
+        }
+    }
+
     public static final class TestProp {
         private Properties params;
         private String name;
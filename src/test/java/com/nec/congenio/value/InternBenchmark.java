@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.ValueForm;
+import com.nec.congenio.impl.XmlConfigDescription;
+import com.nec.congenio.xml.Xml;
+
+/**
+ * A memory benchmark of shared strings and primitive values:
+ * it evaluates a sweep of documents, keeps the resulting values
+ * (and a primitive value of each leaf) and reports the heap
+ * retained per document.
+ * <pre>
+ * java com.nec.congenio.value.InternBenchmark [documents [form]]
+ * </pre>
+ * The default is a million documents (1000 x 1000 sweep) of
+ * compact values (form: DOM, COMPACT or SHAPED).
+ * @author tatemura
+ *
+ */
+public final class InternBenchmark {
+
+    private InternBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int docs = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+        ValueForm form = (args.length > 1
+                ? ValueForm.valueOf(args[1]) : ValueForm.COMPACT);
+        int inner = 1000;
+        int outer = Math.max(1, docs / inner);
+        ConfigDescription cdl = new XmlConfigDescription(Xml.parse("<run>"
+                + "<foreach name='trial' range='1.." + outer + "'/>"
+                + "<foreach name='client' range='1.." + inner + "'/>"
+                + "<mode>steady</mode>"
+                + "<warmup>true</warmup>"
+                + "<db><engine>rocks</engine><threads type='number'>8</threads></db>"
+                + "</run>").getDocumentElement());
+        long before = usedMemory();
+        long start = System.currentTimeMillis();
+        List<Object> retained = new ArrayList<Object>();
+        for (ConfigValue v : cdl.evaluate(form)) {
+            retained.add(v);
+            retained.add(v.getValue("mode").stringValue());
+            retained.add(v.getValue("db").getValue("threads").numberValue());
+            retained.add(PrimitiveValue.valueOf(v.getValue("warmup").stringValue()));
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        long after = usedMemory();
+        int count = retained.size() / 4;
+        System.out.println("documents: " + count
+                + ", form: " + form);
+        System.out.println("retained: " + (after - before) / (1024 * 1024)
+                + " MB (" + (after - before) / Math.max(1, count) + " bytes/doc), "
+                + elapsed + " ms");
+    }
+
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
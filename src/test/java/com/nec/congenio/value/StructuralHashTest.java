@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.value;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import com.nec.congenio.Values;
+import com.nec.congenio.value.xml.CompactValue;
+import com.nec.congenio.value.xml.XmlValue;
+import com.nec.congenio.xml.Xml;
+
+public class StructuralHashTest {
+
+    private static Element parse(String xml) {
+        return Xml.parse(xml).getDocumentElement();
+    }
+
+    @Test
+    public void testRepresentation() {
+        Element elem = parse("<t a='1'><n type='number'>1.5</n>"
+                + "<l><e>x</e><e>y</e></l><s>テキスト</s></t>");
+        String hash = Values.structuralHash(XmlValue.create(elem));
+        assertEquals(40, hash.length());
+        assertEquals(hash, Values.structuralHash(CompactValue.create(elem)));
+        assertEquals(hash, Values.structuralHash(
+                XmlValue.create(parse("<t a='1'>\n  <n type='number'>1.5</n>"
+                + "<l> <e>x</e><e>y</e></l><s>テキスト</s></t>"))));
+    }
+
+    private static void assertDistinct(String xml1, String xml2) {
+        assertFalse(xml1 + " vs " + xml2,
+                StructuralHash.hex(XmlValue.create(parse(xml1))).equals(
+                        StructuralHash.hex(XmlValue.create(parse(xml2)))));
+    }
+
+    @Test
+    public void testCollision() {
+        assertDistinct("<t><a>1</a><b>2</b><a>3</a></t>", "<t><a>3</a><b>2</b></t>");
+        assertDistinct("<t x='1'/>", "<t><x>1</x></t>");
+        assertDistinct("<t><a>1</a></t>", "<u><a>1</a></u>");
+        assertDistinct("<t><a>1</a><a>1</a></t>", "<t><a>1</a></t>");
+        assertDistinct("<t x='1' y='2'/>", "<t x='12'/>");
+        assertDistinct("<t><a>12</a></t>", "<t><a>1</a><a>2</a></t>");
+    }
+
+    @Test
+    public void testContent() {
+        String hash = StructuralHash.hex(XmlValue.create(parse("<t><a>1</a><b>2</b></t>")));
+        assertFalse(hash.equals(StructuralHash.hex(
+                XmlValue.create(parse("<t><a>1</a><b>3</b></t>")))));
+        assertFalse(hash.equals(StructuralHash.hex(
+                XmlValue.create(parse("<t><b>2</b><a>1</a></t>")))));
+        assertFalse(hash.equals(StructuralHash.hex(
+                XmlValue.create(parse("<t><a type='number'>1</a><b>2</b></t>")))));
+    }
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.value.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.Type;
+import com.nec.congenio.ValueForm;
+import com.nec.congenio.Values;
+import com.nec.congenio.impl.XmlConfigDescription;
+import com.nec.congenio.xml.Xml;
+
+public class CompactValueTest {
+    private static final String DOC = "<t a='x'>"
+            + "<n type='number'>1.50</n>"
+            + "<b type='bool'>true</b>"
+            + "<s>text</s>"
+            + "<l><e>1</e><e>2</e><e>3</e></l>"
+            + "<property name='p.q'>pq</property>"
+            + "<o><i>10</i><j>20</j></o>"
+            + "</t>";
+
+    @Test
+    public void testSameAsXmlValue() {
+        Element elem = Xml.parse(DOC).getDocumentElement();
+        ConfigValue xml = XmlValue.create(elem);
+        ConfigValue compact = CompactValue.create(elem);
+        assertEquals(xml.getType(), compact.getType());
+        assertEquals(xml.get("a"), compact.get("a"));
+        assertEquals(xml.getDouble("n"), compact.getDouble("n"), 0);
+        assertEquals(Type.NUMBER, compact.getValue("n").getType());
+        assertTrue(compact.getBoolean("b"));
+        assertEquals("text", compact.get("s"));
+        assertEquals(Type.ARRAY, compact.getValue("l").getType());
+        assertEquals(3, compact.getValueList("l").size());
+        assertEquals(xml.toValueMap().keySet(), compact.toValueMap().keySet());
+        assertEquals("pq", compact.toValueMap().get("p.q").stringValue());
+        assertEquals(xml.toJson(), compact.toJson());
+        assertEquals(20, compact.getValue("o").getInt("j"));
+        assertFalse(compact.hasValue("z"));
+        assertNull(compact.findValue("z"));
+    }
+
+    @Test
+    public void testEvaluate() {
+        ConfigDescription cdl = new XmlConfigDescription(Xml.parse("<t>"
+                + "<foreach name='a' sep=','>1,2</foreach>"
+                + "<s>text</s></t>").getDocumentElement());
+        List<String> expected = new ArrayList<String>();
+        for (ConfigValue v : cdl.evaluate()) {
+            assertFalse(v instanceof CompactValue);
+            expected.add(v.toJson().toString());
+        }
+        List<String> values = new ArrayList<String>();
+        for (ConfigValue v : cdl.evaluate(ValueForm.COMPACT)) {
+            assertTrue(v instanceof CompactValue);
+            values.add(v.toJson().toString());
+        }
+        assertEquals(expected, values);
+    }
+
+    @Test
+    public void testPathLookup() {
+        ConfigValue compact = CompactValue.create(
+                Xml.parse(DOC).getDocumentElement());
+        assertEquals(10, compact.getInt("o/i"));
+        assertEquals(2, compact.getInt("l/e[2]"));
+    }
+
+    @Test
+    public void testIndexedLookup() {
+        StringBuilder sb = new StringBuilder("<t>");
+        for (int i = 0; i < 20; i++) {
+            sb.append("<v").append(i).append('>').append(i)
+            .append("</v").append(i).append('>');
+        }
+        sb.append("<v3>dup</v3></t>");
+        ConfigValue compact = CompactValue.create(
+                Xml.parse(sb.toString()).getDocumentElement());
+        assertEquals(17, compact.getInt("v17"));
+        assertEquals("3", compact.get("v3"));
+    }
+
+    @Test
+    public void testToXml() {
+        CompactValue compact = CompactValue.create(
+                Xml.parse(DOC).getDocumentElement());
+        ConfigValue back = XmlValue.create(compact.toXml());
+        assertEquals(compact.toJson(), back.toJson());
+        assertEquals("1.50", Xml.getSingleElement("n", compact.toXml())
+                .getTextContent());
+    }
+
+    @Test
+    public void testFreeze() throws Exception {
+        final ConfigValue xml = XmlValue.create(Xml.parse(DOC).getDocumentElement());
+        final ConfigValue frozen = Values.freeze(xml);
+        assertTrue(frozen instanceof CompactValue);
+        assertSame(frozen, Values.freeze(frozen));
+        assertEquals(xml.toJson(), frozen.toJson());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int j = 0; j < 1000; j++) {
+                            if (frozen.getValue("o").getInt("j") != 20
+                                    || frozen.getValueList("l").size() != 3
+                                    || !frozen.getBoolean("b")) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> res : results) {
+                assertTrue(res.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.value.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.Type;
+import com.nec.congenio.ValueForm;
+import com.nec.congenio.impl.ExpXml;
+import com.nec.congenio.impl.ForLoop;
+import com.nec.congenio.impl.XmlConfigDescription;
+import com.nec.congenio.xml.Xml;
+
+public class ShapedValueTest {
+
+    @Test
+    public void testSharedShape() {
+        Element elem = Xml.parse("<t>"
+                + "<foreach name='a' sep=','>1,2,3</foreach>"
+                + "<foreach name='b'><e>x</e><e><c>y</c></e></foreach>"
+                + "<o><i type='number'>10</i></o>"
+                + "</t>").getDocumentElement();
+        ShapedValue.Table table = new ShapedValue.Table();
+        List<ShapedValue> values = new ArrayList<ShapedValue>();
+        for (Element e : ForLoop.unfold(elem)) {
+            values.add(table.create(ExpXml.evaluate(e)));
+        }
+        assertEquals(6, values.size());
+        assertSame(values.get(0).getShape(), values.get(2).getShape());
+        assertNotSame(values.get(0).getShape(), values.get(1).getShape());
+        ShapedValue v4 = values.get(3);
+        assertEquals(2, v4.getInt("a"));
+        assertEquals("y", v4.getValue("b").get("c"));
+        assertEquals(Type.NUMBER, v4.getValue("o").getValue("i").getType());
+        assertEquals(10, v4.getInt("o/i"));
+        assertEquals(3, values.get(4).getInt("a"));
+        assertEquals("x", values.get(4).get("b"));
+    }
+
+    @Test
+    public void testEvaluate() {
+        ConfigDescription cdl = new XmlConfigDescription(Xml.parse("<t>"
+                + "<foreach name='a' sep=','>1,2,3</foreach>"
+                + "<o><i type='number'>10</i></o>"
+                + "</t>").getDocumentElement());
+        List<ConfigValue> expected = new ArrayList<ConfigValue>();
+        for (ConfigValue v : cdl.evaluate()) {
+            expected.add(v);
+        }
+        List<ConfigValue> values = new ArrayList<ConfigValue>();
+        for (ConfigValue v : cdl.evaluate(ValueForm.SHAPED)) {
+            assertTrue(v instanceof ShapedValue);
+            values.add(v);
+        }
+        assertEquals(expected.size(), values.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(expected.get(i).toJson(), values.get(i).toJson());
+        }
+        assertSame(((ShapedValue) values.get(0)).getShape(),
+                ((ShapedValue) values.get(2)).getShape());
+    }
+
+    @Test
+    public void testSameAsXmlValue() {
+        Element elem = Xml.parse("<t a='x'><n type='number'>1.50</n>"
+                + "<l><e>1</e><e>2</e></l><property name='p.q'>pq</property>"
+                + "</t>").getDocumentElement();
+        ConfigValue xml = XmlValue.create(elem);
+        ConfigValue shaped = new ShapedValue.Table().create(elem);
+        assertEquals(xml.toJson(), shaped.toJson());
+        assertEquals(xml.getType(), shaped.getType());
+        assertEquals(xml.toValueMap().keySet(), shaped.toValueMap().keySet());
+        assertEquals(2, shaped.getValueList("l").size());
+        assertEquals("1.50", Xml.getSingleElement("n",
+                ((ShapedValue) shaped).toXml()).getTextContent());
+    }
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.xml;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.junit.Test;
+
+import com.nec.congenio.ConfigDescription;
+import com.nec.congenio.ConfigValue;
+import com.nec.congenio.Values;
+
+public class CompressionTest {
+
+    private static String read(InputStream instr) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = instr.read()) >= 0) {
+            sb.append((char) b);
+        }
+        return sb.toString();
+    }
+
+    private static File write(String suffix, Compression compression,
+            String text) throws IOException {
+        File file = File.createTempFile("compress", suffix + compression.suffix());
+        OutputStream out = compression.wrap(new FileOutputStream(file));
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void testDetect() throws IOException {
+        String text = "<a><b>1</b></a>";
+        for (Compression c : Compression.values()) {
+            byte[] data = c.compress(text.getBytes("UTF-8"), 0, text.length());
+            InputStream in = new ByteArrayInputStream(data);
+            assertEquals(c, Compression.detect(in));
+            assertEquals(text, read(Compression.decompress(in)));
+        }
+    }
+
+    @Test
+    public void testStripSuffix() {
+        assertEquals("a.json", Compression.stripSuffix("a.json.gz"));
+        assertEquals("a.xml", Compression.stripSuffix("a.xml.zz"));
+        assertEquals("a.xml", Compression.stripSuffix("a.xml"));
+        assertEquals(Compression.GZIP, Compression.find("gzip"));
+    }
+
+    @Test
+    public void testParseValue() throws IOException {
+        for (Compression c : Compression.values()) {
+            File file = write(".xml", c, "<a><b>1</b><c>x</c></a>");
+            try {
+                ConfigValue value = Values.parseValue(file.toURI().toURL());
+                assertEquals(1, value.getInt("b"));
+                assertEquals("x", value.get("c"));
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testDescription() throws IOException {
+        File json = write(".json", Compression.GZIP, "{\"a\": 1, \"b\": [\"x\", \"y\"]}");
+        File xml = write(".xml", Compression.DEFLATE,
+                "<t><foreach name='i' range='1..3'/><v>x</v></t>");
+        try {
+            ConfigValue value = ConfigDescription.create(json).resolve();
+            assertEquals(1, value.getInt("a"));
+            assertEquals("y", value.getValue("b").toValueList().get(1).stringValue());
+            int count = 0;
+            for (ConfigValue v : ConfigDescription.evaluate(xml)) {
+                assertEquals("x", v.get("v"));
+                count++;
+            }
+            assertEquals(3, count);
+        } finally {
+            json.delete();
+            xml.delete();
+        }
+    }
+}
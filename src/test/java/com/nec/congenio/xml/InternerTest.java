@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+import com.nec.congenio.Values;
+import com.nec.congenio.value.PrimitiveValue;
+
+public class InternerTest {
+
+    @Test
+    public void testSharedStrings() {
+        String name = new String("element");
+        String shared = Interner.name(name);
+        assertSame(shared, Interner.name(new String("element")));
+        String text = Interner.text(new String("value"));
+        assertSame(text, Interner.text(new String("value")));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            sb.append('x');
+        }
+        String longText = sb.toString();
+        assertSame(longText, Interner.text(longText));
+        assertNotSame(longText, Interner.text(new String(longText)));
+    }
+
+    @Test
+    public void testSharedValues() {
+        assertSame(PrimitiveValue.valueOf("true"),
+                PrimitiveValue.valueOf(new String("true")));
+        assertSame(PrimitiveValue.valueOf(10), PrimitiveValue.valueOf(10L));
+        assertSame(PrimitiveValue.valueOf(10), PrimitiveValue.number("10"));
+        assertSame(PrimitiveValue.valueOf(-5), PrimitiveValue.number("-5"));
+        assertEquals(new BigDecimal("10.0"), PrimitiveValue.number("10.0").numberValue());
+        assertEquals("007", PrimitiveValue.valueOf("007").stringValue());
+        assertEquals(7, PrimitiveValue.number("007").intValue(0));
+        assertEquals(100000, PrimitiveValue.number("100000").intValue(0));
+        assertNull(PrimitiveValue.valueOf((String) null).stringValue());
+        assertNull(Values.valueOf((String) null).stringValue());
+    }
+
+    @Test
+    public void testTable() {
+        Interner.Table<StringBuilder> table =
+                new Interner.Table<StringBuilder>(16, 4) {
+            @Override
+            protected StringBuilder create(String key) {
+                return new StringBuilder(key);
+            }
+
+            @Override
+            protected String keyOf(StringBuilder value) {
+                return value.toString();
+            }
+        };
+        StringBuilder abc = table.intern("abc");
+        assertSame(abc, table.intern(new String("abc")));
+        assertEquals("abcde", table.intern("abcde").toString());
+        assertNotSame(table.intern("abcde"), table.intern("abcde"));
+    }
+
+    @Test
+    public void testParsedNames() {
+        XmlNode.XmlElement e1 = XmlNode.parse(new ByteArrayInputStream(
+                "<t a='on'><n>1</n></t>".getBytes()));
+        XmlNode.XmlElement e2 = XmlNode.parse(new ByteArrayInputStream(
+                "<t a='on'><n>1</n></t>".getBytes()));
+        assertSame(e1.getName(), e2.getName());
+        assertSame(e1.getAttributeValue(0), e2.getAttributeValue(0));
+    }
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nec.congenio.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+public class XmlNodeCacheTest {
+
+    private static void write(File file, String content, long mtime) throws IOException {
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        assertTrue(file.setLastModified(mtime));
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        XmlNodeCache cache = new XmlNodeCache(2);
+        File file = File.createTempFile("congen", ".xml");
+        try {
+            long old = System.currentTimeMillis() - 10000L;
+            write(file, "<a><b>1</b></a>", old);
+            XmlNode.XmlElement root = cache.get(file);
+            assertSame(root, cache.get(file));
+
+            write(file, "<a><b>2</b></a>", old - 5000L);
+            XmlNode.XmlElement updated = cache.get(file);
+            assertNotSame(root, updated);
+            assertEquals("2", updated.toElement(Xml.createDocument())
+                    .getTextContent());
+
+            /**
+             * a file modified just now is not cached.
+             */
+            write(file, "<a><b>3</b></a>", System.currentTimeMillis());
+            assertNotSame(cache.get(file), cache.get(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLoadElement() throws IOException {
+        File file = File.createTempFile("congen", ".xml");
+        try {
+            write(file, "<a><b>1</b></a>", System.currentTimeMillis() - 10000L);
+            Element e1 = Xml.loadElement(file);
+            Element e2 = Xml.loadElement(file);
+            assertNotSame(e1, e2);
+            e1.setTextContent("changed");
+            assertEquals("1", e2.getTextContent());
+            assertEquals("1", Xml.loadElement(file).getTextContent());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import com.nec.congenio.xml.XmlNode.XmlElement;
+import com.nec.congenio.xml.XmlNode.XmlText;
+
+public class XmlNodeTest {
+
+    @Test
+    public void testWhitespace() throws UnsupportedEncodingException {
+        XmlElement root = parse("<t a='1'>\n  <b> </b>\n  <c>x<![CDATA[<y>]]></c>\n"
+                + "  <!-- note -->\n</t>");
+        assertEquals("t", root.getName());
+        assertEquals("1", root.getAttribute("a"));
+        assertNull(root.getAttribute("b"));
+        List<XmlNode> children = root.getChildren();
+        assertEquals(3, children.size());
+        XmlElement b = (XmlElement) children.get(0);
+        assertEquals(" ", ((XmlText) b.getChildren().get(0)).getText());
+        XmlElement c = (XmlElement) children.get(1);
+        assertEquals(1, c.getChildren().size());
+        assertEquals("x<y>", ((XmlText) c.getChildren().get(0)).getText());
+    }
+
+    @Test
+    public void testInternedNames() throws UnsupportedEncodingException {
+        XmlElement root = parse("<t><item v='1'/><item v='2'/></t>");
+        XmlElement i1 = (XmlElement) root.getChildren().get(0);
+        XmlElement i2 = (XmlElement) root.getChildren().get(1);
+        assertSame(i1.getName(), i2.getName());
+        assertSame(i1.getAttributeName(0), i2.getAttributeName(0));
+    }
+
+    @Test
+    public void testToElement() throws UnsupportedEncodingException {
+        XmlElement root = parse("<t><a>1</a><b x='y'>2</b></t>");
+        Element elem = root.toElement(Xml.createDocument());
+        assertEquals(2, Xml.getElements(elem).size());
+        assertEquals("2", Xml.getSingleElement("b", elem).getTextContent());
+        assertEquals("y", Xml.getAttribute("x",
+                Xml.getSingleElement("b", elem)));
+    }
+
+    private XmlElement parse(String xml) throws UnsupportedEncodingException {
+        return XmlNode.parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+public class XmlTest {
+    private static final String DOC = "<t><a>1</a><b-c>2</b-c>"
+            + "<e>1</e><e>2</e><e>3</e><o><i>4</i></o></t>";
+
+    @Test
+    public void testChildNames() {
+        Element root = Xml.parse(DOC).getDocumentElement();
+        assertEquals("1", Xml.getSingleElement("a", root).getTextContent());
+        assertEquals("2", Xml.getSingleElement("b-c", root).getTextContent());
+        assertEquals("1", Xml.getSingleElement("e", root).getTextContent());
+        assertNull(Xml.getSingleElement("z", root, false));
+        assertEquals(3, Xml.getElements("e", root).size());
+        assertEquals(0, Xml.getElements("z", root).size());
+    }
+
+    @Test
+    public void testPaths() {
+        Element root = Xml.parse(DOC).getDocumentElement();
+        assertEquals("3", Xml.getSingleElement("e[3]", root).getTextContent());
+        assertEquals("4", Xml.getSingleElement("o/i", root).getTextContent());
+        assertEquals(2, Xml.getElements("e[position() > 1]", root).size());
+    }
+
+    @Test
+    public void testConcurrentPaths() throws Exception {
+        ExecutorService exec = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < 8; t++) {
+                results.add(exec.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        /**
+                         * Note: DOM is not thread-safe, so each
+                         * task has its own document.
+                         */
+                        Element root = Xml.parse(DOC).getDocumentElement();
+                        int sum = 0;
+                        for (int i = 0; i < 500; i++) {
+                            String path = "e[" + (i % 3 + 1) + "]";
+                            sum += Integer.parseInt(
+                                    Xml.getSingleElement(path, root)
+                                    .getTextContent());
+                        }
+                        return sum;
+                    }
+                }));
+            }
+            for (Future<Integer> f : results) {
+                assertEquals(999, f.get().intValue());
+            }
+        } finally {
+            exec.shutdown();
+        }
+    }
+}
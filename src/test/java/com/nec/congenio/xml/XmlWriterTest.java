@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2015, 2016 Junichi Tatemura
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.nec.congenio.xml;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+public class XmlWriterTest {
+
+    private static String write(String xml, boolean xmldecl, boolean indent)
+            throws IOException {
+        Element elem = Xml.parse(xml).getDocumentElement();
+        StringWriter writer = new StringWriter();
+        XmlWriter out = new XmlWriter(writer, indent);
+        if (xmldecl) {
+            out.writeDeclaration();
+        }
+        out.write(elem);
+        return writer.toString();
+    }
+
+    @Test
+    public void testEscape() throws IOException {
+        assertEquals("<a x=\"&amp;&lt;&gt;&quot;'&#10;&#9;\">"
+                + "<b>&amp;&lt;&gt;\"'\t</b><c><![CDATA[<]]]]><![CDATA[>]]></c></a>",
+                write("<a x='&amp;&lt;&gt;&quot;&apos;&#10;&#9;'>"
+                        + "<b>&amp;&lt;&gt;\"'\t</b>"
+                        + "<c><![CDATA[<]]]]><![CDATA[>]]></c></a>", false, false));
+    }
+
+    @Test
+    public void testIndent() throws IOException {
+        String xml = "<a>\n <b>1</b>\n <c><d/><!--x--></c><e> </e></a>";
+        assertEquals("<a>\n"
+                + "  <b>1</b>\n"
+                + "  <c>\n"
+                + "    <d/>\n"
+                + "    <!--x-->\n"
+                + "  </c>\n"
+                + "  <e> </e>\n"
+                + "</a>\n", write(xml, false, true));
+        assertEquals(XmlWriter.DECLARATION + "<a/>\n", write("<a/>", true, true));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        String xml = "<a p='1'><b>x &amp; y</b><c><d>2</d><d>3</d></c></a>";
+        String text = write(xml, false, true);
+        assertEquals(write(xml, false, false), write(text, false, false)
+                .replaceAll(">\\s+<", "><"));
+    }
+}